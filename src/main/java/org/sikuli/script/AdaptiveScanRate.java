@@ -0,0 +1,53 @@
+/*
+ * Copyright 2010-2013, Sikuli.org
+ * Released under the MIT License.
+ *
+ */
+package org.sikuli.script;
+
+/**
+ * scans fast right after a mouse or keyboard action and after a change of the scanned image
+ * (the UI is probably still changing) and then slower and slower the longer nothing happened:<br />
+ * the interval starts with minInterval and doubles every backoffTime ms up to maxInterval
+ */
+public class AdaptiveScanRate implements ScanRatePolicy {
+
+  private final long minInterval;
+  private final long maxInterval;
+  private final long backoffTime;
+
+  /**
+   * 20 ms after an action/change, doubled every 250 ms, up to 1 second
+   */
+  public AdaptiveScanRate() {
+    this(20, 1000, 250);
+  }
+
+  /**
+   *
+   * @param minInterval ms between scans right after an action or change
+   * @param maxInterval the ms between scans are not increased beyond
+   * @param backoffTime ms after which the interval is doubled
+   */
+  public AdaptiveScanRate(long minInterval, long maxInterval, long backoffTime) {
+    this.minInterval = Math.max(1, minInterval);
+    this.maxInterval = Math.max(this.minInterval, maxInterval);
+    this.backoffTime = Math.max(1, backoffTime);
+  }
+
+  @Override
+  public long getInterval(long sinceInput, long sinceChange) {
+    long since = Math.max(0, Math.min(sinceInput, sinceChange));
+    long interval = minInterval;
+    for (long steps = since / backoffTime; steps > 0 && interval < maxInterval; steps--) {
+      interval *= 2;
+    }
+    return Math.min(interval, maxInterval);
+  }
+
+  @Override
+  public String toString() {
+    return String.format("AdaptiveScanRate(%d-%d ms, x2 per %d ms)",
+            minInterval, maxInterval, backoffTime);
+  }
+}
@@ -0,0 +1,247 @@
+/*
+ * Copyright 2010-2013, Sikuli.org
+ * Released under the MIT License.
+ *
+ */
+package org.sikuli.script;
+
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.awt.image.Raster;
+import java.awt.image.SinglePixelPackedSampleModel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * internal use: finds the changed areas between the successive images of an observed region
+ * (onChange)<br />
+ * only the BLOCK_SIZE x BLOCK_SIZE pixel blocks, whose hash changed, are compared pixel by pixel
+ * with the previous image: a pixel is changed, if a color channel differs more than
+ * PIXEL_TOLERANCE<br />
+ * changed blocks touching each other (also diagonally) are merged, the area is the bounding
+ * rectangle of the changed pixels<br />
+ * all arrays are allocated for the size of the region, an image without changes
+ * allocates nothing
+ */
+class ChangeDetector {
+
+  static final int BLOCK_SIZE = 16;
+  /**
+   * the max difference of a color channel, that is not a change (noise, dithering)
+   */
+  static final int PIXEL_TOLERANCE = 8;
+  private static final long FNV_OFFSET = 0xcbf29ce484222325L;
+  private static final long FNV_PRIME = 0x100000001b3L;
+  private int width = -1, height = -1, cols, rows;
+  private long[] hashes, previous;
+  private boolean first = true;
+  /**
+   * a row of pixels of images not stored as int pixels
+   */
+  private int[] row;
+  /**
+   * the pixels of the previous image
+   */
+  private int[] last;
+  /**
+   * the changed blocks and the bounds of their changed pixels
+   */
+  private boolean[] dirty;
+  private int[] left, top, right, bottom;
+  private boolean[] visited;
+  private int[] stack;
+  /**
+   * the pixels of the current image, if stored as int pixels
+   */
+  private int[] data;
+  private int offset, stride;
+
+  private void allocate(int w, int h) {
+    width = w;
+    height = h;
+    cols = (w + BLOCK_SIZE - 1) / BLOCK_SIZE;
+    rows = (h + BLOCK_SIZE - 1) / BLOCK_SIZE;
+    hashes = new long[cols * rows];
+    previous = new long[cols * rows];
+    row = new int[w];
+    last = new int[w * h];
+    dirty = new boolean[cols * rows];
+    left = new int[cols * rows];
+    top = new int[cols * rows];
+    right = new int[cols * rows];
+    bottom = new int[cols * rows];
+    visited = new boolean[cols * rows];
+    stack = new int[cols * rows];
+    first = true;
+  }
+
+  /**
+   * forget the previous image: the next one is not compared
+   */
+  void reset() {
+    first = true;
+  }
+
+  /**
+   * compare the image with the previous one
+   *
+   * @param img
+   * @return the changed areas (empty for the first image or after a size change)
+   */
+  List<Rectangle> update(BufferedImage img) {
+    if (img.getWidth() != width || img.getHeight() != height) {
+      allocate(img.getWidth(), img.getHeight());
+    }
+    long[] h = previous;
+    previous = hashes;
+    hashes = h;
+    prepare(img);
+    hashBlocks(img);
+    int n = cols * rows;
+    boolean changed = false;
+    for (int b = 0; b < n; b++) {
+      dirty[b] = false;
+      if (first || hashes[b] != previous[b]) {
+        dirty[b] = compareBlock(img, b, !first);
+        changed |= dirty[b];
+      }
+    }
+    data = null;
+    if (first) {
+      first = false;
+      return Collections.emptyList();
+    }
+    if (!changed) {
+      return Collections.emptyList();
+    }
+    Arrays.fill(visited, false);
+    List<Rectangle> ret = new ArrayList<Rectangle>();
+    for (int i = 0; i < n; i++) {
+      if (!visited[i] && dirty[i]) {
+        ret.add(area(i));
+      }
+    }
+    return ret;
+  }
+
+  private void prepare(BufferedImage img) {
+    data = null;
+    int type = img.getType();
+    if (type == BufferedImage.TYPE_INT_RGB || type == BufferedImage.TYPE_INT_ARGB) {
+      Raster r = img.getRaster();
+      if (r.getSampleModel() instanceof SinglePixelPackedSampleModel
+              && r.getDataBuffer() instanceof DataBufferInt) {
+        stride = ((SinglePixelPackedSampleModel) r.getSampleModel()).getScanlineStride();
+        data = ((DataBufferInt) r.getDataBuffer()).getData();
+        offset = r.getDataBuffer().getOffset() - r.getSampleModelTranslateY() * stride
+                - r.getSampleModelTranslateX();
+      }
+    }
+  }
+
+  private void hashBlocks(BufferedImage img) {
+    Arrays.fill(hashes, FNV_OFFSET);
+    for (int y = 0; y < height; y++) {
+      int p;
+      int[] pixels;
+      if (data != null) {
+        pixels = data;
+        p = offset + y * stride;
+      } else {
+        img.getRGB(0, y, width, 1, row, 0, width);
+        pixels = row;
+        p = 0;
+      }
+      int b = (y / BLOCK_SIZE) * cols;
+      for (int x0 = 0; x0 < width; x0 += BLOCK_SIZE, b++) {
+        long hash = hashes[b];
+        int x1 = Math.min(width, x0 + BLOCK_SIZE);
+        for (int x = x0; x < x1; x++) {
+          hash = (hash ^ (pixels[p + x] & 0xffffff)) * FNV_PRIME;
+        }
+        hashes[b] = hash;
+      }
+    }
+  }
+
+  /**
+   * compare the pixels of the block with the previous image and store them as previous
+   *
+   * @param check false: store only
+   * @return true if pixels changed (their bounds are stored for the block)
+   */
+  private boolean compareBlock(BufferedImage img, int b, boolean check) {
+    int x0 = (b % cols) * BLOCK_SIZE, y0 = (b / cols) * BLOCK_SIZE;
+    int x1 = Math.min(width, x0 + BLOCK_SIZE), y1 = Math.min(height, y0 + BLOCK_SIZE);
+    int minX = width, maxX = -1, minY = height, maxY = -1;
+    for (int y = y0; y < y1; y++) {
+      int p;
+      int[] pixels;
+      if (data != null) {
+        pixels = data;
+        p = offset + y * stride;
+      } else {
+        img.getRGB(x0, y, x1 - x0, 1, row, 0, width);
+        pixels = row;
+        p = -x0;
+      }
+      int l = y * width;
+      for (int x = x0; x < x1; x++) {
+        int c = pixels[p + x] & 0xffffff;
+        int o = last[l + x];
+        if (check && c != o && differs(c, o)) {
+          minX = Math.min(minX, x);
+          maxX = Math.max(maxX, x);
+          minY = Math.min(minY, y);
+          maxY = y;
+        }
+        last[l + x] = c;
+      }
+    }
+    if (maxX < 0) {
+      return false;
+    }
+    left[b] = minX;
+    right[b] = maxX;
+    top[b] = minY;
+    bottom[b] = maxY;
+    return true;
+  }
+
+  private static boolean differs(int c1, int c2) {
+    return Math.abs(((c1 >> 16) & 0xff) - ((c2 >> 16) & 0xff)) > PIXEL_TOLERANCE
+            || Math.abs(((c1 >> 8) & 0xff) - ((c2 >> 8) & 0xff)) > PIXEL_TOLERANCE
+            || Math.abs((c1 & 0xff) - (c2 & 0xff)) > PIXEL_TOLERANCE;
+  }
+
+  /**
+   * the bounding rectangle of the changed pixels of the changed blocks connected to the given one
+   */
+  private Rectangle area(int start) {
+    int minX = width, maxX = -1, minY = height, maxY = -1;
+    int n = 0;
+    stack[n++] = start;
+    visited[start] = true;
+    while (n > 0) {
+      int b = stack[--n];
+      int c = b % cols, r = b / cols;
+      minX = Math.min(minX, left[b]);
+      maxX = Math.max(maxX, right[b]);
+      minY = Math.min(minY, top[b]);
+      maxY = Math.max(maxY, bottom[b]);
+      for (int nr = Math.max(0, r - 1); nr <= Math.min(rows - 1, r + 1); nr++) {
+        for (int nc = Math.max(0, c - 1); nc <= Math.min(cols - 1, c + 1); nc++) {
+          int nb = nr * cols + nc;
+          if (!visited[nb] && dirty[nb]) {
+            visited[nb] = true;
+            stack[n++] = nb;
+          }
+        }
+      }
+    }
+    return new Rectangle(minX, minY, maxX - minX + 1, maxY - minY + 1);
+  }
+}
@@ -0,0 +1,45 @@
+/*
+ * Copyright 2010-2013, Sikuli.org
+ * Released under the MIT License.
+ *
+ */
+package org.sikuli.script;
+
+/**
+ * internal use: the inner loop of the java engine's correlation (see Settings.CorrelationKernel)<br />
+ * an area of the image is prepared once (e.g. converted to another memory layout)
+ * and then correlated with the template at many positions
+ */
+interface CorrelationKernel {
+
+  /**
+   * the prepared pixels of an area of the image
+   */
+  interface Area {
+
+    /**
+     * the sum of the products of the mean adjusted template values and the image values
+     * with the template at (x, y) (image coordinates, the template must lie inside the area)
+     */
+    double correlate(JavaMatchEngine.Template t, int x, int y);
+  }
+
+  /**
+   *
+   * @return the name used with Settings.CorrelationKernel
+   */
+  String getName();
+
+  /**
+   * prepare the given area of the image
+   *
+   * @param img
+   * @param x
+   * @param y
+   * @param w
+   * @param h
+   * @param gray true: only the blue values are needed (see PixelImage.toGray())
+   * @return the prepared area
+   */
+  Area prepare(PixelImage img, int x, int y, int w, int h, boolean gray);
+}
@@ -213,6 +213,7 @@ public class Env {
   }
 
   public static void cleanUp() {
+    ObserverEngine.stopAll();
     HotkeyManager.getInstance().cleanUp();
   }
 }
@@ -0,0 +1,332 @@
+/*
+ * Copyright 2010-2013, Sikuli.org
+ * Released under the MIT License.
+ *
+ */
+package org.sikuli.script;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.Map;
+
+/**
+ * runs the handlers of the observer events (appear, vanish, change) in separate threads
+ * (at most Settings.ObserverHandlerThreads), so a slow handler does not delay the scans<br />
+ * the events of one source (the observed region) are handled one after the other in the
+ * order they happened, the events of different sources in parallel, so a slow handler only
+ * delays the events of its own region<br />
+ * at most Settings.ObserverEventQueueSize events of a source are waiting, what happens
+ * when there are more is given by Settings.ObserverOverflowPolicy (0: the handlers are called
+ * by the scanning thread)<br />
+ * a thread ends after 30 seconds without events
+ */
+public class EventDispatcher {
+
+  static final long IDLE_TIME = 30000;
+  private static final Object lock = new Object();
+  private static final Map<Object, Lane> lanes = new HashMap<Object, Lane>();
+  /**
+   * the sources with waiting events, that are not handled by a thread at the moment
+   */
+  private static final LinkedList<Lane> ready = new LinkedList<Lane>();
+  /**
+   * true in the threads of the dispatcher
+   */
+  private static final ThreadLocal<Boolean> handling = new ThreadLocal<Boolean>();
+  private static int threads = 0;
+  private static int idle = 0;
+  private static int depth = 0;
+  private static long dispatched = 0;
+  private static long dropped = 0;
+  private static long coalesced = 0;
+  private static int maxDepth = 0;
+  private static long handlerNanos = 0;
+  private static long maxHandlerNanos = 0;
+  private static long waitNanos = 0;
+
+  private static class Event {
+
+    final Object key;
+    final Runnable handler;
+    final long queued = System.nanoTime();
+
+    Event(Object key, Runnable handler) {
+      this.key = key;
+      this.handler = handler;
+    }
+  }
+
+  /**
+   * the waiting events of a source, scheduled: waiting in ready or handled by a thread
+   */
+  private static class Lane {
+
+    final Object source;
+    final LinkedList<Event> events = new LinkedList<Event>();
+    boolean scheduled = false;
+
+    Lane(Object source) {
+      this.source = source;
+    }
+  }
+
+  /**
+   * hand the event to its handler
+   *
+   * @param source the events of a source are handled in order (e.g. the SikuliEventManager)
+   * @param key the observer of the event (events with equal keys are coalesced)
+   * @param handler calls the observer
+   */
+  static void dispatch(Object source, Object key, Runnable handler) {
+    int size = Settings.ObserverEventQueueSize;
+    if (size <= 0 || handling.get() != null) {
+      // a handler observing itself is not queued behind itself
+      handle(handler);
+      return;
+    }
+    synchronized (lock) {
+      Lane lane = getLane(source);
+      while (lane.events.size() >= size) {
+        ObserverOverflow policy = Settings.ObserverOverflowPolicy;
+        if (policy == ObserverOverflow.BLOCK) {
+          try {
+            lock.wait();
+          } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            dropped++;
+            return;
+          }
+          lane = getLane(source);
+          continue;
+        }
+        if (policy == ObserverOverflow.COALESCE && replace(lane, key, handler)) {
+          return;
+        }
+        lane.events.removeFirst();
+        depth--;
+        dropped++;
+      }
+      lane.events.add(new Event(key, handler));
+      depth++;
+      maxDepth = Math.max(maxDepth, depth);
+      if (!lane.scheduled) {
+        lane.scheduled = true;
+        ready.add(lane);
+      }
+      if (idle == 0 && threads < Math.max(1, Settings.ObserverHandlerThreads)) {
+        threads++;
+        Thread t = new Thread("SikuliEventDispatcher-" + threads) {
+          @Override
+          public void run() {
+            runDispatcher();
+          }
+        };
+        t.setDaemon(true);
+        t.start();
+      }
+      lock.notifyAll();
+    }
+  }
+
+  /**
+   * waits until the events of the source are handled (not if called by a handler)
+   *
+   * @param source
+   */
+  static void drain(Object source) {
+    if (handling.get() != null) {
+      return;
+    }
+    synchronized (lock) {
+      while (lanes.containsKey(source)) {
+        try {
+          lock.wait();
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+          return;
+        }
+      }
+    }
+  }
+
+  private static Lane getLane(Object source) {
+    Lane lane = lanes.get(source);
+    if (lane == null) {
+      lane = new Lane(source);
+      lanes.put(source, lane);
+    }
+    return lane;
+  }
+
+  /**
+   * replace the last waiting event of the same observer by the new one (lock held)
+   *
+   * @return false if there is none
+   */
+  private static boolean replace(Lane lane, Object key, Runnable handler) {
+    Iterator<Event> it = lane.events.descendingIterator();
+    while (it.hasNext()) {
+      Event e = it.next();
+      if (e.key.equals(key)) {
+        it.remove();
+        lane.events.add(new Event(key, handler));
+        coalesced++;
+        return true;
+      }
+    }
+    return false;
+  }
+
+  private static void runDispatcher() {
+    handling.set(Boolean.TRUE);
+    while (true) {
+      Lane lane;
+      Event e;
+      synchronized (lock) {
+        long idleSince = System.currentTimeMillis();
+        while (ready.isEmpty()) {
+          long left = IDLE_TIME - (System.currentTimeMillis() - idleSince);
+          if (left <= 0) {
+            threads--;
+            return;
+          }
+          idle++;
+          try {
+            lock.wait(left);
+          } catch (InterruptedException ex) {
+            // only ends when idle
+          } finally {
+            idle--;
+          }
+        }
+        lane = ready.removeFirst();
+        e = lane.events.removeFirst();
+        depth--;
+        waitNanos += System.nanoTime() - e.queued;
+        lock.notifyAll();
+      }
+      handle(e.handler);
+      synchronized (lock) {
+        if (lane.events.isEmpty()) {
+          lane.scheduled = false;
+          lanes.remove(lane.source);
+        } else {
+          ready.add(lane);
+        }
+        lock.notifyAll();
+      }
+    }
+  }
+
+  private static void handle(Runnable handler) {
+    long start = System.nanoTime();
+    try {
+      handler.run();
+    } catch (RuntimeException e) {
+      Debug.error("EventDispatcher: observer failed: " + e.getMessage());
+    }
+    long time = System.nanoTime() - start;
+    synchronized (lock) {
+      dispatched++;
+      handlerNanos += time;
+      maxHandlerNanos = Math.max(maxHandlerNanos, time);
+    }
+  }
+
+  /**
+   *
+   * @return number of events waiting for their handler
+   */
+  public static int getQueueDepth() {
+    synchronized (lock) {
+      return depth;
+    }
+  }
+
+  /**
+   *
+   * @return max number of events waiting at the same time
+   */
+  public static int getMaxQueueDepth() {
+    synchronized (lock) {
+      return maxDepth;
+    }
+  }
+
+  /**
+   *
+   * @return number of events handled
+   */
+  public static long getDispatched() {
+    synchronized (lock) {
+      return dispatched;
+    }
+  }
+
+  /**
+   *
+   * @return number of events dropped because the queue of their source was full
+   * (not counting the replaced ones, see getCoalesced())
+   */
+  public static long getDropped() {
+    synchronized (lock) {
+      return dropped;
+    }
+  }
+
+  /**
+   *
+   * @return number of waiting events replaced by a newer one of the same observer
+   */
+  public static long getCoalesced() {
+    synchronized (lock) {
+      return coalesced;
+    }
+  }
+
+  /**
+   *
+   * @return average time a handler took in milliseconds
+   */
+  public static double getAverageLatency() {
+    synchronized (lock) {
+      return dispatched == 0 ? 0 : handlerNanos / 1e6 / dispatched;
+    }
+  }
+
+  /**
+   *
+   * @return average time an event waited in the queue in milliseconds
+   */
+  public static double getAverageWait() {
+    synchronized (lock) {
+      return dispatched == 0 ? 0 : waitNanos / 1e6 / dispatched;
+    }
+  }
+
+  /**
+   *
+   * @return longest time a handler took in milliseconds
+   */
+  public static double getMaxLatency() {
+    synchronized (lock) {
+      return maxHandlerNanos / 1e6;
+    }
+  }
+
+  /**
+   * reset the counters (events waiting are kept)
+   */
+  public static void resetStatistics() {
+    synchronized (lock) {
+      dispatched = 0;
+      dropped = 0;
+      coalesced = 0;
+      maxDepth = depth;
+      handlerNanos = 0;
+      maxHandlerNanos = 0;
+      waitNanos = 0;
+    }
+  }
+}
@@ -0,0 +1,152 @@
+/*
+ * Copyright 2010-2013, Sikuli.org
+ * Released under the MIT License.
+ *
+ */
+package org.sikuli.script;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * internal use: finds the pixel identical occurrences of an image in linear time
+ * (2D rolling hash, Rabin-Karp), used for Patterns with similarity 0.99 or more
+ * (see Settings.ExactMatchHash)<br />
+ * the hash of every target sized window is computed from the hashes of its rows,
+ * which are moved along the row; windows with the target's hash are compared pixel by pixel
+ */
+class ExactMatcher {
+
+  private static final long ROW_BASE = 1000003L;
+  private static final long COL_BASE = 998244353L;
+  /**
+   * match positions (rows) searched by one job, the first window of a job costs target height
+   * row hashes
+   */
+  static final int BAND_ROWS = 64;
+
+  /**
+   * the pixel identical occurrences of the target (alpha is ignored)
+   *
+   * @param img
+   * @param target
+   * @param findAll false: only the first (top most, then left most) occurrence
+   * @param limit max number of results with findAll (0 = no limit)
+   * @return the occurrences (score 1), the same order and overlap handling as the
+   * match engines' results
+   */
+  static List<MatchResult> find(final PixelImage img, final PixelImage target, boolean findAll,
+          int limit) {
+    final int tw = target.width, th = target.height;
+    final int rw = img.width - tw + 1, rh = img.height - th + 1;
+    List<MatchResult> ret = new ArrayList<MatchResult>();
+    if (rw < 1 || rh < 1 || tw < 1 || th < 1) {
+      return ret;
+    }
+    long rowPow = 1, colPow = 1;
+    for (int i = 1; i < tw; i++) {
+      rowPow *= ROW_BASE;
+    }
+    for (int j = 1; j < th; j++) {
+      colPow *= COL_BASE;
+    }
+    long hash = 0;
+    for (int j = 0; j < th; j++) {
+      long h = 0;
+      int p = target.offset + j * target.stride;
+      for (int i = 0; i < tw; i++) {
+        h = h * ROW_BASE + (target.data[p + i] & 0xffffff);
+      }
+      hash = hash * COL_BASE + h;
+    }
+    final long targetHash = hash, rowPowF = rowPow, colPowF = colPow;
+    final int bands = (rh + BAND_ROWS - 1) / BAND_ROWS;
+    final List<List<MatchResult>> found = new ArrayList<List<MatchResult>>(bands);
+    for (int i = 0; i < bands; i++) {
+      found.add(null);
+    }
+    FindWorkers.invoke(bands, new FindWorkers.Job() {
+      @Override
+      public void run(int band) {
+        found.set(band, findBand(img, target, targetHash, rowPowF, colPowF,
+                band * BAND_ROWS, Math.min(rh, (band + 1) * BAND_ROWS)));
+      }
+    });
+    for (List<MatchResult> band : found) {
+      ret.addAll(band);
+      if (!findAll && !ret.isEmpty()) {
+        ret.subList(1, ret.size()).clear();
+        return ret;
+      }
+    }
+    return MatchResult.suppressOverlaps(ret, limit);
+  }
+
+  /**
+   * the occurrences at match positions in rows y0 ... y1-1 in row major order
+   */
+  private static List<MatchResult> findBand(PixelImage img, PixelImage target, long targetHash,
+          long rowPow, long colPow, int y0, int y1) {
+    int tw = target.width, th = target.height;
+    int rw = img.width - tw + 1;
+    List<MatchResult> ret = new ArrayList<MatchResult>();
+    // the row hashes of the window's rows (ring buffer) and the window hashes per column
+    long[][] rows = new long[th][rw];
+    long[] window = new long[rw];
+    for (int j = 0; j < th; j++) {
+      rowHashes(img, y0 + j, tw, rowPow, rows[j]);
+      for (int x = 0; x < rw; x++) {
+        window[x] = window[x] * COL_BASE + rows[j][x];
+      }
+    }
+    for (int y = y0; y < y1; y++) {
+      if (y > y0) {
+        long[] oldest = rows[(y - 1 - y0) % th];
+        long[] newest = oldest;
+        for (int x = 0; x < rw; x++) {
+          window[x] -= oldest[x] * colPow;
+        }
+        rowHashes(img, y + th - 1, tw, rowPow, newest);
+        for (int x = 0; x < rw; x++) {
+          window[x] = window[x] * COL_BASE + newest[x];
+        }
+      }
+      for (int x = 0; x < rw; x++) {
+        if (window[x] == targetHash && same(img, target, x, y)) {
+          ret.add(new MatchResult(x, y, tw, th, 1.0));
+        }
+      }
+    }
+    return ret;
+  }
+
+  /**
+   * the hashes of all windows of width tw in row y
+   */
+  private static void rowHashes(PixelImage img, int y, int tw, long rowPow, long[] hashes) {
+    int p = img.offset + y * img.stride;
+    long h = 0;
+    for (int x = 0; x < tw; x++) {
+      h = h * ROW_BASE + (img.data[p + x] & 0xffffff);
+    }
+    hashes[0] = h;
+    for (int x = 1; x < hashes.length; x++) {
+      h = (h - (img.data[p + x - 1] & 0xffffff) * rowPow) * ROW_BASE
+              + (img.data[p + x + tw - 1] & 0xffffff);
+      hashes[x] = h;
+    }
+  }
+
+  private static boolean same(PixelImage img, PixelImage target, int x, int y) {
+    for (int j = 0; j < target.height; j++) {
+      int p = img.offset + (y + j) * img.stride + x;
+      int q = target.offset + j * target.stride;
+      for (int i = 0; i < target.width; i++) {
+        if (((img.data[p + i] ^ target.data[q + i]) & 0xffffff) != 0) {
+          return false;
+        }
+      }
+    }
+    return true;
+  }
+}
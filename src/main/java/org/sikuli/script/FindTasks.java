@@ -0,0 +1,163 @@
+/*
+ * Copyright 2010-2013, Sikuli.org
+ * Released under the MIT License.
+ *
+ */
+package org.sikuli.script;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * internal use: the shared threads running the asynchronous searches of Region
+ * (findAsync, waitAsync, ...)<br />
+ * at most Settings.AsyncFindThreads threads, further searches are queued<br />
+ * a waiting search does not keep a thread between its scans: each scan is a task of
+ * the pool, that is submitted by ScanScheduler when the scan is due (see Repeating)<br />
+ * Future.cancel() stops a waiting search, it then ends as not found
+ * (without FindFailed handling)
+ */
+class FindTasks {
+
+  private static ThreadPoolExecutor pool = null;
+  private static final AtomicInteger pending = new AtomicInteger(0);
+
+  /**
+   *
+   * @return the number of threads (Settings.AsyncFindThreads, at least 1)
+   */
+  static int getThreads() {
+    return Math.max(1, Settings.AsyncFindThreads);
+  }
+
+  static synchronized ThreadPoolExecutor getPool() {
+    if (pool == null) {
+      int n = getThreads();
+      pool = new ThreadPoolExecutor(n, n, 30, TimeUnit.SECONDS,
+              new LinkedBlockingQueue<Runnable>(), new ThreadFactory() {
+        private final AtomicInteger n = new AtomicInteger(0);
+
+        @Override
+        public Thread newThread(Runnable r) {
+          Thread t = new Thread(r, "SikuliAsync-" + n.incrementAndGet());
+          t.setDaemon(true);
+          return t;
+        }
+      });
+      pool.allowCoreThreadTimeOut(true);
+    }
+    return pool;
+  }
+
+  /**
+   * start the given search
+   *
+   * @param search
+   * @return the pending result, an exception of the search is thrown by Future.get()
+   * wrapped in an ExecutionException
+   */
+  static <T> Future<T> submit(Callable<T> search) {
+    FutureTask<T> task = new Counted<T>(search);
+    getPool().execute(task);
+    return task;
+  }
+
+  /**
+   * run a step of a search in the pool
+   *
+   * @param step
+   */
+  static void execute(Runnable step) {
+    getPool().execute(step);
+  }
+
+  /**
+   *
+   * @return the number of searches not yet done (also the ones waiting for their next scan)
+   */
+  static int getPending() {
+    return pending.get();
+  }
+
+  /**
+   *
+   * @return the number of threads of the pool
+   */
+  static synchronized int getPoolSize() {
+    if (pool == null) {
+      return 0;
+    }
+    return pool.getPoolSize();
+  }
+
+  /**
+   * a search counted as pending until it is done
+   */
+  private static class Counted<T> extends FutureTask<T> {
+
+    Counted(Callable<T> search) {
+      super(search);
+      pending.incrementAndGet();
+    }
+
+    @Override
+    protected void done() {
+      pending.decrementAndGet();
+    }
+  }
+
+  /**
+   * the result of a search, that is repeated in steps: each scan is a task of the pool,
+   * between the scans the search is only known by ScanScheduler<br />
+   * the steps set the result, cancel() ends the waiting for the next scan
+   */
+  static class Repeating<T> extends Counted<T> {
+
+    private volatile ScanScheduler.Task task = null;
+
+    Repeating() {
+      super(new Callable<T>() {
+        @Override
+        public T call() {
+          throw new IllegalStateException("the result is set by the steps");
+        }
+      });
+    }
+
+    /**
+     * the scheduled task of the current repetition (cancelled with the search)
+     *
+     * @param task
+     */
+    void setTask(ScanScheduler.Task task) {
+      this.task = task;
+      if (isCancelled()) {
+        task.cancel();
+      }
+    }
+
+    void found(T result) {
+      set(result);
+    }
+
+    void failed(Throwable e) {
+      setException(e);
+    }
+
+    @Override
+    public boolean cancel(boolean mayInterruptIfRunning) {
+      boolean ret = super.cancel(mayInterruptIfRunning);
+      ScanScheduler.Task t = task;
+      if (ret && t != null) {
+        t.cancel();
+      }
+      return ret;
+    }
+  }
+}
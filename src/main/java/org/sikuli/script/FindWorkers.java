@@ -0,0 +1,116 @@
+/*
+ * Copyright 2010-2013, Sikuli.org
+ * Released under the MIT License.
+ *
+ */
+package org.sikuli.script;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * internal use: the shared worker threads for parallel searches<br />
+ * the calling thread always takes part in the work, so nested use
+ * (e.g. parallel patterns each searched in parallel tiles) cannot dead lock
+ * and a busy pool degrades to sequential processing
+ */
+class FindWorkers {
+
+  interface Job {
+
+    void run(int index);
+  }
+  private static ThreadPoolExecutor pool = null;
+
+  /**
+   *
+   * @return the number of threads to use (Settings.FindThreads, 0 = number of processors)
+   */
+  static int getThreads() {
+    if (Settings.FindThreads > 0) {
+      return Settings.FindThreads;
+    }
+    return Runtime.getRuntime().availableProcessors();
+  }
+
+  static synchronized ExecutorService getPool() {
+    if (pool == null) {
+      pool = new ThreadPoolExecutor(getThreads(), getThreads(), 30, TimeUnit.SECONDS,
+              new LinkedBlockingQueue<Runnable>(), new ThreadFactory() {
+        private final AtomicInteger n = new AtomicInteger(0);
+
+        @Override
+        public Thread newThread(Runnable r) {
+          Thread t = new Thread(r, "SikuliFind-" + n.incrementAndGet());
+          t.setDaemon(true);
+          return t;
+        }
+      });
+      pool.allowCoreThreadTimeOut(true);
+    }
+    return pool;
+  }
+
+  /**
+   * run job.run(0) ... job.run(count - 1) in parallel and return when all are done
+   *
+   * @param count number of job items
+   * @param job
+   */
+  static void invoke(final int count, final Job job) {
+    int helpers = Math.min(getThreads(), count) - 1;
+    if (helpers < 1) {
+      for (int i = 0; i < count; i++) {
+        job.run(i);
+      }
+      return;
+    }
+    final AtomicInteger next = new AtomicInteger(0);
+    final CountDownLatch done = new CountDownLatch(count);
+    final RuntimeException[] failed = new RuntimeException[1];
+    Runnable worker = new Runnable() {
+      @Override
+      public void run() {
+        int i;
+        while ((i = next.getAndIncrement()) < count) {
+          try {
+            job.run(i);
+          } catch (RuntimeException e) {
+            failed[0] = e;
+          } finally {
+            done.countDown();
+          }
+        }
+      }
+    };
+    for (int n = 0; n < helpers; n++) {
+      try {
+        getPool().execute(worker);
+      } catch (RejectedExecutionException e) {
+        break;
+      }
+    }
+    worker.run();
+    boolean interrupted = false;
+    while (true) {
+      try {
+        done.await();
+        break;
+      } catch (InterruptedException e) {
+        interrupted = true;
+      }
+    }
+    if (interrupted) {
+      Thread.currentThread().interrupt();
+    }
+    if (failed[0] != null) {
+      throw failed[0];
+    }
+  }
+}
@@ -6,29 +6,54 @@
  */
 package org.sikuli.script;
 
+import java.awt.Dimension;
+import java.awt.Point;
+import java.awt.Rectangle;
 import java.awt.image.BufferedImage;
+import java.io.File;
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.Iterator;
-import org.sikuli.script.natives.FindInput;
-import org.sikuli.script.natives.FindResult;
-import org.sikuli.script.natives.FindResults;
-import org.sikuli.script.natives.OpenCV;
-import org.sikuli.script.natives.TARGET_TYPE;
-import org.sikuli.script.natives.Vision;
+import java.util.List;
+import java.util.Map;
+import java.util.ServiceLoader;
+import java.util.concurrent.atomic.AtomicBoolean;
+import javax.imageio.ImageIO;
 
 public class Finder implements Iterator<Match> {
 
   private Region _region = null;
   private Pattern _pattern = null;
-  private FindInput _findInput = new FindInput();
-  private FindResults _results = null;
+  private BufferedImage _image = null;
+  private ScreenImage _simg = null;
+  private boolean _ownsScreenImages = false;
+  private MatchEngine _engine = null;
+  private MatchSource _source = null;
+  private List<MatchResult> _results = null;
   private int _cur_result_i;
   private boolean repeating = false;
-
-//TODO Vision.setParameter("GPU", 1);
-  static {
-    FileManager.loadLibrary("VisionProxy");
-  }
+  /**
+   * the tile hashes of the frame the current results were found in (repeated find)
+   */
+  private FrameTiles _tiles = null;
+  /**
+   * the tile hashes of the current image (computed at most once per scan, see frameTiles())
+   */
+  private FrameTiles _frame = null;
+  private boolean _frameChanged = true;
+  private Pattern _target = null;
+  private String _text = null;
+  private double _similarity;
+  private boolean _findAll = false;
+  private int _limit = 0;
+  private TiledFindAll _stream = null;
+  /**
+   * the target and the frame content of the current find in a Region (see MatchCache)
+   */
+  private String _cacheTarget = null;
+  private long _cacheHash = 0;
+  private static Map<String, MatchEngine> engines = null;
 
   /**
    * Finder constructor (finding within an image).
@@ -49,7 +74,10 @@ public class Finder implements Iterator<Match> {
    */
   public Finder(String imageFilename, Region region) throws IOException  {
     String fname = ImageLocator.locate(imageFilename);
-    _findInput.setSource(fname);
+    _image = ImageIO.read(new File(fname));
+    if (_image == null) {
+      throw new IOException("Finder: " + fname + " is not a supported image file");
+    }
     _region = region;
   }
 
@@ -59,7 +87,7 @@ public class Finder implements Iterator<Match> {
 	 * @param bimg
 	 */
 	public Finder(BufferedImage bimg) {
-    _findInput.setSource(OpenCV.convertBufferedImageToMat(bimg));
+    _image = bimg;
 	}
 
   /**
@@ -90,9 +118,12 @@ public class Finder implements Iterator<Match> {
    * to explicitly free the Finder's resources
    */
   public void destroy() {
-		_findInput.delete();
-		_findInput = null;
-		_results.delete();
+    stopStream();
+    if (_source != null) {
+      _source.release();
+      _source = null;
+    }
+    releaseScreenImage();
 		_results = null;
 		_pattern = null;
   }
@@ -103,9 +134,335 @@ public class Finder implements Iterator<Match> {
 	 * @param simg
 	 */
 	public void setScreenImage(ScreenImage simg) {
-    _findInput.setSource(OpenCV.convertBufferedImageToMat(simg.getImage()));
+    if (_simg != simg) {
+      releaseScreenImage();
+    }
+    _simg = simg;
+    if (_image != simg.getImage()) {
+      _frame = null;
+    }
+    _image = simg.getImage();
+    if (_source != null) {
+      _source.setImage(_image);
+    }
 	}
 
+  /**
+   * internal use: the ScreenImages given to this Finder are captured for it only
+   * and are released (see ScreenImage.release()), when replaced or with destroy()
+   */
+  void ownScreenImages() {
+    _ownsScreenImages = true;
+  }
+
+  /**
+   * internal use: release the current ScreenImage if owned (the results stay available)
+   */
+  void releaseScreenImage() {
+    if (_ownsScreenImages && _simg != null) {
+      _simg.release();
+      _simg = null;
+    }
+  }
+
+  /**
+   * select the engine to be used by this Finder
+   *
+   * @param name see Settings.MatchEngine
+   */
+  public void setMatchEngine(String name) {
+    if (_source != null) {
+      _source.release();
+      _source = null;
+    }
+    _engine = getMatchEngine(name);
+  }
+
+  /**
+   *
+   * @return the engine used by this Finder
+   */
+  public MatchEngine getMatchEngine() {
+    if (_engine == null) {
+      _engine = getMatchEngine(Settings.MatchEngine);
+    }
+    return _engine;
+  }
+
+  /**
+   * get an engine by name from the registered engines
+   * (META-INF/services/org.sikuli.script.MatchEngine)
+   *
+   * @param name the engine's name or null
+   * @return the named engine if available, otherwise the native engine if available,
+   * the java engine otherwise
+   */
+  public static synchronized MatchEngine getMatchEngine(String name) {
+    if (engines == null) {
+      engines = new HashMap<String, MatchEngine>();
+      Iterator<MatchEngine> it = ServiceLoader.load(MatchEngine.class).iterator();
+      while (it.hasNext()) {
+        MatchEngine me = it.next();
+        engines.put(me.getName().toLowerCase(), me);
+      }
+      if (!engines.containsKey("java")) {
+        engines.put("java", new JavaMatchEngine());
+      }
+    }
+    if (name != null) {
+      MatchEngine me = engines.get(name.toLowerCase());
+      if (me != null && me.isAvailable()) {
+        return me;
+      }
+      Debug.error("Finder: MatchEngine %s not available - using default", name);
+    }
+    MatchEngine me = engines.get("native");
+    if (me != null && me.isAvailable()) {
+      return me;
+    }
+    return engines.get("java");
+  }
+
+  private MatchSource getSource() {
+    if (_source == null) {
+      _source = getMatchEngine().createSource(_image);
+    }
+    return _source;
+  }
+
+  private void stopStream() {
+    if (_stream != null) {
+      _stream.cancel();
+      _stream = null;
+    }
+  }
+
+  private boolean doFind() {
+    _cur_result_i = 0;
+    _tiles = null;
+    _cacheTarget = null;
+    stopStream();
+    try {
+      if (_text != null) {
+        _results = getSource().findText(_text, _similarity, _findAll);
+      } else if (!_findAll && findCached()) {
+        // the same search in the same frame content before
+      } else if (!_findAll && findNearHint()) {
+        // found near its last location
+      } else if (findExact()) {
+        if (!_findAll) {
+          rememberHint();
+        }
+      } else if (_findAll && FindWorkers.getThreads() > 1
+              && !(getMatchEngine() instanceof JavaMatchEngine)) {
+        // the java engine searches in parallel itself
+        Dimension size = getTargetSize();
+        TiledFindAll tiled = new TiledFindAll(getMatchEngine(), _image, _target,
+                size.width, size.height, _similarity, _limit);
+        if (tiled.getTiles() > 1) {
+          _results = tiled.findAll();
+        } else {
+          _results = getSource().find(_target, _similarity, true, _limit);
+        }
+      } else {
+        if (!_findAll && _target.isFirstHit()) {
+          _results = getSource().findFirst(_target, _similarity, getHintStart());
+        } else {
+          _results = getSource().find(_target, _similarity, _findAll, _findAll ? _limit : 0);
+        }
+        if (!_findAll) {
+          rememberHint();
+        }
+      }
+      if (_cacheTarget != null) {
+        MatchCache.put(_region.getScreen().getID(), _simg.getROI(), _cacheTarget, _cacheHash,
+                _results);
+      }
+      // hashed for the cache: the next repeated find compares with it
+      _tiles = _frame;
+    } catch (IOException e) {
+      Debug.error("Finder: " + e.getMessage());
+      _results = null;
+      return false;
+    }
+    return true;
+  }
+
+  /**
+   * look up the result of the same find in a frame with the same content
+   * (see Settings.CacheMatches), if not known, the key is kept to store the result<br />
+   * the frame is hashed with its tiles, that a repeated find reuses (see doFindRepeat())
+   *
+   * @return true if known (_results are set)
+   */
+  private boolean findCached() {
+    if (!Settings.CacheMatches || _region == null || _region.getScreen() == null
+            || _simg == null) {
+      return false;
+    }
+    String target;
+    if (_target.hasImage()) {
+      BufferedImage img = _target.getImage();
+      target = "image:" + img.getWidth() + "x" + img.getHeight() + ":"
+              + Long.toHexString(PixelImage.create(img).hash());
+    } else if (_target.getFilename() != null) {
+      // a changed image file is another target
+      target = _target.getFilename() + "@" + new File(_target.getFilename()).lastModified();
+    } else {
+      return false;
+    }
+    target += ":" + _similarity + (_target.isFirstHit() ? ":first" : ":best")
+            + (_target.isGrayscale() ? ":gray" : ":rgb") + ":" + _target.getScale()
+            + ":" + _target.getMinScale() + ":" + getMatchEngine().getClass().getName();
+    long hash = frameTiles().hash();
+    List<MatchResult> found = MatchCache.get(_region.getScreen().getID(), _simg.getROI(),
+            target, hash);
+    if (found != null) {
+      Debug.log(3, "Finder: same search in unchanged frame - cached result used");
+      _results = found;
+      return true;
+    }
+    _cacheTarget = target;
+    _cacheHash = hash;
+    return false;
+  }
+
+  /**
+   * search the pixel identical occurrences of an exact Pattern (see Settings.ExactMatchHash)
+   *
+   * @return true if found (_results are set), false if the match engine has to search
+   */
+  private boolean findExact() throws IOException {
+    // grayscale: copies in other colors would be missed
+    if (!Settings.ExactMatchHash || _similarity < 0.99 || _target.isGrayscale()) {
+      return false;
+    }
+    PixelImage target;
+    if (_target.hasImage()) {
+      target = PixelImage.create(_target.getImage());
+    } else {
+      String filename = _target.getFilename();
+      if (filename == null) {
+        return false;
+      }
+      target = PatternCache.get(filename).getPixels();
+    }
+    if (target.width > _image.getWidth() || target.height > _image.getHeight()) {
+      return false;
+    }
+    List<MatchResult> found = ExactMatcher.find(PixelImage.create(_image), target, _findAll,
+            _findAll ? _limit : 0);
+    if (found.isEmpty()) {
+      Debug.log(3, "Finder: no exact occurrence - using the match engine");
+      return false;
+    }
+    _results = found;
+    return true;
+  }
+
+  /**
+   * the key of the target's last location (see LocationHints)
+   */
+  private Object getHintKey() {
+    return _target.hasImage() ? _target.getImage() : _target.getFilename();
+  }
+
+  /**
+   * search the target in a small window around its last location on the screen
+   * (see Settings.FindNearLastMatch)
+   *
+   * @return true if found there at least as good as the last time (_results are set),
+   * false if the whole image has to be searched
+   */
+  private boolean findNearHint() throws IOException {
+    if (!Settings.FindNearLastMatch || _simg == null) {
+      return false;
+    }
+    Object key = getHintKey();
+    MatchResult hint = key == null ? null : LocationHints.get(key);
+    if (hint == null) {
+      return false;
+    }
+    Rectangle window = getHintWindow(hint);
+    if (window.width < hint.w || window.height < hint.h
+            || (long) window.width * window.height * 4 > (long) _image.getWidth() * _image.getHeight()) {
+      // not inside or no gain compared to the whole image
+      return false;
+    }
+    MatchSource src = getMatchEngine().createSource(
+            _image.getSubimage(window.x, window.y, window.width, window.height));
+    try {
+      List<MatchResult> found = src.find(_target, _similarity, false, 0);
+      // first hit: any match is good enough
+      if (!found.isEmpty() && (_target.isFirstHit()
+              || found.get(0).score >= hint.score - LocationHints.SCORE_TOLERANCE)) {
+        found.get(0).x += window.x;
+        found.get(0).y += window.y;
+        _results = found;
+        LocationHints.count(true);
+        rememberHint();
+        return true;
+      }
+    } finally {
+      src.release();
+    }
+    LocationHints.count(false);
+    return false;
+  }
+
+  /**
+   * the last match rectangle grown by LocationHints.MARGIN on every side
+   *
+   * @param hint the last match (screen coordinates)
+   * @return the window in this image (clipped, might be empty)
+   */
+  private Rectangle getHintWindow(MatchResult hint) {
+    Rectangle roi = _simg.getROI();
+    int m = LocationHints.MARGIN;
+    return new Rectangle(hint.x - roi.x - m, hint.y - roi.y - m,
+            hint.w + 2 * m, hint.h + 2 * m).intersection(
+            new Rectangle(0, 0, _image.getWidth(), _image.getHeight()));
+  }
+
+  /**
+   * the start of a first hit search: the position of the last match rectangle inside its
+   * window (the positions inside the window are checked first)
+   *
+   * @return null if not known or not inside this image (the search starts in the center)
+   */
+  private Point getHintStart() {
+    Object key = _simg == null ? null : getHintKey();
+    MatchResult hint = key == null ? null : LocationHints.get(key);
+    if (hint == null) {
+      return null;
+    }
+    Rectangle window = getHintWindow(hint);
+    if (window.width < hint.w || window.height < hint.h) {
+      return null;
+    }
+    // the last position, moved inside the window if the image is smaller now
+    Rectangle roi = _simg.getROI();
+    return new Point(
+            Math.max(window.x, Math.min(hint.x - roi.x, window.x + window.width - hint.w)),
+            Math.max(window.y, Math.min(hint.y - roi.y, window.y + window.height - hint.h)));
+  }
+
+  /**
+   * remember the location of the best result on the screen
+   */
+  private void rememberHint() {
+    if (_simg == null || _results == null || _results.isEmpty()) {
+      return;
+    }
+    Object key = getHintKey();
+    if (key != null) {
+      Rectangle roi = _simg.getROI();
+      MatchResult best = _results.get(0);
+      LocationHints.put(key, new MatchResult(best.x + roi.x, best.y + roi.y, best.w, best.h,
+              best.score));
+    }
+  }
+
   /**
 	 * internal use: to be able to reuse the same Finder
 	 */
@@ -113,12 +470,144 @@ public class Finder implements Iterator<Match> {
     repeating = true;
   }
 
+  /**
+   * repeated find: if the frame did not change since the last search,
+   * the last results are used again, if only parts of the frame changed,
+   * only these parts are searched again (see Settings.SkipUnchangedFrames)
+   */
+  private void doFindRepeat() {
+    _frameChanged = true;
+    if (!Settings.SkipUnchangedFrames || _image == null) {
+      doFind();
+      return;
+    }
+    FrameTiles tiles = frameTiles();
+    FrameTiles previous = _tiles;
+    if (previous != null && _results != null && previous.sameSize(tiles)) {
+      List<Rectangle> changed = tiles.changed(previous);
+      if (changed.isEmpty()) {
+        _frameChanged = false;
+        Debug.log(3, "Finder: frame not changed - search skipped");
+        _cur_result_i = 0;
+        return;
+      }
+      if (findChanged(tiles, changed)) {
+        _tiles = tiles;
+        return;
+      }
+    }
+    if (doFind()) {
+      _tiles = tiles;
+    }
+  }
+
+  /**
+   *
+   * @return the tile hashes of the current image
+   */
+  private FrameTiles frameTiles() {
+    if (_frame == null) {
+      _frame = new FrameTiles(PixelImage.create(_image));
+    }
+    return _frame;
+  }
+
+  /**
+   * search only the changed parts of the frame and keep the results in unchanged parts
+   *
+   * @return false if a search of the whole frame is needed
+   */
+  private boolean findChanged(FrameTiles tiles, List<Rectangle> changed) {
+    if (_text != null || (_findAll && _limit > 0)) {
+      return false;
+    }
+    List<MatchResult> kept = new ArrayList<MatchResult>();
+    for (MatchResult mr : _results) {
+      if (!intersects(mr, changed)) {
+        kept.add(mr);
+      }
+    }
+    if (!_findAll && kept.size() < _results.size()) {
+      // the best match has changed, the second best is not known
+      return false;
+    }
+    try {
+      Dimension size = getTargetSize();
+      List<Rectangle> areas = tiles.searchAreas(changed, size.width, size.height);
+      long searched = 0;
+      for (Rectangle a : areas) {
+        searched += (long) a.width * a.height;
+      }
+      if (searched * 2 > (long) tiles.width * tiles.height) {
+        return false;
+      }
+      List<MatchResult> found = new ArrayList<MatchResult>(kept);
+      for (Rectangle a : areas) {
+        if (a.width < size.width || a.height < size.height) {
+          continue;
+        }
+        MatchSource src = getMatchEngine().createSource(
+                _image.getSubimage(a.x, a.y, a.width, a.height));
+        try {
+          for (MatchResult mr : src.find(_target, _similarity, _findAll, 0)) {
+            mr.x += a.x;
+            mr.y += a.y;
+            // matches in unchanged parts are already kept
+            if (intersects(mr, changed)) {
+              found.add(mr);
+            }
+          }
+        } finally {
+          src.release();
+        }
+      }
+      Debug.log(3, "Finder: %d changed areas searched (%d%% of frame)", areas.size(),
+              searched * 100 / ((long) tiles.width * tiles.height));
+      _results = MatchResult.suppressOverlaps(found, _findAll ? 0 : 1);
+      _cur_result_i = 0;
+      return true;
+    } catch (IOException e) {
+      return false;
+    }
+  }
+
+  private static boolean intersects(MatchResult mr, List<Rectangle> rects) {
+    for (Rectangle r : rects) {
+      if (r.intersects(mr.x, mr.y, mr.w, mr.h)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  private Dimension getTargetSize() throws IOException {
+    BufferedImage img;
+    if (_target.hasImage()) {
+      img = _target.getImage();
+    } else {
+      String filename = _target.getFilename();
+      if (filename == null) {
+        throw new IOException("ImageFile " + _target + " not found on disk");
+      }
+      img = PatternCache.get(filename).image;
+    }
+    return new Dimension(img.getWidth(), img.getHeight());
+  }
+
+  /**
+   * internal use: the result of the change detection of the last repeated find
+   *
+   * @return false if the frame was the same as the one before
+   */
+  boolean frameChanged() {
+    return _frameChanged;
+  }
+
 	/**
 	 * internal use: repeat find with same Finder
 	 */
 	public void findRepeat() {
-		_results = Vision.find(_findInput);
-		_cur_result_i = 0;
+		doFindRepeat();
 	}
 
   /**
@@ -127,16 +616,16 @@ public class Finder implements Iterator<Match> {
    * @param minSimilarity
    */
   public String find(String imageOrText, double minSimilarity) {
-		String target = setTargetSmartly(_findInput, imageOrText);
+		String target = setTargetSmartly(imageOrText);
     if (null == target) {
       return null;
     }
 		if (target.equals(imageOrText+"???")) {
 			return target;
 		}
-    _findInput.setSimilarity(minSimilarity);
-    _results = Vision.find(_findInput);
-    _cur_result_i = 0;
+    _similarity = minSimilarity;
+    _findAll = false;
+    doFind();
     return target;
   }
 
@@ -146,16 +635,18 @@ public class Finder implements Iterator<Match> {
    * @param aPtn
    */
   public String find(Pattern aPtn) {
-//TODO Pattern with BufferedImage
     _pattern = (Pattern) aPtn;
     String img = aPtn.getFilename();
     if (img == null) {
       return null;
     }
-		_findInput.setTarget(TARGET_TYPE.IMAGE, img);
-    _findInput.setSimilarity(aPtn.getSimilar());
-    _results = Vision.find(_findInput);
-    _cur_result_i = 0;
+    _target = aPtn;
+    _text = null;
+    _similarity = aPtn.getSimilar();
+    _findAll = false;
+    if (!doFind()) {
+      return null;
+    }
     return img;
   }
 
@@ -163,14 +654,65 @@ public class Finder implements Iterator<Match> {
     return find(imageOrText, Settings.MinSimilarity);
   }
 
+  /**
+   * find the given patterns in the stored image: the patterns are searched in parallel
+   * (see Settings.FindThreads) in the same prepared image
+   *
+   * @param patterns
+   * @return for each pattern its best match or null (not found or image file missing)
+   */
+  public List<Match> findAny(List<Pattern> patterns) {
+    return findAny(patterns, false);
+  }
+
+  /**
+   * find the given patterns in the stored image in parallel
+   *
+   * @param patterns
+   * @param firstHit true: patterns not yet searched are skipped, as soon as one is found
+   * @return for each pattern its best match or null (not found, skipped or image file missing)
+   */
+  List<Match> findAny(List<Pattern> patterns, boolean firstHit) {
+    MatchResult[] found = findAnyResults(patterns, firstHit);
+    List<Match> ret = new ArrayList<Match>(patterns.size());
+    for (int i = 0; i < found.length; i++) {
+      ret.add(found[i] == null ? null : toMatch(found[i], patterns.get(i)));
+    }
+    return ret;
+  }
+
+  private MatchResult[] findAnyResults(final List<Pattern> patterns, final boolean firstHit) {
+    final MatchResult[] found = new MatchResult[patterns.size()];
+    final AtomicBoolean hit = new AtomicBoolean(false);
+    final MatchSource src = getSource();
+    FindWorkers.invoke(patterns.size(), new FindWorkers.Job() {
+      @Override
+      public void run(int index) {
+        if (firstHit && hit.get()) {
+          return;
+        }
+        Pattern ptn = patterns.get(index);
+        try {
+          List<MatchResult> res = src.find(ptn, ptn.getSimilar(), false, 0);
+          if (!res.isEmpty()) {
+            found[index] = res.get(0);
+            hit.set(true);
+          }
+        } catch (IOException e) {
+          Debug.error("Finder.findAny: " + e.getMessage());
+        }
+      }
+    });
+    return found;
+  }
+
 	/**
 	 * internal use: repeat find with same Finder
 	 */
   public void findAllRepeat() {
     Debug timing = new Debug();
     timing.startTiming("Finder.findAll");
-    _results = Vision.find(_findInput);
-    _cur_result_i = 0;
+    doFindRepeat();
     timing.endTiming("Finder.findAll");
 	}
 
@@ -180,7 +722,7 @@ public class Finder implements Iterator<Match> {
    * @param minSimilarity
    */
   public String findAll(String imageOrText, double minSimilarity) {
-		String target = setTargetSmartly(_findInput, imageOrText);
+		String target = setTargetSmartly(imageOrText);
     if (null == target) {
       return null;
     }
@@ -190,11 +732,10 @@ public class Finder implements Iterator<Match> {
     Debug timing = new Debug();
     timing.startTiming("Finder.findAll");
 
-    setTargetSmartly(_findInput, imageOrText);
-    _findInput.setSimilarity(minSimilarity);
-    _findInput.setFindAll(true);
-    _results = Vision.find(_findInput);
-    _cur_result_i = 0;
+    _similarity = minSimilarity;
+    _findAll = true;
+    _limit = 0;
+    doFind();
 
     timing.endTiming("Finder.findAll");
     return target;
@@ -206,32 +747,87 @@ public class Finder implements Iterator<Match> {
    * @param aPtn
    */
   public String findAll(Pattern aPtn)  {
+    return findAll(aPtn, 0);
+  }
+
+  /**
+   * find all occurrences of the given pattern within the stored image
+   * (with the native engine the image is searched in parallel tiles)
+   *
+   * @param aPtn
+   * @param limit max number of matches (the best ones, 0 = no limit)
+   */
+  public String findAll(Pattern aPtn, int limit)  {
     _pattern = (Pattern) aPtn;
     String img = aPtn.getFilename();
     if (img == null) {
       return null;
     }
-		_findInput.setTarget(TARGET_TYPE.IMAGE, img);
-    _findInput.setSimilarity(aPtn.getSimilar());
-    _findInput.setFindAll(true);
+    _target = aPtn;
+    _text = null;
+    _similarity = aPtn.getSimilar();
+    _findAll = true;
+    _limit = limit;
     Debug timing = new Debug();
     timing.startTiming("Finder.findAll");
-    _results = Vision.find(_findInput);
-    _cur_result_i = 0;
+    boolean ok = doFind();
     timing.endTiming("Finder.findAll");
-    return aPtn.getFilename();
+    if (!ok) {
+      return null;
+    }
+    return img;
   }
 
   public String findAll(String imageOrText) {
     return findAll(imageOrText, Settings.MinSimilarity);
   }
 
-	private String setTargetSmartly(FindInput fin, String target) {
+  /**
+   * find all occurrences of the given pattern within the stored image: the image is searched
+   * in parallel tiles and the matches are available through hasNext()/next() as soon as their
+   * tile is searched (hasNext() waits for the next tile if needed)<br />
+   * the matches are not sorted by score
+   *
+   * @param aPtn
+   * @param limit max number of matches (0 = no limit)
+   * @return the image file or null if the image cannot be loaded
+   */
+  public String findAllStreamed(Pattern aPtn, int limit) {
+    String img = aPtn.getFilename();
+    if (img == null) {
+      return null;
+    }
+    doFindStreamed(aPtn, limit);
+    return _stream == null ? null : img;
+  }
+
+  private void doFindStreamed(Pattern aPtn, int limit) {
+    stopStream();
+    _pattern = aPtn;
+    _target = aPtn;
+    _text = null;
+    _similarity = aPtn.getSimilar();
+    _findAll = true;
+    _limit = limit;
+    _results = null;
+    _tiles = null;
+    try {
+      Dimension size = getTargetSize();
+      _stream = new TiledFindAll(getMatchEngine(), _image, aPtn, size.width, size.height,
+              _similarity, limit);
+      _stream.start();
+    } catch (IOException e) {
+      Debug.error("Finder: " + e.getMessage());
+    }
+  }
+
+	private String setTargetSmartly(String target) {
 		if (isImageFile(target)) {
 			try {
 				//assume it's a file first
 				String filename = ImageLocator.locate(target);
-				fin.setTarget(TARGET_TYPE.IMAGE, filename);
+				_target = new Pattern(filename);
+				_text = null;
 				return filename;
 			} catch (IOException e) {
 				if (!repeating) {
@@ -244,7 +840,8 @@ public class Finder implements Iterator<Match> {
 			Debug.error("Region.find(text): text search is currently switched off");
 			return target + "???";
 		} else {
-			fin.setTarget(TARGET_TYPE.TEXT, target);
+			_text = target;
+			_target = null;
 			if (TextRecognizer.getInstance() == null) {
   			Debug.error("Region.find(text): text search is now switched off");
     		return target + "???";
@@ -271,6 +868,9 @@ public class Finder implements Iterator<Match> {
    */
   @Override
   public boolean hasNext() {
+    if (_stream != null) {
+      return _stream.hasNext();
+    }
     if (_results != null && _results.size() > _cur_result_i) {
       return true;
     }
@@ -284,21 +884,28 @@ public class Finder implements Iterator<Match> {
   @Override
   public Match next() {
     Match ret = null;
-    if (hasNext()) {
-      FindResult fr = _results.get(_cur_result_i++);
-      Screen parentScreen = null;
-      if (_region != null) {
-        parentScreen = _region.getScreen();
-      }
-      ret = new Match(fr, parentScreen);
-			fr.delete();
-      if (_region != null) {
-        ret = _region.toGlobalCoord(ret);
-      }
-      if (_pattern != null) {
-        Location offset = _pattern.getTargetOffset();
-        ret.setTargetOffset(offset);
+    if (_stream != null) {
+      if (_stream.hasNext()) {
+        ret = toMatch(_stream.next(), _pattern);
       }
+    } else if (hasNext()) {
+      ret = toMatch(_results.get(_cur_result_i++), _pattern);
+    }
+    return ret;
+  }
+
+  private Match toMatch(MatchResult fr, Pattern ptn) {
+    Screen parentScreen = null;
+    if (_region != null) {
+      parentScreen = _region.getScreen();
+    }
+    Match ret = new Match(fr, parentScreen);
+    if (_region != null) {
+      ret = _region.toGlobalCoord(ret);
+    }
+    if (ptn != null) {
+      Location offset = ptn.getTargetOffset();
+      ret.setTargetOffset(offset);
     }
     return ret;
   }
@@ -0,0 +1,39 @@
+/*
+ * Copyright 2010-2013, Sikuli.org
+ * Released under the MIT License.
+ *
+ */
+package org.sikuli.script;
+
+/**
+ * scans with a fixed number of scans per second
+ */
+public class FixedScanRate implements ScanRatePolicy {
+
+  private final float rate;
+
+  /**
+   * uses Settings.WaitScanRate (read with each scan)
+   */
+  public FixedScanRate() {
+    rate = 0;
+  }
+
+  /**
+   *
+   * @param rate scans per second
+   */
+  public FixedScanRate(float rate) {
+    this.rate = rate;
+  }
+
+  @Override
+  public long getInterval(long sinceInput, long sinceChange) {
+    return (long) (1000.0 / (rate > 0 ? rate : Settings.WaitScanRate));
+  }
+
+  @Override
+  public String toString() {
+    return String.format("FixedScanRate(%.1f)", rate > 0 ? rate : Settings.WaitScanRate);
+  }
+}
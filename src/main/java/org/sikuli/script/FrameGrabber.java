@@ -0,0 +1,179 @@
+/*
+ * Copyright 2010-2013, Sikuli.org
+ * Released under the MIT License.
+ *
+ */
+package org.sikuli.script;
+
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+/**
+ * shares the captures of a screen between the regions searched on it at the same time
+ * (e.g. several threads waiting/observing on the same screen)<br />
+ * a capture covers the union of all regions currently registered (wait/observe running)
+ * and is handed out as subimage (no copy) to every region inside it, as long as it is not
+ * older than Settings.MaxFrameAge<br />
+ * used by Region if Settings.MaxFrameAge &gt; 0 and for scans, that are due at the same time
+ * (see ScanScheduler)
+ */
+public class FrameGrabber {
+
+  /**
+   * the grabbers by screen id (all Screen objects of a screen share its captures),
+   * the union of all screens (ScreenUnion) has id -1
+   */
+  private static final Map<Integer, FrameGrabber> grabbers = new HashMap<Integer, FrameGrabber>();
+  private final Screen _screen;
+  private final Map<Region, Integer> _regions = new IdentityHashMap<Region, Integer>();
+  private ScreenImage _frame = null;
+  private long _frameTime = 0;
+  private long _sharedUntil = 0;
+  private long _captures = 0;
+  private long _shared = 0;
+
+  private FrameGrabber(Screen scr) {
+    _screen = scr;
+  }
+
+  /**
+   *
+   * @param scr
+   * @return the FrameGrabber of the given screen
+   */
+  public static FrameGrabber get(Screen scr) {
+    Integer id = scr instanceof ScreenUnion ? -1 : scr.getID();
+    synchronized (grabbers) {
+      FrameGrabber fg = grabbers.get(id);
+      if (fg == null) {
+        fg = new FrameGrabber(scr);
+        grabbers.put(id, fg);
+      }
+      return fg;
+    }
+  }
+
+  /**
+   * drop the current captures of all screens (a mouse or keyboard action might have
+   * changed the content of any screen, see RobotDesktop)
+   */
+  public static void invalidateAll() {
+    FrameGrabber[] all;
+    synchronized (grabbers) {
+      all = grabbers.values().toArray(new FrameGrabber[grabbers.size()]);
+    }
+    for (FrameGrabber fg : all) {
+      fg.invalidate();
+    }
+  }
+
+  /**
+   * the region will be searched repeatedly: its rectangle is included in the captures
+   *
+   * @param reg
+   */
+  public synchronized void register(Region reg) {
+    Integer n = _regions.get(reg);
+    _regions.put(reg, n == null ? 1 : n + 1);
+  }
+
+  /**
+   * the region's repeated search has ended
+   *
+   * @param reg
+   */
+  public synchronized void unregister(Region reg) {
+    Integer n = _regions.get(reg);
+    if (n == null || n <= 1) {
+      _regions.remove(reg);
+    } else {
+      _regions.put(reg, n - 1);
+    }
+    if (_regions.isEmpty()) {
+      _frame = null;
+      _sharedUntil = 0;
+    }
+  }
+
+  /**
+   * the image of the given rectangle, taken from the current capture if it contains the
+   * rectangle and is not older than Settings.MaxFrameAge, otherwise a new capture
+   * of all registered regions is made
+   *
+   * @param rect
+   * @return the image (a subimage of the capture)
+   */
+  public synchronized ScreenImage capture(Rectangle rect) {
+    Rectangle bounds = _screen.getBounds();
+    rect = rect.intersection(bounds);
+    long now = System.currentTimeMillis();
+    if (_frame == null || (now - _frameTime > Settings.MaxFrameAge * 1000 && now > _sharedUntil)
+            || !_frame.getROI().contains(rect)) {
+      Rectangle union = new Rectangle(rect);
+      for (Region reg : _regions.keySet()) {
+        union = union.union(reg.getRect());
+      }
+      _frame = _screen.capture(union.intersection(bounds));
+      _frameTime = now;
+      _captures++;
+    } else {
+      _shared++;
+    }
+    Rectangle roi = _frame.getROI();
+    BufferedImage img = _frame.getImage().getSubimage(
+            rect.x - roi.x, rect.y - roi.y, rect.width, rect.height);
+    ScreenImage simg = new ScreenImage(rect, img);
+    _screen.lastScreenImage = simg;
+    return simg;
+  }
+
+  /**
+   * capture the given area now for the scans, that are due at the same time
+   * (see ScanScheduler): the capture is handed out for Settings.ScanCoalesceTime
+   * even if Settings.MaxFrameAge is 0
+   *
+   * @param union the area of all regions to be scanned
+   */
+  synchronized void share(Rectangle union) {
+    long now = System.currentTimeMillis();
+    _frame = _screen.capture(union.intersection(_screen.getBounds()));
+    _frameTime = now;
+    _sharedUntil = now + (long) (Settings.ScanCoalesceTime * 1000);
+    _captures++;
+  }
+
+  /**
+   *
+   * @return true if there is a capture made by share(), that can still be handed out
+   */
+  synchronized boolean isShared() {
+    return _frame != null && System.currentTimeMillis() <= _sharedUntil;
+  }
+
+  /**
+   * drop the current capture (e.g. the screen content is known to be changed)
+   */
+  public synchronized void invalidate() {
+    _frame = null;
+    _sharedUntil = 0;
+  }
+
+  /**
+   *
+   * @return the number of captures made
+   */
+  public synchronized long getCaptures() {
+    return _captures;
+  }
+
+  /**
+   *
+   * @return the number of images taken from an existing capture
+   */
+  public synchronized long getShared() {
+    return _shared;
+  }
+}
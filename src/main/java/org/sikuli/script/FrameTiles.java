@@ -0,0 +1,140 @@
+/*
+ * Copyright 2010-2013, Sikuli.org
+ * Released under the MIT License.
+ *
+ */
+package org.sikuli.script;
+
+import java.awt.Rectangle;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * the hashes of the tiles (TILE_SIZE x TILE_SIZE pixels) of a frame,
+ * used to find the areas, that changed between two frames of a repeated search
+ */
+class FrameTiles {
+
+  static final int TILE_SIZE = 32;
+  final int width, height, cols, rows;
+  final long[] hashes;
+
+  FrameTiles(PixelImage img) {
+    width = img.width;
+    height = img.height;
+    cols = (width + TILE_SIZE - 1) / TILE_SIZE;
+    rows = (height + TILE_SIZE - 1) / TILE_SIZE;
+    hashes = new long[cols * rows];
+    for (int r = 0; r < rows; r++) {
+      int th = Math.min(TILE_SIZE, height - r * TILE_SIZE);
+      for (int c = 0; c < cols; c++) {
+        int tw = Math.min(TILE_SIZE, width - c * TILE_SIZE);
+        hashes[r * cols + c] = img.crop(c * TILE_SIZE, r * TILE_SIZE, tw, th).hash();
+      }
+    }
+  }
+
+  /**
+   *
+   * @return the hash of the whole frame (combined from the tile hashes)
+   */
+  long hash() {
+    long h = ((long) width << 32) | height;
+    for (long t : hashes) {
+      h = h * 1000003L ^ t;
+    }
+    return h;
+  }
+
+  /**
+   *
+   * @param other
+   * @return true if both frames have the same size
+   */
+  boolean sameSize(FrameTiles other) {
+    return other.width == width && other.height == height;
+  }
+
+  /**
+   * the changed tiles compared to the previous frame (of the same size),
+   * neighbouring tiles are merged into rectangles
+   *
+   * @param previous
+   * @return the changed rectangles in pixels (empty if nothing changed)
+   */
+  List<Rectangle> changed(FrameTiles previous) {
+    List<Rectangle> ret = new ArrayList<Rectangle>();
+    List<Rectangle> above = new ArrayList<Rectangle>();
+    for (int r = 0; r < rows; r++) {
+      List<Rectangle> row = new ArrayList<Rectangle>();
+      int c = 0;
+      while (c < cols) {
+        if (hashes[r * cols + c] == previous.hashes[r * cols + c]) {
+          c++;
+          continue;
+        }
+        int c0 = c;
+        while (c < cols && hashes[r * cols + c] != previous.hashes[r * cols + c]) {
+          c++;
+        }
+        Rectangle run = new Rectangle(c0 * TILE_SIZE, r * TILE_SIZE,
+                (c - c0) * TILE_SIZE, TILE_SIZE);
+        // continue a run of the row above with the same columns
+        Rectangle merged = null;
+        for (Rectangle a : above) {
+          if (a.x == run.x && a.width == run.width) {
+            merged = a;
+            break;
+          }
+        }
+        if (merged != null) {
+          merged.height += TILE_SIZE;
+          row.add(merged);
+        } else {
+          ret.add(run);
+          row.add(run);
+        }
+      }
+      above = row;
+    }
+    Rectangle frame = new Rectangle(0, 0, width, height);
+    for (Rectangle rect : ret) {
+      rect.setBounds(rect.intersection(frame));
+    }
+    return ret;
+  }
+
+  /**
+   * the areas to be searched again for a target of the given size: each changed rectangle
+   * is expanded by the target size (any match position overlapping a changed pixel lies inside),
+   * overlapping areas are merged
+   *
+   * @param changed see changed()
+   * @param tw target width
+   * @param th target height
+   * @return the areas clipped to the frame
+   */
+  List<Rectangle> searchAreas(List<Rectangle> changed, int tw, int th) {
+    Rectangle frame = new Rectangle(0, 0, width, height);
+    List<Rectangle> areas = new ArrayList<Rectangle>();
+    for (Rectangle c : changed) {
+      Rectangle a = new Rectangle(c.x - tw + 1, c.y - th + 1, c.width + 2 * (tw - 1),
+              c.height + 2 * (th - 1));
+      areas.add(a.intersection(frame));
+    }
+    boolean merged = true;
+    while (merged) {
+      merged = false;
+      for (int i = 0; i < areas.size() && !merged; i++) {
+        for (int j = i + 1; j < areas.size(); j++) {
+          if (areas.get(i).intersects(areas.get(j))) {
+            areas.set(i, areas.get(i).union(areas.remove(j)));
+            merged = true;
+            break;
+          }
+        }
+      }
+    }
+    return areas;
+  }
+}
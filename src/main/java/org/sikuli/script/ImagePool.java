@@ -0,0 +1,148 @@
+/*
+ * Copyright 2010-2013, Sikuli.org
+ * Released under the MIT License.
+ *
+ */
+package org.sikuli.script;
+
+import java.awt.image.BufferedImage;
+import java.util.Iterator;
+import java.util.LinkedList;
+
+/**
+ * reuses the images (TYPE_INT_RGB) of screen captures, that are combined from parts
+ * (a capture across screens, see ScreenUnion)<br />
+ * the capture of a single screen is not pooled: Robot.createScreenCapture always
+ * allocates a new image, it cannot write into a given one<br />
+ * an image is taken with get() and given back with release(), when it is no longer used
+ * (ScreenImage.release(), done by the Finder for the captures of Region.find/wait/...)<br />
+ * at most Settings.ImagePoolSize images are kept (0 = no pooling)<br />
+ * the statistics count the images of the pool only
+ */
+public class ImagePool {
+
+  private static final LinkedList<BufferedImage> pool = new LinkedList<BufferedImage>();
+  private static long allocations = 0;
+  private static long allocatedBytes = 0;
+  private static long reuses = 0;
+  private static long releases = 0;
+
+  /**
+   * a TYPE_INT_RGB image of the given size (content undefined)
+   *
+   * @param w
+   * @param h
+   * @return a pooled or new image
+   */
+  public static BufferedImage get(int w, int h) {
+    synchronized (pool) {
+      for (Iterator<BufferedImage> it = pool.iterator(); it.hasNext();) {
+        BufferedImage img = it.next();
+        if (img.getWidth() == w && img.getHeight() == h) {
+          it.remove();
+          reuses++;
+          return img;
+        }
+      }
+    }
+    BufferedImage img = new BufferedImage(w, h, BufferedImage.TYPE_INT_RGB);
+    synchronized (pool) {
+      allocations++;
+      allocatedBytes += 4L * w * h;
+    }
+    return img;
+  }
+
+  /**
+   * give back an image taken with get(), it must not be used afterwards
+   *
+   * @param img
+   */
+  public static void release(BufferedImage img) {
+    if (img == null || img.getType() != BufferedImage.TYPE_INT_RGB) {
+      return;
+    }
+    synchronized (pool) {
+      releases++;
+      if (Settings.ImagePoolSize <= 0) {
+        return;
+      }
+      pool.addFirst(img);
+      while (pool.size() > Settings.ImagePoolSize) {
+        pool.removeLast();
+      }
+    }
+  }
+
+  /**
+   * drop all pooled images
+   */
+  public static void clear() {
+    synchronized (pool) {
+      pool.clear();
+    }
+  }
+
+  /**
+   *
+   * @return the number of images newly allocated by get()
+   */
+  public static long getAllocations() {
+    synchronized (pool) {
+      return allocations;
+    }
+  }
+
+  /**
+   *
+   * @return the memory of the images newly allocated by get() in bytes
+   */
+  public static long getAllocatedBytes() {
+    synchronized (pool) {
+      return allocatedBytes;
+    }
+  }
+
+  /**
+   *
+   * @return the number of images taken from the pool instead of being allocated
+   */
+  public static long getReuses() {
+    synchronized (pool) {
+      return reuses;
+    }
+  }
+
+  /**
+   *
+   * @return the number of images given back
+   */
+  public static long getReleases() {
+    synchronized (pool) {
+      return releases;
+    }
+  }
+
+  /**
+   * reset the counters
+   */
+  public static void resetStatistics() {
+    synchronized (pool) {
+      allocations = 0;
+      allocatedBytes = 0;
+      reuses = 0;
+      releases = 0;
+    }
+  }
+
+  /**
+   *
+   * @return a printable summary of the counters
+   */
+  public static String getStatistics() {
+    synchronized (pool) {
+      return String.format("ImagePool: allocated: %d (%.1f MB), reused: %d, released: %d, pooled: %d",
+              allocations, allocatedBytes / 1048576.0, reuses, releases, pool.size());
+    }
+  }
+}
@@ -0,0 +1,787 @@
+/*
+ * Copyright 2010-2013, Sikuli.org
+ * Released under the MIT License.
+ *
+ */
+package org.sikuli.script;
+
+import java.awt.Point;
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * the image search in pure Java (no native libraries needed)<br />
+ * the score is the normalized cross correlation of the mean adjusted colors
+ * (same as OpenCV's CV_TM_CCOEFF_NORMED as used by the native engine),
+ * for plain colored images (no variance) the normalized square difference is used<br />
+ * the inner loop of the correlation is a CorrelationKernel (see Settings.CorrelationKernel)<br />
+ * the rows of the image are searched in parallel (see Settings.FindThreads)<br />
+ * with Pattern.fast()/minScale() candidates are searched in downscaled images first
+ * and then checked in full resolution<br />
+ * with Pattern.firstHit() the search stops at the first block of positions with a hit<br />
+ * with Pattern.grayscale()/scale() the search is done in converted images, that are kept
+ * for all patterns searched in the same image
+ */
+public class JavaMatchEngine implements MatchEngine {
+
+  /**
+   * rows of possible match positions searched by one job
+   */
+  static final int BAND_ROWS = 16;
+  /**
+   * first hit search: columns of match positions in one block (BAND_ROWS rows)
+   */
+  static final int BLOCK_COLS = 64;
+  /**
+   * coarse to fine: min size of the downscaled target, max downscale factor,
+   * the score candidates may lose in the downscaled image
+   * and the number of candidates checked for the best match
+   */
+  static final int PYRAMID_MIN_SIZE = 8;
+  static final int PYRAMID_MAX_FACTOR = 16;
+  static final double PYRAMID_MARGIN = 0.2;
+  static final int PYRAMID_CANDIDATES = 5;
+  /**
+   * prefilter: a position is skipped only if its bound is lower than needed by this
+   * (rounding of the float correlation)
+   */
+  static final double BOUND_TOLERANCE = 1e-4;
+  private static final AtomicLong positions = new AtomicLong(0);
+  private static final CorrelationKernel SCALAR = new ScalarKernel();
+  private static final CorrelationKernel PLANAR = new PlanarKernel();
+  private static final AtomicLong prunedPositions = new AtomicLong(0);
+
+  @Override
+  public String getName() {
+    return "java";
+  }
+
+  @Override
+  public boolean isAvailable() {
+    return true;
+  }
+
+  @Override
+  public MatchSource createSource(BufferedImage img) {
+    return new JavaSource(img);
+  }
+
+  private static class JavaSource implements MatchSource {
+
+    private BufferedImage _img;
+    private PixelImage _pixels = null;
+    private Map<Integer, PixelImage> _scaled = new HashMap<Integer, PixelImage>();
+    /**
+     * the downscaled images of the previous frame, their pixel arrays are reused
+     */
+    private Map<Integer, PixelImage> _previous = new HashMap<Integer, PixelImage>();
+
+    JavaSource(BufferedImage img) {
+      _img = img;
+    }
+
+    @Override
+    public synchronized void setImage(BufferedImage img) {
+      _img = img;
+      _pixels = null;
+      _previous.putAll(_scaled);
+      _scaled.clear();
+    }
+
+    @Override
+    public BufferedImage getImage() {
+      return _img;
+    }
+
+    private synchronized PixelImage getPixels() {
+      if (_pixels == null) {
+        _pixels = PixelImage.create(_img);
+      }
+      return _pixels;
+    }
+
+    /**
+     * the converted image, kept for all searches in the same image
+     *
+     * @param factor downscale factor (1 = full resolution)
+     * @param gray true: grayscale
+     */
+    private synchronized PixelImage getPixels(int factor, boolean gray) {
+      if (factor == 1 && !gray) {
+        return getPixels();
+      }
+      int key = gray ? -factor : factor;
+      PixelImage scaled = _scaled.get(key);
+      if (scaled == null) {
+        PixelImage previous = _previous.remove(key);
+        int[] buffer = previous == null ? null : previous.data;
+        if (factor == 1) {
+          scaled = getPixels().toGray(buffer);
+        } else {
+          scaled = getPixels(1, gray).scaleDown(factor, buffer);
+        }
+        _scaled.put(key, scaled);
+      }
+      return scaled;
+    }
+
+    @Override
+    public List<MatchResult> find(Pattern ptn, double minSimilarity, boolean findAll, int limit)
+            throws IOException {
+      return find(ptn, minSimilarity, findAll, limit, null);
+    }
+
+    @Override
+    public List<MatchResult> findFirst(Pattern ptn, double minSimilarity, Point start)
+            throws IOException {
+      if (start == null) {
+        BufferedImage img = getImage();
+        start = new Point(img.getWidth() / 2, img.getHeight() / 2);
+      }
+      return find(ptn, minSimilarity, false, 0, start);
+    }
+
+    /**
+     * @param start null: best result, otherwise first hit near start
+     */
+    private List<MatchResult> find(Pattern ptn, double minSimilarity, boolean findAll, int limit,
+            Point start) throws IOException {
+      PatternCache.Entry cached = null;
+      PixelImage target;
+      if (ptn.hasImage()) {
+        target = PixelImage.create(ptn.getImage());
+      } else {
+        String filename = ptn.getFilename();
+        if (filename == null) {
+          throw new IOException("ImageFile " + ptn + " not found on disk");
+        }
+        cached = PatternCache.get(filename);
+        target = cached.getPixels();
+      }
+      boolean gray = ptn.isGrayscale();
+      int scale = scaleFactor(target, ptn.getScale());
+      Template t = getTemplate(cached, target, scale, gray);
+      PixelImage img = getPixels(scale, gray);
+      if (start != null && scale > 1) {
+        start = new Point(start.x / scale, start.y / scale);
+      }
+      int factor = pyramidFactor(t.w, t.h, ptn.getMinScale() * scale);
+      List<MatchResult> ret;
+      if (factor > 1) {
+        Template coarse = getTemplate(cached, target, scale * factor, gray);
+        PixelImage scaled = getPixels(scale * factor, gray);
+        if (start != null) {
+          ret = findPyramidFirst(img, scaled, t, coarse, factor, minSimilarity, start);
+        } else {
+          ret = findPyramid(img, scaled, t, coarse, factor, minSimilarity, findAll, limit);
+        }
+      } else if (start != null) {
+        ret = JavaMatchEngine.findFirst(img, t, minSimilarity, start);
+      } else {
+        ret = JavaMatchEngine.find(img, t, minSimilarity, findAll, limit);
+      }
+      if (scale > 1) {
+        for (MatchResult mr : ret) {
+          mr.x *= scale;
+          mr.y *= scale;
+          mr.w = target.width;
+          mr.h = target.height;
+        }
+      }
+      return ret;
+    }
+
+    @Override
+    public List<MatchResult> findText(String text, double minSimilarity, boolean findAll) {
+      Debug.error("JavaMatchEngine: text search not supported - use the native engine");
+      return null;
+    }
+
+    @Override
+    public synchronized void release() {
+      _img = null;
+      _pixels = null;
+      _scaled.clear();
+      _previous.clear();
+    }
+  }
+
+  /**
+   * the image to search for prepared for the correlation
+   */
+  static class Template {
+
+    final int w, h, n;
+    /**
+     * the color values minus the color's mean (planar)
+     */
+    final float[] r, g, b;
+    /**
+     * the sum of the squared mean adjusted values (all channels)
+     */
+    final double norm;
+    /**
+     * the sums of the squared mean adjusted values per channel (used by the prefilter)
+     */
+    final double normR, normG, normB;
+    /**
+     * the color means and the sum of the squared values (used for plain colored images)
+     */
+    final double meanR, meanG, meanB, sumSq;
+    final boolean plain;
+    /**
+     * made from a grayscale image (see PixelImage.toGray()): only the blue values are used
+     */
+    final boolean gray;
+
+    Template(PixelImage img) {
+      this(img, false);
+    }
+
+    Template(PixelImage img, boolean gray) {
+      this.gray = gray;
+      w = img.width;
+      h = img.height;
+      n = w * h;
+      r = new float[n];
+      g = new float[n];
+      b = new float[n];
+      long sR = 0, sG = 0, sB = 0, sSq = 0;
+      int k = 0;
+      for (int y = 0; y < h; y++) {
+        int p = img.offset + y * img.stride;
+        for (int x = 0; x < w; x++, k++) {
+          int c = img.data[p + x];
+          int cr = (c >> 16) & 0xff, cg = (c >> 8) & 0xff, cb = c & 0xff;
+          r[k] = cr;
+          g[k] = cg;
+          b[k] = cb;
+          sR += cr;
+          sG += cg;
+          sB += cb;
+          sSq += cr * cr + cg * cg + cb * cb;
+        }
+      }
+      meanR = (double) sR / n;
+      meanG = (double) sG / n;
+      meanB = (double) sB / n;
+      sumSq = sSq;
+      double nR = 0, nG = 0, nB = 0;
+      for (k = 0; k < n; k++) {
+        r[k] -= meanR;
+        g[k] -= meanG;
+        b[k] -= meanB;
+        nR += r[k] * r[k];
+        nG += g[k] * g[k];
+        nB += b[k] * b[k];
+      }
+      normR = nR;
+      normG = nG;
+      normB = nB;
+      norm = nR + nG + nB;
+      plain = norm < n;
+    }
+  }
+
+  /**
+   * search the template in the image
+   *
+   * @param img
+   * @param t
+   * @param minSimilarity
+   * @param findAll
+   * @param limit
+   * @return the results sorted by descending score
+   */
+  static List<MatchResult> find(final PixelImage img, final Template t,
+          final double minSimilarity, final boolean findAll, int limit) {
+    List<MatchResult> ret = new ArrayList<MatchResult>();
+    final int rw = img.width - t.w + 1;
+    final int rh = img.height - t.h + 1;
+    if (rw < 1 || rh < 1) {
+      return ret;
+    }
+    final int bands = (rh + BAND_ROWS - 1) / BAND_ROWS;
+    final MatchResult[] best = new MatchResult[bands];
+    final List<List<MatchResult>> found = new ArrayList<List<MatchResult>>(bands);
+    for (int i = 0; i < bands; i++) {
+      found.add(null);
+    }
+    FindWorkers.invoke(bands, new FindWorkers.Job() {
+      @Override
+      public void run(int band) {
+        int y0 = band * BAND_ROWS;
+        int y1 = Math.min(rh, y0 + BAND_ROWS);
+        float[] scores = findAll ? new float[(y1 - y0) * rw] : null;
+        best[band] = scoreBand(img, t, 0, rw, y0, y1, scores, minSimilarity);
+        if (findAll) {
+          found.set(band, localMaxima(scores, y1 - y0, rw, y0, t, minSimilarity));
+        }
+      }
+    });
+    if (!findAll) {
+      MatchResult mr = null;
+      for (int i = 0; i < bands; i++) {
+        if (best[i] != null && (mr == null || best[i].score > mr.score)) {
+          mr = best[i];
+        }
+      }
+      if (mr != null && mr.score >= minSimilarity) {
+        ret.add(mr);
+      }
+      return ret;
+    }
+    for (List<MatchResult> band : found) {
+      ret.addAll(band);
+    }
+    return MatchResult.suppressOverlaps(ret, limit);
+  }
+
+  /**
+   * the prepared target, taken from the pattern cache if the target is an image file
+   *
+   * @param cached the cache entry of the image file or null
+   * @param target the target's pixels
+   * @param factor the downscale factor (1 = full resolution)
+   */
+  static Template getTemplate(PatternCache.Entry cached, PixelImage target, int factor) {
+    return getTemplate(cached, target, factor, false);
+  }
+
+  /**
+   * the prepared target, taken from the pattern cache if the target is an image file
+   *
+   * @param cached the cache entry of the image file or null
+   * @param target the target's pixels
+   * @param factor the downscale factor (1 = full resolution)
+   * @param gray true: grayscale
+   */
+  static Template getTemplate(PatternCache.Entry cached, PixelImage target, int factor,
+          boolean gray) {
+    String key = "java/" + (gray ? "g" : "") + factor;
+    if (cached != null) {
+      Template t = (Template) cached.getPrepared(key);
+      if (t != null) {
+        return t;
+      }
+    }
+    PixelImage img = gray ? target.toGray(null) : target;
+    Template t = new Template(factor > 1 ? img.scaleDown(factor) : img, gray);
+    if (cached != null) {
+      cached.setPrepared(key, t, 12L * t.n);
+    }
+    return t;
+  }
+
+  /**
+   * the downscale factor (power of 2) for coarse to fine search
+   *
+   * @param target
+   * @param minScale see Pattern.minScale()
+   * @return 1 if the target is too small or minScale is 1
+   */
+  static int pyramidFactor(PixelImage target, float minScale) {
+    return pyramidFactor(target.width, target.height, minScale);
+  }
+
+  /**
+   * the downscale factor (power of 2) for coarse to fine search
+   *
+   * @param w the target's width
+   * @param h the target's height
+   * @param minScale see Pattern.minScale()
+   * @return 1 if the target is too small or minScale is 1
+   */
+  static int pyramidFactor(int w, int h, float minScale) {
+    int factor = 1;
+    int size = Math.min(w, h);
+    while (factor < PYRAMID_MAX_FACTOR && size / (factor * 2) >= PYRAMID_MIN_SIZE
+            && (minScale <= 0 || 1f / (factor * 2) >= minScale)) {
+      factor *= 2;
+    }
+    return factor;
+  }
+
+  /**
+   * the downscale factor for Pattern.scale(): 1/scale rounded, the downscaled target
+   * keeps at least PYRAMID_MIN_SIZE pixels in both directions
+   *
+   * @param target
+   * @param scale see Pattern.scale()
+   * @return 1 = full resolution
+   */
+  static int scaleFactor(PixelImage target, float scale) {
+    int factor = scale >= 1 ? 1 : Math.round(1 / scale);
+    int size = Math.min(target.width, target.height);
+    while (factor > 1 && size / factor < PYRAMID_MIN_SIZE) {
+      factor--;
+    }
+    return factor;
+  }
+
+  /**
+   * coarse to fine: search candidates in the downscaled image with a lowered similarity
+   * and then search again in full resolution only around the candidates
+   */
+  static List<MatchResult> findPyramid(PixelImage img, PixelImage scaled, Template t,
+          Template coarse, int factor, double minSimilarity, boolean findAll, int limit) {
+    List<MatchResult> candidates = find(scaled, coarse,
+            Math.max(0, minSimilarity - PYRAMID_MARGIN), true, findAll ? 0 : PYRAMID_CANDIDATES);
+    List<MatchResult> ret = new ArrayList<MatchResult>();
+    for (MatchResult c : candidates) {
+      int x0 = Math.max(0, (c.x - 1) * factor);
+      int y0 = Math.max(0, (c.y - 1) * factor);
+      int x1 = Math.min(img.width - t.w, (c.x + 1) * factor);
+      int y1 = Math.min(img.height - t.h, (c.y + 1) * factor);
+      if (x1 < x0 || y1 < y0) {
+        continue;
+      }
+      PixelImage window = img.crop(x0, y0, x1 - x0 + t.w, y1 - y0 + t.h);
+      for (MatchResult mr : find(window, t, minSimilarity, false, 0)) {
+        mr.x += x0;
+        mr.y += y0;
+        ret.add(mr);
+      }
+    }
+    ret = MatchResult.suppressOverlaps(ret, findAll ? limit : 1);
+    return ret;
+  }
+
+  /**
+   * first hit search: the match positions are evaluated in blocks (BAND_ROWS x BLOCK_COLS)
+   * ordered by their distance from start (a spiral around start), the search stops after
+   * the first block containing a position with at least minSimilarity<br />
+   * the blocks are searched in parallel, the nearest block with a hit is taken and the best
+   * position around the hit is returned
+   *
+   * @param img
+   * @param t
+   * @param minSimilarity
+   * @param start the preferred position
+   * @return the result or empty
+   */
+  static List<MatchResult> findFirst(final PixelImage img, final Template t,
+          final double minSimilarity, final Point start) {
+    List<MatchResult> ret = new ArrayList<MatchResult>();
+    final int rw = img.width - t.w + 1;
+    final int rh = img.height - t.h + 1;
+    if (rw < 1 || rh < 1) {
+      return ret;
+    }
+    final List<Rectangle> blocks = new ArrayList<Rectangle>();
+    for (int y = 0; y < rh; y += BAND_ROWS) {
+      for (int x = 0; x < rw; x += BLOCK_COLS) {
+        blocks.add(new Rectangle(x, y, Math.min(BLOCK_COLS, rw - x), Math.min(BAND_ROWS, rh - y)));
+      }
+    }
+    Collections.sort(blocks, new Comparator<Rectangle>() {
+      @Override
+      public int compare(Rectangle b1, Rectangle b2) {
+        long d1 = distance(b1, start), d2 = distance(b2, start);
+        return d1 < d2 ? -1 : (d1 > d2 ? 1 : 0);
+      }
+    });
+    final MatchResult[] hits = new MatchResult[blocks.size()];
+    final AtomicInteger first = new AtomicInteger(Integer.MAX_VALUE);
+    FindWorkers.invoke(blocks.size(), new FindWorkers.Job() {
+      @Override
+      public void run(int index) {
+        if (index > first.get()) {
+          return;
+        }
+        Rectangle b = blocks.get(index);
+        MatchResult best = scoreBand(img, t, b.x, b.x + b.width, b.y, b.y + b.height, null,
+                minSimilarity);
+        if (best != null && best.score >= minSimilarity) {
+          hits[index] = best;
+          int f;
+          while (index < (f = first.get()) && !first.compareAndSet(f, index)) {
+          }
+        }
+      }
+    });
+    if (first.get() == Integer.MAX_VALUE) {
+      return ret;
+    }
+    MatchResult hit = hits[first.get()];
+    // the peak might lie in a neighbouring block
+    int x0 = Math.max(0, hit.x - t.w / 2), y0 = Math.max(0, hit.y - t.h / 2);
+    int x1 = Math.min(rw, hit.x + t.w / 2 + 1), y1 = Math.min(rh, hit.y + t.h / 2 + 1);
+    MatchResult best = scoreBand(img, t, x0, x1, y0, y1, null, minSimilarity);
+    ret.add(best != null && best.score > hit.score ? best : hit);
+    return ret;
+  }
+
+  /**
+   * the squared distance of the block from the point (0 if inside)
+   */
+  private static long distance(Rectangle b, Point p) {
+    long dx = p.x < b.x ? b.x - p.x : Math.max(0, p.x - (b.x + b.width - 1));
+    long dy = p.y < b.y ? b.y - p.y : Math.max(0, p.y - (b.y + b.height - 1));
+    return dx * dx + dy * dy;
+  }
+
+  /**
+   * coarse to fine first hit search: all candidates of the downscaled image are checked
+   * in full resolution in the order of their distance from start until one is confirmed
+   */
+  static List<MatchResult> findPyramidFirst(PixelImage img, PixelImage scaled, Template t,
+          Template coarse, int factor, double minSimilarity, final Point start) {
+    List<MatchResult> candidates = find(scaled, coarse,
+            Math.max(0, minSimilarity - PYRAMID_MARGIN), true, 0);
+    final int f = factor;
+    Collections.sort(candidates, new Comparator<MatchResult>() {
+      @Override
+      public int compare(MatchResult c1, MatchResult c2) {
+        long d1 = distance(new Rectangle(c1.x * f, c1.y * f, 1, 1), start);
+        long d2 = distance(new Rectangle(c2.x * f, c2.y * f, 1, 1), start);
+        return d1 < d2 ? -1 : (d1 > d2 ? 1 : 0);
+      }
+    });
+    for (MatchResult c : candidates) {
+      int x0 = Math.max(0, (c.x - 1) * factor);
+      int y0 = Math.max(0, (c.y - 1) * factor);
+      int x1 = Math.min(img.width - t.w, (c.x + 1) * factor);
+      int y1 = Math.min(img.height - t.h, (c.y + 1) * factor);
+      if (x1 < x0 || y1 < y0) {
+        continue;
+      }
+      PixelImage window = img.crop(x0, y0, x1 - x0 + t.w, y1 - y0 + t.h);
+      List<MatchResult> ret = find(window, t, minSimilarity, false, 0);
+      if (!ret.isEmpty()) {
+        ret.get(0).x += x0;
+        ret.get(0).y += y0;
+        return ret;
+      }
+    }
+    return new ArrayList<MatchResult>();
+  }
+
+  /**
+   * evaluate the match positions in columns x0 ... x1-1 of rows y0 ... y1-1, the window sums
+   * are kept as column sums that are moved down row by row<br />
+   * prefilter (see Settings.MatchPrefilter): positions, whose score cannot reach minScore
+   * (or the best score so far, if scores is null) according to the window sums, are skipped
+   *
+   * @param scores if not null: filled with the scores of the block's positions (0 if skipped)
+   * @param minScore
+   * @return the best position in the block (null if all are skipped)
+   */
+  private static MatchResult scoreBand(PixelImage img, Template t, int x0, int x1, int y0, int y1,
+          float[] scores, double minScore) {
+    int bw = x1 - x0;
+    int iw = x1 + t.w - 1;
+    // the column sums of the block's columns only (index x - x0)
+    int cw = iw - x0;
+    long[] colR = new long[cw], colG = new long[cw], colB = new long[cw], colSq = new long[cw];
+    long[] colR2 = new long[cw], colG2 = new long[cw];
+    for (int y = y0; y < y0 + t.h; y++) {
+      addRow(img, y, x0, iw, colR, colG, colB, colSq, colR2, colG2, 1);
+    }
+    boolean prefilter = Settings.MatchPrefilter;
+    CorrelationKernel.Area area = getKernel().prepare(img, x0, y0, iw - x0, y1 - y0 + t.h - 1, t.gray);
+    long pruned = 0;
+    MatchResult best = null;
+    for (int y = y0; y < y1; y++) {
+      if (y > y0) {
+        addRow(img, y - 1, x0, iw, colR, colG, colB, colSq, colR2, colG2, -1);
+        addRow(img, y + t.h - 1, x0, iw, colR, colG, colB, colSq, colR2, colG2, 1);
+      }
+      long sR = 0, sG = 0, sB = 0, sSq = 0, sR2 = 0, sG2 = 0;
+      for (int c = 0; c < t.w; c++) {
+        sR += colR[c];
+        sG += colG[c];
+        sB += colB[c];
+        sSq += colSq[c];
+        sR2 += colR2[c];
+        sG2 += colG2[c];
+      }
+      int si = (y - y0) * bw - x0;
+      for (int x = x0; x < x1; x++) {
+        if (x > x0) {
+          int xo = x - 1 - x0, xi = x + t.w - 1 - x0;
+          sR += colR[xi] - colR[xo];
+          sG += colG[xi] - colG[xo];
+          sB += colB[xi] - colB[xo];
+          sSq += colSq[xi] - colSq[xo];
+          sR2 += colR2[xi] - colR2[xo];
+          sG2 += colG2[xi] - colG2[xo];
+        }
+        if (prefilter) {
+          double limit = scores == null && best != null && best.score > minScore
+                  ? best.score : minScore;
+          if (bound(t, sR, sG, sB, sR2, sG2, sSq - sR2 - sG2) < limit - BOUND_TOLERANCE) {
+            pruned++;
+            if (scores != null) {
+              scores[si + x] = 0;
+            }
+            continue;
+          }
+        }
+        float score = (float) score(area, t, x, y, sR, sG, sB, sSq);
+        if (scores != null) {
+          scores[si + x] = score;
+        }
+        if (best == null || score > best.score) {
+          best = new MatchResult(x, y, t.w, t.h, score);
+        }
+      }
+    }
+    positions.addAndGet((long) bw * (y1 - y0));
+    prunedPositions.addAndGet(pruned);
+    return best;
+  }
+
+  /**
+   * add (sign 1) or remove (sign -1) the values of pixels x0 ... x1-1 of row y
+   * (to the column sums at index x - x0)
+   */
+  private static void addRow(PixelImage img, int y, int x0, int x1, long[] colR, long[] colG,
+          long[] colB, long[] colSq, long[] colR2, long[] colG2, int sign) {
+    int p = img.offset + y * img.stride + x0;
+    for (int i = 0; i < x1 - x0; i++) {
+      int c = img.data[p + i];
+      int cr = (c >> 16) & 0xff, cg = (c >> 8) & 0xff, cb = c & 0xff;
+      colR[i] += sign * cr;
+      colG[i] += sign * cg;
+      colB[i] += sign * cb;
+      colR2[i] += sign * cr * cr;
+      colG2[i] += sign * cg * cg;
+      colSq[i] += sign * (cr * cr + cg * cg + cb * cb);
+    }
+  }
+
+  /**
+   * an upper bound of the score at a position, computed from the window sums only:<br />
+   * the correlation is invariant to brightness and contrast, so mean and variance of the
+   * window alone cannot exclude a match, but per channel the correlation is at most the
+   * product of the channel's deviations (Cauchy-Schwarz): windows, whose deviation is
+   * distributed differently over the channels than the template's, cannot match
+   * (e.g. a gray area for a colored icon)<br />
+   * plain colored templates (square difference): the difference of the channel means
+   *
+   * @return the bound (1 if no bound is known)
+   */
+  static double bound(Template t, long sR, long sG, long sB, long sR2, long sG2, long sB2) {
+    int n = t.n;
+    if (t.plain) {
+      double denom = Math.sqrt(t.sumSq * (double) (sR2 + sG2 + sB2));
+      if (denom <= 0) {
+        return 1;
+      }
+      double dR = (double) sR / n - t.meanR, dG = (double) sG / n - t.meanG,
+              dB = (double) sB / n - t.meanB;
+      return 1 - n * (dR * dR + dG * dG + dB * dB) / denom;
+    }
+    double wR = Math.max(0, sR2 - (double) sR * sR / n);
+    double wG = Math.max(0, sG2 - (double) sG * sG / n);
+    double wB = Math.max(0, sB2 - (double) sB * sB / n);
+    double wNorm = wR + wG + wB;
+    if (wNorm < 1) {
+      return 0;
+    }
+    if (t.gray) {
+      return 1;
+    }
+    return (Math.sqrt(t.normR * wR) + Math.sqrt(t.normG * wG) + Math.sqrt(t.normB * wB))
+            / Math.sqrt(t.norm * wNorm);
+  }
+
+  /**
+   *
+   * @return the kernel selected by Settings.CorrelationKernel (default: planar)
+   */
+  static CorrelationKernel getKernel() {
+    return SCALAR.getName().equals(Settings.CorrelationKernel) ? SCALAR : PLANAR;
+  }
+
+  /**
+   *
+   * @return the number of match positions looked at and the number of them skipped by
+   * the prefilter since the last reset
+   */
+  public static long[] getPrefilterStatistics() {
+    return new long[]{positions.get(), prunedPositions.get()};
+  }
+
+  /**
+   *
+   * @return the fraction of the match positions skipped by the prefilter
+   */
+  public static double getPrunedRatio() {
+    long all = positions.get();
+    return all == 0 ? 0 : (double) prunedPositions.get() / all;
+  }
+
+  public static void resetPrefilterStatistics() {
+    positions.set(0);
+    prunedPositions.set(0);
+  }
+
+  /**
+   * the score of the template at (x, y) given the sums of the window's values
+   */
+  static double score(CorrelationKernel.Area area, Template t, int x, int y,
+          long sR, long sG, long sB, long sSq) {
+    int n = t.n;
+    if (t.plain) {
+      double sqdiff = sSq - 2 * (t.meanR * sR + t.meanG * sG + t.meanB * sB) + t.sumSq;
+      double denom = Math.sqrt(t.sumSq * (double) sSq);
+      if (denom <= 0) {
+        return sqdiff < 1 ? 1 : 0;
+      }
+      return Math.max(0, 1 - sqdiff / denom);
+    }
+    double wNorm = sSq - ((double) sR * sR + (double) sG * sG + (double) sB * sB) / n;
+    if (wNorm < 1) {
+      return 0;
+    }
+    return area.correlate(t, x, y) / Math.sqrt(t.norm * wNorm);
+  }
+
+  /**
+   * the positions with a score not smaller than its 8 neighbours (inside the band)
+   */
+  private static List<MatchResult> localMaxima(float[] scores, int rows, int rw, int y0,
+          Template t, double minSimilarity) {
+    List<MatchResult> ret = new ArrayList<MatchResult>();
+    for (int y = 0; y < rows; y++) {
+      for (int x = 0; x < rw; x++) {
+        float s = scores[y * rw + x];
+        if (s < minSimilarity) {
+          continue;
+        }
+        boolean isMax = true;
+        for (int dy = -1; dy <= 1 && isMax; dy++) {
+          int ny = y + dy;
+          if (ny < 0 || ny >= rows) {
+            continue;
+          }
+          for (int dx = -1; dx <= 1; dx++) {
+            int nx = x + dx;
+            if (nx < 0 || nx >= rw || (dx == 0 && dy == 0)) {
+              continue;
+            }
+            if (scores[ny * rw + nx] > s) {
+              isMax = false;
+              break;
+            }
+          }
+        }
+        if (isMax) {
+          ret.add(new MatchResult(x, y0 + y, t.w, t.h, s));
+        }
+      }
+    }
+    return ret;
+  }
+}
@@ -0,0 +1,94 @@
+/*
+ * Copyright 2010-2013, Sikuli.org
+ * Released under the MIT License.
+ *
+ */
+package org.sikuli.script;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * remembers where each image was found the last time (screen coordinates and score),
+ * so a new search can look there first (see Settings.FindNearLastMatch)<br />
+ * the key is the image's file path or the image itself for Patterns made from an image,
+ * the least recently used locations are dropped above MAX_HINTS entries
+ */
+public class LocationHints {
+
+  /**
+   * the search window around the last location is larger by this on each side (pixels)
+   */
+  static final int MARGIN = 32;
+  /**
+   * a match in the window is taken, if its score is not lower than the last one by more than this
+   */
+  static final double SCORE_TOLERANCE = 0.01;
+  static final int MAX_HINTS = 256;
+  private static final Map<Object, MatchResult> hints =
+          new LinkedHashMap<Object, MatchResult>(16, 0.75f, true) {
+    @Override
+    protected boolean removeEldestEntry(Map.Entry<Object, MatchResult> eldest) {
+      return size() > MAX_HINTS;
+    }
+  };
+  private static long hits = 0;
+  private static long misses = 0;
+
+  /**
+   *
+   * @param key
+   * @return the last location and score (screen coordinates) or null
+   */
+  static synchronized MatchResult get(Object key) {
+    MatchResult mr = hints.get(key);
+    return mr == null ? null : new MatchResult(mr.x, mr.y, mr.w, mr.h, mr.score);
+  }
+
+  /**
+   *
+   * @param key
+   * @param location in screen coordinates
+   */
+  static synchronized void put(Object key, MatchResult location) {
+    hints.put(key, location);
+  }
+
+  /**
+   * count the result of a search near the last location
+   *
+   * @param found
+   */
+  static synchronized void count(boolean found) {
+    if (found) {
+      hits++;
+    } else {
+      misses++;
+    }
+  }
+
+  /**
+   * forget all locations and reset the counters
+   */
+  public static synchronized void clear() {
+    hints.clear();
+    hits = 0;
+    misses = 0;
+  }
+
+  /**
+   *
+   * @return number of searches found near the last location
+   */
+  public static synchronized long getHits() {
+    return hits;
+  }
+
+  /**
+   *
+   * @return number of searches not found near the last location (the whole image was searched)
+   */
+  public static synchronized long getMisses() {
+    return misses;
+  }
+}
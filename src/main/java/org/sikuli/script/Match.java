@@ -72,6 +72,17 @@ public class Match extends Region implements Comparable {
     simScore = f.getScore();
   }
 
+  /**
+   * internally used constructor used by find image
+   *
+   * @param f
+   * @param _parent
+   */
+  protected Match(MatchResult f, Screen _parent) {
+    init(f.x, f.y, f.w, f.h, _parent);
+    simScore = f.score;
+  }
+
   private void init(int X, int Y, int W, int H, Screen parent) {
     x = X;
     y = Y;
@@ -0,0 +1,131 @@
+/*
+ * Copyright 2010-2013, Sikuli.org
+ * Released under the MIT License.
+ *
+ */
+package org.sikuli.script;
+
+import java.awt.Rectangle;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * remembers the results of the last finds in a Region, so the same search in an unchanged
+ * frame (e.g. exists() followed by click()) does not have to match again
+ * (see Settings.CacheMatches)<br />
+ * the key is the screen, the region, the target (with similarity and search options)
+ * and the hash of the frame's content, the entries of a screen are dropped with every
+ * mouse or keyboard action on that screen (see RobotDesktop),
+ * the least recently used entries are dropped above MAX_ENTRIES
+ */
+public class MatchCache {
+
+  static final int MAX_ENTRIES = 64;
+  private static final Map<String, Cached> entries =
+          new LinkedHashMap<String, Cached>(16, 0.75f, true) {
+    @Override
+    protected boolean removeEldestEntry(Map.Entry<String, Cached> eldest) {
+      return size() > MAX_ENTRIES;
+    }
+  };
+  private static long hits = 0;
+  private static long misses = 0;
+
+  private static class Cached {
+
+    final int screen;
+    final List<MatchResult> results;
+
+    Cached(int screen, List<MatchResult> results) {
+      this.screen = screen;
+      this.results = results;
+    }
+  }
+
+  private static String key(int screen, Rectangle roi, String target, long frameHash) {
+    return screen + ":" + roi.x + "," + roi.y + "," + roi.width + "," + roi.height
+            + ":" + Long.toHexString(frameHash) + ":" + target;
+  }
+
+  private static List<MatchResult> copy(List<MatchResult> results) {
+    List<MatchResult> ret = new ArrayList<MatchResult>(results.size());
+    for (MatchResult mr : results) {
+      ret.add(new MatchResult(mr.x, mr.y, mr.w, mr.h, mr.score));
+    }
+    return ret;
+  }
+
+  /**
+   *
+   * @param screen the screen's id
+   * @param roi the searched area on the screen
+   * @param target describes the target and the search options
+   * @param frameHash the hash of the searched image (see PixelImage.hash())
+   * @return the results (relative to roi, empty if not found) or null if not known
+   */
+  static synchronized List<MatchResult> get(int screen, Rectangle roi, String target,
+          long frameHash) {
+    Cached e = entries.get(key(screen, roi, target, frameHash));
+    if (e == null) {
+      misses++;
+      return null;
+    }
+    hits++;
+    return copy(e.results);
+  }
+
+  /**
+   *
+   * @param screen
+   * @param roi
+   * @param target
+   * @param frameHash
+   * @param results see get()
+   */
+  static synchronized void put(int screen, Rectangle roi, String target, long frameHash,
+          List<MatchResult> results) {
+    entries.put(key(screen, roi, target, frameHash), new Cached(screen, copy(results)));
+  }
+
+  /**
+   * forget the results on the given screen (after an input action)
+   *
+   * @param screen the screen's id
+   */
+  static synchronized void invalidate(int screen) {
+    Iterator<Cached> it = entries.values().iterator();
+    while (it.hasNext()) {
+      if (it.next().screen == screen) {
+        it.remove();
+      }
+    }
+  }
+
+  /**
+   * forget all results and reset the counters
+   */
+  public static synchronized void clear() {
+    entries.clear();
+    hits = 0;
+    misses = 0;
+  }
+
+  /**
+   *
+   * @return number of finds answered from the cache
+   */
+  public static synchronized long getHits() {
+    return hits;
+  }
+
+  /**
+   *
+   * @return number of finds not in the cache (searched)
+   */
+  public static synchronized long getMisses() {
+    return misses;
+  }
+}
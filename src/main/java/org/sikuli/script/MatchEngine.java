@@ -0,0 +1,39 @@
+/*
+ * Copyright 2010-2013, Sikuli.org
+ * Released under the MIT License.
+ *
+ */
+package org.sikuli.script;
+
+import java.awt.image.BufferedImage;
+
+/**
+ * the service interface for the image search used by {@link Finder}<br />
+ * implementations are registered in META-INF/services/org.sikuli.script.MatchEngine
+ * and selected by name using Settings.MatchEngine
+ * (null: native if available, java otherwise)
+ */
+public interface MatchEngine {
+
+  /**
+   *
+   * @return the name of this engine (as used with Settings.MatchEngine)
+   */
+  public String getName();
+
+  /**
+   * checks, wether the engine can be used in the current environment
+   * (e.g. the needed native libraries are available)
+   *
+   * @return true if usable, false otherwise
+   */
+  public boolean isAvailable();
+
+  /**
+   * prepare the given image to be searched in
+   *
+   * @param img usually a screen capture
+   * @return the source to run finds against
+   */
+  public MatchSource createSource(BufferedImage img);
+}
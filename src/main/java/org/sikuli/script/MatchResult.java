@@ -0,0 +1,85 @@
+/*
+ * Copyright 2010-2013, Sikuli.org
+ * Released under the MIT License.
+ *
+ */
+package org.sikuli.script;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * the engine independent result of a find operation as returned by a {@link MatchSource}<br />
+ * x, y, w, h are relative to the searched image (top left = (0,0))<br />
+ * score: a decimal value between 0 (no match) and 1 (exact match)
+ */
+public class MatchResult {
+
+  public int x, y, w, h;
+  public double score;
+
+  public MatchResult(int x, int y, int w, int h, double score) {
+    this.x = x;
+    this.y = y;
+    this.w = w;
+    this.h = h;
+    this.score = score;
+  }
+
+  /**
+   *
+   * @param other
+   * @param fraction see Settings.FindAllOverlap
+   * @return true if both overlap more than the given fraction of the width and of the height
+   */
+  public boolean overlaps(MatchResult other, double fraction) {
+    return w - Math.abs(x - other.x) > fraction * w && h - Math.abs(y - other.y) > fraction * h;
+  }
+
+  /**
+   * non-maximum suppression: sort by descending score and drop results, that overlap
+   * a better result (see Settings.FindAllOverlap)
+   *
+   * @param candidates (sorted in place)
+   * @param limit max number of results (0 = no limit)
+   * @return the remaining results
+   */
+  static List<MatchResult> suppressOverlaps(List<MatchResult> candidates, int limit) {
+    Collections.sort(candidates, new Comparator<MatchResult>() {
+      @Override
+      public int compare(MatchResult m1, MatchResult m2) {
+        if (m1.score != m2.score) {
+          return m1.score > m2.score ? -1 : 1;
+        }
+        if (m1.y != m2.y) {
+          return m1.y - m2.y;
+        }
+        return m1.x - m2.x;
+      }
+    });
+    List<MatchResult> ret = new ArrayList<MatchResult>();
+    for (MatchResult c : candidates) {
+      boolean overlaps = false;
+      for (MatchResult m : ret) {
+        if (m.overlaps(c, Settings.FindAllOverlap)) {
+          overlaps = true;
+          break;
+        }
+      }
+      if (!overlaps) {
+        ret.add(c);
+        if (limit > 0 && ret.size() >= limit) {
+          break;
+        }
+      }
+    }
+    return ret;
+  }
+
+  @Override
+  public String toString() {
+    return String.format("MR[%d,%d %dx%d] S:%.4f", x, y, w, h, score);
+  }
+}
@@ -0,0 +1,75 @@
+/*
+ * Copyright 2010-2013, Sikuli.org
+ * Released under the MIT License.
+ *
+ */
+package org.sikuli.script;
+
+import java.awt.Point;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * an image prepared by a {@link MatchEngine} to be searched in <br />
+ * the image might be exchanged (e.g. the next screen capture), the engine specific
+ * conversions are done only once per image<br />
+ * find() might be called from several threads at the same time (e.g. Finder.findAny)
+ */
+public interface MatchSource {
+
+  /**
+   * exchange the image to be searched in
+   *
+   * @param img
+   */
+  public void setImage(BufferedImage img);
+
+  /**
+   *
+   * @return the image currently searched in
+   */
+  public BufferedImage getImage();
+
+  /**
+   * search the Pattern's image
+   *
+   * @param ptn the Pattern (in-memory image or image file)
+   * @param minSimilarity only results with at least this score are returned
+   * @param findAll false: only the best result, true: all non-overlapping results
+   * @param limit the max number of results with findAll (0 = no limit)
+   * @return the results sorted by descending score (might be empty)
+   * @throws IOException if the Pattern's image cannot be loaded
+   */
+  public List<MatchResult> find(Pattern ptn, double minSimilarity, boolean findAll, int limit)
+          throws IOException;
+
+  /**
+   * search the Pattern's image and stop at the first position with at least minSimilarity
+   * (see Pattern.firstHit()), positions near start are checked first<br />
+   * engines, that cannot stop early, return the best result
+   *
+   * @param ptn the Pattern (in-memory image or image file)
+   * @param minSimilarity
+   * @param start the preferred position of the result's top left corner (null = centered)
+   * @return the best result around the first hit (might be empty)
+   * @throws IOException if the Pattern's image cannot be loaded
+   */
+  public List<MatchResult> findFirst(Pattern ptn, double minSimilarity, Point start)
+          throws IOException;
+
+  /**
+   * search the given text (OCR)
+   *
+   * @param text
+   * @param minSimilarity
+   * @param findAll
+   * @return the results or null if text search is not supported by the engine
+   */
+  public List<MatchResult> findText(String text, double minSimilarity, boolean findAll);
+
+  /**
+   * free the engine specific resources
+   */
+  public void release();
+}
@@ -0,0 +1,177 @@
+/*
+ * Copyright 2010-2013, Sikuli.org
+ * Released under the MIT License.
+ *
+ */
+package org.sikuli.script;
+
+import java.awt.Point;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.ServiceConfigurationError;
+import java.util.ServiceLoader;
+import org.sikuli.script.natives.FindInput;
+import org.sikuli.script.natives.FindResult;
+import org.sikuli.script.natives.FindResults;
+import org.sikuli.script.natives.Mat;
+import org.sikuli.script.natives.OpenCV;
+import org.sikuli.script.natives.TARGET_TYPE;
+import org.sikuli.script.natives.Vision;
+
+/**
+ * the image search using the native VisionProxy library (OpenCV/Tesseract via JNI)
+ */
+public class NativeMatchEngine implements MatchEngine {
+
+  private static Boolean available = null;
+
+//TODO Vision.setParameter("GPU", 1);
+  @Override
+  public String getName() {
+    return "native";
+  }
+
+  @Override
+  public boolean isAvailable() {
+    synchronized (NativeMatchEngine.class) {
+      if (available == null) {
+        try {
+          if (FileManager.nativeLoader == null && !hasNativeLoader()) {
+            Debug.error("NativeMatchEngine: VisionProxy not available: no NativeLoader");
+            available = false;
+            return available;
+          }
+          FileManager.loadLibrary("VisionProxy");
+          available = true;
+        } catch (Throwable e) {
+          Debug.error("NativeMatchEngine: VisionProxy not available: " + e);
+          available = false;
+        }
+      }
+      return available;
+    }
+  }
+
+  /**
+   * FileManager.loadLibrary exits if there is no NativeLoader (SikuliX-Natives missing)
+   *
+   * @return true if the NativeLoader used by FileManager is registered
+   */
+  private static boolean hasNativeLoader() {
+    try {
+      Iterator<INativeLoader> it = ServiceLoader.load(INativeLoader.class).iterator();
+      while (it.hasNext()) {
+        if ("basic".equalsIgnoreCase(it.next().getName())) {
+          return true;
+        }
+      }
+    } catch (ServiceConfigurationError e) {
+      Debug.error("NativeMatchEngine: NativeLoader not available: " + e.getMessage());
+    }
+    return false;
+  }
+
+  @Override
+  public MatchSource createSource(BufferedImage img) {
+    return new NativeSource(img);
+  }
+
+  private static class NativeSource implements MatchSource {
+
+    private BufferedImage _img;
+    private Mat _mat = null;
+
+    NativeSource(BufferedImage img) {
+      _img = img;
+    }
+
+    @Override
+    public synchronized void setImage(BufferedImage img) {
+      _img = img;
+      _mat = null;
+    }
+
+    @Override
+    public BufferedImage getImage() {
+      return _img;
+    }
+
+    private synchronized Mat getMat() {
+      if (_mat == null) {
+        _mat = OpenCV.convertBufferedImageToMat(_img);
+      }
+      return _mat;
+    }
+
+    @Override
+    public List<MatchResult> find(Pattern ptn, double minSimilarity, boolean findAll, int limit)
+            throws IOException {
+      Mat target;
+      if (ptn.hasImage()) {
+        target = OpenCV.convertBufferedImageToMat(ptn.getImage());
+      } else {
+        String img = ptn.getFilename();
+        if (img == null) {
+          throw new IOException("ImageFile " + ptn + " not found on disk");
+        }
+        PatternCache.Entry cached = PatternCache.get(img);
+        target = (Mat) cached.getPrepared("native");
+        if (target == null) {
+          target = OpenCV.convertBufferedImageToMat(cached.image);
+          cached.setPrepared("native", target, 4L * cached.image.getWidth() * cached.image.getHeight());
+        }
+      }
+      FindInput fin = new FindInput();
+      fin.setSource(getMat());
+      fin.setTarget(target);
+      return doFind(fin, minSimilarity, findAll, limit);
+    }
+
+    /**
+     * the native search always evaluates all positions: the best result is returned
+     */
+    @Override
+    public List<MatchResult> findFirst(Pattern ptn, double minSimilarity, Point start)
+            throws IOException {
+      return find(ptn, minSimilarity, false, 0);
+    }
+
+    @Override
+    public List<MatchResult> findText(String text, double minSimilarity, boolean findAll) {
+      FindInput fin = new FindInput();
+      fin.setSource(getMat());
+      fin.setTarget(TARGET_TYPE.TEXT, text);
+      return doFind(fin, minSimilarity, findAll, 0);
+    }
+
+    private List<MatchResult> doFind(FindInput fin, double minSimilarity, boolean findAll, int limit) {
+      fin.setSimilarity(minSimilarity);
+      fin.setFindAll(findAll);
+      if (limit > 0) {
+        fin.setLimit(limit);
+      }
+      FindResults results = Vision.find(fin);
+      List<MatchResult> ret = new ArrayList<MatchResult>((int) results.size());
+      for (int i = 0; i < results.size(); i++) {
+        FindResult fr = results.get(i);
+        ret.add(new MatchResult(fr.getX(), fr.getY(), fr.getW(), fr.getH(), fr.getScore()));
+        fr.delete();
+      }
+      results.delete();
+      fin.delete();
+      return ret;
+    }
+
+    @Override
+    public synchronized void release() {
+      if (_mat != null) {
+        _mat.delete();
+        _mat = null;
+      }
+      _img = null;
+    }
+  }
+}
@@ -0,0 +1,381 @@
+/*
+ * Copyright 2010-2013, Sikuli.org
+ * Released under the MIT License.
+ *
+ */
+package org.sikuli.script;
+
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * internal use: runs all background observers (Region.observeInBackground) with one
+ * scheduling thread and a small pool of Settings.ObserverThreads threads<br />
+ * each observed region is scanned at its own rate (Region.getObserveScanRate), the scans,
+ * that are due within Settings.ScanCoalesceTime, are done together: overlapping regions
+ * on the same screen share one capture<br />
+ * a region has at most one scan running, the threads end, when nothing is observed anymore
+ * (or with stopAll())
+ */
+class ObserverEngine {
+
+  private static final PriorityQueue<Observation> queue = new PriorityQueue<Observation>(16,
+          new Comparator<Observation>() {
+    @Override
+    public int compare(Observation o1, Observation o2) {
+      long d = o1.due - o2.due;
+      return d < 0 ? -1 : (d > 0 ? 1 : 0);
+    }
+  });
+  private static final Map<Region, Observation> observations =
+          new IdentityHashMap<Region, Observation>();
+  private static Thread thread = null;
+  private static ThreadPoolExecutor pool = null;
+  private static long scans = 0;
+  private static long captures = 0;
+
+  /**
+   * the background observer of one region
+   */
+  private static class Observation implements Runnable {
+
+    final Region region;
+    final SikuliEventManager manager;
+    private final long deadline;
+    private final boolean timed;
+    private long due;
+    private long started;
+    private ScreenImage frame = null;
+    private volatile boolean stopped = false;
+
+    Observation(Region region, SikuliEventManager manager, double secs) {
+      this.region = region;
+      this.manager = manager;
+      due = System.nanoTime();
+      timed = secs * 1e9 < Long.MAX_VALUE / 2;
+      deadline = timed ? due + (long) (secs * 1e9) : 0;
+    }
+
+    /**
+     * one scan with the image given by the scheduler
+     */
+    @Override
+    public void run() {
+      boolean more = false;
+      try {
+        more = !stopped && manager.update(frame);
+      } catch (RuntimeException e) {
+        Debug.error("ObserverEngine: observer stopped: " + e.getMessage());
+      }
+      frame = null;
+      long next = started + (long) (1e9 / Math.max(0.01f, region.getObserveScanRate()));
+      if (!more || (timed && next - deadline >= 0)) {
+        finished(this);
+      } else {
+        reschedule(this, next);
+      }
+    }
+  }
+
+  /**
+   *
+   * @return the number of threads scanning at the same time (Settings.ObserverThreads, at least 1)
+   */
+  static int getThreads() {
+    return Math.max(1, Settings.ObserverThreads);
+  }
+
+  private static ThreadPoolExecutor getPool() {
+    if (pool == null) {
+      pool = new ThreadPoolExecutor(getThreads(), getThreads(), 30, TimeUnit.SECONDS,
+              new LinkedBlockingQueue<Runnable>(), new ThreadFactory() {
+        private final AtomicInteger n = new AtomicInteger(0);
+
+        @Override
+        public Thread newThread(Runnable r) {
+          Thread t = new Thread(r, "SikuliObserver-" + n.incrementAndGet());
+          t.setDaemon(true);
+          return t;
+        }
+      });
+      pool.allowCoreThreadTimeOut(true);
+    }
+    return pool;
+  }
+
+  /**
+   * start observing the region in the background, a running observer of the region is stopped
+   *
+   * @param region
+   * @param manager the region's observers (initialized)
+   * @param secs max time to observe (infinite: until stopped)
+   */
+  static void start(Region region, SikuliEventManager manager, double secs) {
+    Observation ob = new Observation(region, manager, secs);
+    synchronized (queue) {
+      Observation old = observations.put(region, ob);
+      if (old != null) {
+        old.stopped = true;
+        queue.remove(old);
+      }
+      queue.add(ob);
+      if (thread == null) {
+        thread = new Thread("SikuliObserverEngine") {
+          @Override
+          public void run() {
+            runEngine();
+          }
+        };
+        thread.setDaemon(true);
+        thread.start();
+      }
+      queue.notifyAll();
+    }
+  }
+
+  /**
+   * stop observing the region (a scan running at this time is finished)
+   *
+   * @param region
+   */
+  static void stop(Region region) {
+    synchronized (queue) {
+      Observation ob = observations.remove(region);
+      if (ob != null) {
+        ob.stopped = true;
+        queue.remove(ob);
+        queue.notifyAll();
+      }
+    }
+  }
+
+  /**
+   * stop all observers, the threads end
+   */
+  static void stopAll() {
+    List<Observation> ended;
+    synchronized (queue) {
+      ended = new ArrayList<Observation>(observations.values());
+      for (Observation ob : ended) {
+        ob.stopped = true;
+      }
+      observations.clear();
+      queue.clear();
+      queue.notifyAll();
+      if (pool != null) {
+        pool.shutdown();
+        pool = null;
+      }
+    }
+    for (Observation ob : ended) {
+      ob.manager.closeStreams();
+    }
+  }
+
+  /**
+   *
+   * @param region
+   * @return true if the region is observed in the background
+   */
+  static boolean isObserving(Region region) {
+    synchronized (queue) {
+      return observations.containsKey(region);
+    }
+  }
+
+  /**
+   *
+   * @return the number of regions observed in the background
+   */
+  static int getObserving() {
+    synchronized (queue) {
+      return observations.size();
+    }
+  }
+
+  private static void reschedule(Observation ob, long due) {
+    synchronized (queue) {
+      if (ob.stopped) {
+        return;
+      }
+      ob.due = due;
+      queue.add(ob);
+      queue.notifyAll();
+    }
+  }
+
+  /**
+   * the observation has ended (time over, nothing left to observe or no image):
+   * the event streams are closed (not under the lock, the subscribers are called)
+   */
+  private static void finished(Observation ob) {
+    synchronized (queue) {
+      if (observations.get(ob.region) != ob) {
+        return;
+      }
+      observations.remove(ob.region);
+      queue.notifyAll();
+    }
+    ob.manager.closeStreams();
+  }
+
+  private static void runEngine() {
+    while (true) {
+      List<Observation> batch = new ArrayList<Observation>();
+      synchronized (queue) {
+        try {
+          while (true) {
+            if (observations.isEmpty()) {
+              thread = null;
+              return;
+            }
+            Observation head = queue.peek();
+            if (head == null) {
+              // all scans running
+              queue.wait();
+              continue;
+            }
+            long delay = head.due - System.nanoTime();
+            if (delay <= 0) {
+              break;
+            }
+            queue.wait(delay / 1000000, (int) (delay % 1000000));
+          }
+        } catch (InterruptedException e) {
+          continue;
+        }
+        long limit = System.nanoTime() + (long) (Settings.ScanCoalesceTime * 1e9);
+        while (!queue.isEmpty() && queue.peek().due - limit <= 0) {
+          batch.add(queue.poll());
+        }
+      }
+      scan(batch);
+    }
+  }
+
+  /**
+   * capture the regions of the batch (overlapping regions together) and hand the scans
+   * to the pool
+   */
+  private static void scan(List<Observation> batch) {
+    long now = System.nanoTime();
+    Map<Screen, List<Observation>> screens = new IdentityHashMap<Screen, List<Observation>>();
+    for (Observation ob : batch) {
+      ob.started = now;
+      List<Observation> obs = screens.get(ob.region.getScreen());
+      if (obs == null) {
+        obs = new ArrayList<Observation>();
+        screens.put(ob.region.getScreen(), obs);
+      }
+      obs.add(ob);
+    }
+    for (Screen scr : screens.keySet()) {
+      List<Observation> obs = screens.get(scr);
+      List<Rectangle> rects = new ArrayList<Rectangle>();
+      for (Observation ob : obs) {
+        rects.add(ob.region.getRect().intersection(scr.getBounds()));
+      }
+      for (Rectangle area : merge(rects)) {
+        ScreenImage capture;
+        try {
+          capture = scr.capture(area);
+        } catch (RuntimeException e) {
+          Debug.error("ObserverEngine: capture failed: " + e.getMessage());
+          continue;
+        }
+        synchronized (queue) {
+          captures++;
+        }
+        for (int i = 0; i < obs.size(); i++) {
+          Rectangle r = rects.get(i);
+          if (!r.isEmpty() && area.contains(r)) {
+            obs.get(i).frame = crop(capture, r);
+          }
+        }
+      }
+    }
+    List<Observation> ended = new ArrayList<Observation>();
+    synchronized (queue) {
+      for (Observation ob : batch) {
+        if (ob.stopped) {
+          continue;
+        }
+        scans++;
+        if (ob.frame == null) {
+          // outside of the screen or not captured
+          ended.add(ob);
+          continue;
+        }
+        try {
+          getPool().execute(ob);
+        } catch (RuntimeException e) {
+          ended.add(ob);
+        }
+      }
+    }
+    for (Observation ob : ended) {
+      finished(ob);
+    }
+  }
+
+  private static ScreenImage crop(ScreenImage capture, Rectangle r) {
+    Rectangle roi = capture.getROI();
+    if (roi.equals(r)) {
+      return capture;
+    }
+    BufferedImage img = capture.getImage().getSubimage(r.x - roi.x, r.y - roi.y,
+            r.width, r.height);
+    return new ScreenImage(r, img);
+  }
+
+  /**
+   * the areas to capture: overlapping rectangles are merged into their union
+   * (repeated until no areas overlap)
+   *
+   * @param rects
+   * @return the areas
+   */
+  static List<Rectangle> merge(List<Rectangle> rects) {
+    List<Rectangle> areas = new ArrayList<Rectangle>();
+    for (Rectangle r : rects) {
+      if (!r.isEmpty()) {
+        areas.add(new Rectangle(r));
+      }
+    }
+    boolean merged = true;
+    while (merged) {
+      merged = false;
+      for (int i = 0; i < areas.size() && !merged; i++) {
+        for (int j = i + 1; j < areas.size(); j++) {
+          if (areas.get(i).intersects(areas.get(j))) {
+            areas.set(i, areas.get(i).union(areas.remove(j)));
+            merged = true;
+            break;
+          }
+        }
+      }
+    }
+    return areas;
+  }
+
+  /**
+   *
+   * @return number of scans and number of captures made for them
+   */
+  static long[] getStatistics() {
+    synchronized (queue) {
+      return new long[]{scans, captures};
+    }
+  }
+}
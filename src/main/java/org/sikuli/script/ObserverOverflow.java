@@ -0,0 +1,29 @@
+/*
+ * Copyright 2010-2013, Sikuli.org
+ * Released under the MIT License.
+ *
+ */
+package org.sikuli.script;
+
+/**
+ * what happens with a new observer event, when the queue of events waiting for their
+ * handler is full (see Settings.ObserverEventQueueSize)<br />
+ * with DROP_OLDEST and COALESCE events are lost under load (see EventDispatcher.getDropped()
+ * and getCoalesced())
+ */
+public enum ObserverOverflow {
+
+  /**
+   * the oldest waiting event is dropped
+   */
+  DROP_OLDEST,
+  /**
+   * a waiting event of the same observer (pattern or change threshold) is replaced by the
+   * new one, if there is none, the oldest waiting event is dropped
+   */
+  COALESCE,
+  /**
+   * the scan waits until there is room in the queue (default: no event is lost)
+   */
+  BLOCK
+}
@@ -21,6 +21,10 @@ public class Pattern {
 	private BufferedImage imgBuf = null;
   private float similarity = (float) Settings.MinSimilarity;
   private Location offset = new Location(0, 0);
+  private float minScale = 1f;
+  private boolean firstHit = false;
+  private boolean grayscale = false;
+  private float scale = 1f;
   private final static String isBImg = "-- BufferedImage --";
 
   /**
@@ -44,6 +48,10 @@ public class Pattern {
     similarity = p.similarity;
     offset.x = p.offset.x;
     offset.y = p.offset.y;
+    minScale = p.minScale;
+    firstHit = p.firstHit;
+    grayscale = p.grayscale;
+    scale = p.scale;
   }
 
   /**
@@ -100,6 +108,102 @@ public class Pattern {
     return this;
   }
 
+  /**
+	 * search coarse to fine: find candidates in downscaled images first,
+	 * then check the candidates in full resolution<br />
+	 * the scale is reduced as far as the image size allows
+	 * (faster on large regions, but weak matches might be missed)
+	 *
+	 * @return the Pattern object itself
+	 */
+	public Pattern fast() {
+		minScale = 0f;
+		return this;
+	}
+
+  /**
+	 * like fast(), but the images are not downscaled below the given scale<br />
+	 * 1 (default) means: always search in full resolution
+	 *
+	 * @param scale 0 ... 1 (e.g. 0.25 = at most 1/4 of the size)
+	 * @return the Pattern object itself
+	 */
+	public Pattern minScale(float scale) {
+		minScale = Math.max(0f, Math.min(1f, scale));
+		return this;
+	}
+
+  /**
+	 * find stops at the first position with at least the similarity instead of searching
+	 * the best match in the whole region (e.g. for exists())<br />
+	 * positions near the last match of the image or else near the center are checked first,
+	 * the match is the best position around the first hit
+	 *
+	 * @return the Pattern object itself
+	 */
+	public Pattern firstHit() {
+		firstHit = true;
+		return this;
+	}
+
+  /**
+	 *
+	 * @return true if find stops at the first position found (see firstHit())
+	 */
+	public boolean isFirstHit() {
+		return firstHit;
+	}
+
+  /**
+	 * search in grayscale instead of color (about 3 times less work)<br />
+	 * used by the java engine, the native engine always searches in color
+	 *
+	 * @return the Pattern object itself
+	 */
+	public Pattern grayscale() {
+		grayscale = true;
+		return this;
+	}
+
+  /**
+	 *
+	 * @return true if searched in grayscale (see grayscale())
+	 */
+	public boolean isGrayscale() {
+		return grayscale;
+	}
+
+  /**
+	 * search in images downscaled by the given scale (e.g. 0.5 = half the width and height,
+	 * about 4 times less work), the match position is then exact to 1/scale pixels only
+	 * and the score might differ slightly<br />
+	 * the scale is rounded to 1/n, used by the java engine,
+	 * the native engine always searches in full resolution
+	 *
+	 * @param scale 0 ... 1 (1 = full resolution)
+	 * @return the Pattern object itself
+	 */
+	public Pattern scale(float scale) {
+		this.scale = Math.max(0.01f, Math.min(1f, scale));
+		return this;
+	}
+
+  /**
+	 *
+	 * @return the scale of the images searched in (see scale(float))
+	 */
+	public float getScale() {
+		return scale;
+	}
+
+  /**
+	 *
+	 * @return the smallest scale used with coarse to fine search (1 = not used)
+	 */
+	public float getMinScale() {
+		return minScale;
+	}
+
   /**
 	 *
 	 * @return the current minimum similarity
@@ -203,6 +307,15 @@ public class Pattern {
 		return null;
   }
 
+	/**
+	 * internal use: the Pattern has an in-memory image
+	 *
+	 * @return true if an image is set, false if only a filename is given
+	 */
+	boolean hasImage() {
+		return imgBuf != null;
+	}
+
 	/**
 	 * sets the Pattern's image
 	 *
@@ -232,6 +345,9 @@ public class Pattern {
     if (offset.x != 0 || offset.y != 0) {
       ret += " T: " + offset.x + "," + offset.y;
     }
+    if (minScale < 1) {
+      ret += " F: " + minScale;
+    }
     return ret;
   }
 }
@@ -0,0 +1,230 @@
+/*
+ * Copyright 2010-2013, Sikuli.org
+ * Released under the MIT License.
+ *
+ */
+package org.sikuli.script;
+
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import javax.imageio.ImageIO;
+
+/**
+ * keeps the decoded images of image files used as search targets in memory, together
+ * with the data the match engines prepare from them (e.g. the native Mat)<br />
+ * an entry is identified by the absolute path of the file and is reloaded,
+ * if the file was modified since<br />
+ * the cache is limited to Settings.PatternCacheSize MB, the least recently used entries
+ * are dropped first (0 = no caching)
+ */
+public class PatternCache {
+
+  private static final LinkedHashMap<String, Entry> cache =
+          new LinkedHashMap<String, Entry>(64, 0.75f, true);
+  private static long size = 0;
+  private static long hits = 0;
+  private static long misses = 0;
+  private static long evictions = 0;
+
+  /**
+   * a cached image file
+   */
+  static class Entry {
+
+    final String path;
+    final long modified;
+    final BufferedImage image;
+    private PixelImage pixels = null;
+    private final Map<String, Object> prepared = new HashMap<String, Object>();
+    private long bytes;
+
+    Entry(String path, long modified, BufferedImage image) {
+      this.path = path;
+      this.modified = modified;
+      this.image = image;
+      bytes = 4L * image.getWidth() * image.getHeight();
+    }
+
+    synchronized PixelImage getPixels() {
+      if (pixels == null) {
+        pixels = PixelImage.create(image);
+      }
+      return pixels;
+    }
+
+    /**
+     * @param key the kind of data (e.g. the engine's name)
+     * @return the data or null
+     */
+    synchronized Object getPrepared(String key) {
+      return prepared.get(key);
+    }
+
+    /**
+     * store data prepared from the image
+     *
+     * @param key the kind of data (e.g. the engine's name)
+     * @param data
+     * @param dataBytes the memory used by data (as accounted in the cache size)
+     */
+    void setPrepared(String key, Object data, long dataBytes) {
+      synchronized (this) {
+        if (prepared.put(key, data) != null) {
+          return;
+        }
+        bytes += dataBytes;
+      }
+      grown(this, dataBytes);
+    }
+  }
+
+  /**
+   * get the image file from cache (load it if not yet cached or modified since)
+   *
+   * @param filename absolute path
+   * @return the cache entry
+   * @throws IOException if the file cannot be read as image
+   */
+  static Entry get(String filename) throws IOException {
+    File file = new File(filename);
+    String path = file.getAbsolutePath();
+    long modified = file.lastModified();
+    synchronized (PatternCache.class) {
+      Entry e = cache.get(path);
+      if (e != null && e.modified == modified) {
+        hits++;
+        return e;
+      }
+      misses++;
+      if (e != null) {
+        remove(path);
+      }
+    }
+    BufferedImage img = ImageIO.read(file);
+    if (img == null) {
+      throw new IOException("PatternCache: " + filename + " cannot be read as image");
+    }
+    Entry e = new Entry(path, modified, img);
+    synchronized (PatternCache.class) {
+      if (getMaxSize() > 0) {
+        Entry old = cache.put(path, e);
+        if (old != null) {
+          size -= old.bytes;
+        }
+        size += e.bytes;
+        evict();
+      }
+    }
+    return e;
+  }
+
+  private static synchronized void grown(Entry e, long bytes) {
+    if (cache.get(e.path) == e) {
+      size += bytes;
+      evict();
+    }
+  }
+
+  private static long getMaxSize() {
+    return Settings.PatternCacheSize * 1024L * 1024L;
+  }
+
+  private static void evict() {
+    Iterator<Entry> it = cache.values().iterator();
+    while (size > getMaxSize() && it.hasNext()) {
+      Entry e = it.next();
+      it.remove();
+      size -= e.bytes;
+      evictions++;
+      Debug.log(3, "PatternCache: evicted " + e.path);
+    }
+  }
+
+  private static void remove(String path) {
+    Entry e = cache.remove(path);
+    if (e != null) {
+      size -= e.bytes;
+    }
+  }
+
+  /**
+   * drop the given image file from the cache (e.g. after it was changed on disk
+   * within the same second)
+   *
+   * @param filename absolute path
+   */
+  public static synchronized void invalidate(String filename) {
+    remove(new File(filename).getAbsolutePath());
+  }
+
+  /**
+   * drop all cached images
+   */
+  public static synchronized void invalidateAll() {
+    cache.clear();
+    size = 0;
+  }
+
+  /**
+   *
+   * @return the number of finds, that got the image from the cache
+   */
+  public static synchronized long getHits() {
+    return hits;
+  }
+
+  /**
+   *
+   * @return the number of finds, that had to load the image
+   */
+  public static synchronized long getMisses() {
+    return misses;
+  }
+
+  /**
+   *
+   * @return the number of entries dropped to keep the size limit
+   */
+  public static synchronized long getEvictions() {
+    return evictions;
+  }
+
+  /**
+   *
+   * @return the memory currently used by the cached images in bytes
+   */
+  public static synchronized long getSize() {
+    return size;
+  }
+
+  /**
+   *
+   * @return the number of cached images
+   */
+  public static synchronized int getCount() {
+    return cache.size();
+  }
+
+  /**
+   * reset the counters for hits, misses and evictions
+   */
+  public static synchronized void resetStatistics() {
+    hits = 0;
+    misses = 0;
+    evictions = 0;
+  }
+
+  /**
+   *
+   * @return a printable summary of the cache state
+   */
+  public static synchronized String getStatistics() {
+    return String.format("PatternCache: %d images, %.1f MB, hits: %d, misses: %d, evictions: %d",
+            cache.size(), size / 1048576.0, hits, misses, evictions);
+  }
+}
@@ -0,0 +1,152 @@
+/*
+ * Copyright 2010-2013, Sikuli.org
+ * Released under the MIT License.
+ *
+ */
+package org.sikuli.script;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.awt.image.Raster;
+import java.awt.image.SinglePixelPackedSampleModel;
+
+/**
+ * the pixels of an image as packed RGB ints (0x00RRGGBB, alpha ignored),
+ * used by the pure Java image processing<br />
+ * pixel (x, y) is at data[offset + y * stride + x]
+ */
+public class PixelImage {
+
+  public final int width, height;
+  final int[] data;
+  final int offset, stride;
+
+  PixelImage(int width, int height, int[] data, int offset, int stride) {
+    this.width = width;
+    this.height = height;
+    this.data = data;
+    this.offset = offset;
+    this.stride = stride;
+  }
+
+  /**
+   * the pixels of the given image<br />
+   * for TYPE_INT_RGB/TYPE_INT_ARGB (e.g. a screen capture or a subimage of it)
+   * the image's own pixel array is used (no copy)
+   *
+   * @param img
+   * @return the pixels
+   */
+  public static PixelImage create(BufferedImage img) {
+    int w = img.getWidth();
+    int h = img.getHeight();
+    int type = img.getType();
+    if (type == BufferedImage.TYPE_INT_RGB || type == BufferedImage.TYPE_INT_ARGB) {
+      Raster r = img.getRaster();
+      if (r.getSampleModel() instanceof SinglePixelPackedSampleModel
+              && r.getDataBuffer() instanceof DataBufferInt) {
+        int scan = ((SinglePixelPackedSampleModel) r.getSampleModel()).getScanlineStride();
+        DataBufferInt db = (DataBufferInt) r.getDataBuffer();
+        int off = db.getOffset() - r.getSampleModelTranslateY() * scan - r.getSampleModelTranslateX();
+        return new PixelImage(w, h, db.getData(), off, scan);
+      }
+    }
+    return new PixelImage(w, h, img.getRGB(0, 0, w, h, null, 0, w), 0, w);
+  }
+
+  /**
+   * a part of this image (the pixels are not copied)
+   *
+   * @param x
+   * @param y
+   * @param w
+   * @param h
+   * @return the part
+   */
+  public PixelImage crop(int x, int y, int w, int h) {
+    return new PixelImage(w, h, data, offset + y * stride + x, stride);
+  }
+
+  /**
+   * a smaller copy of this image, each pixel is the average of factor x factor pixels
+   *
+   * @param factor
+   * @return the new image (width / factor x height / factor)
+   */
+  public PixelImage scaleDown(int factor) {
+    return scaleDown(factor, null);
+  }
+
+  /**
+   * a smaller copy of this image, each pixel is the average of factor x factor pixels
+   *
+   * @param factor
+   * @param buffer used for the pixels if large enough (e.g. of the previous frame), may be null
+   * @return the new image (width / factor x height / factor)
+   */
+  public PixelImage scaleDown(int factor, int[] buffer) {
+    int w = width / factor, h = height / factor, n = factor * factor;
+    int[] d = buffer != null && buffer.length >= w * h ? buffer : new int[w * h];
+    for (int y = 0; y < h; y++) {
+      for (int x = 0; x < w; x++) {
+        int sR = 0, sG = 0, sB = 0;
+        for (int j = 0; j < factor; j++) {
+          int p = offset + (y * factor + j) * stride + x * factor;
+          for (int i = 0; i < factor; i++) {
+            int c = data[p + i];
+            sR += (c >> 16) & 0xff;
+            sG += (c >> 8) & 0xff;
+            sB += c & 0xff;
+          }
+        }
+        d[y * w + x] = ((sR / n) << 16) | ((sG / n) << 8) | (sB / n);
+      }
+    }
+    return new PixelImage(w, h, d, 0, w);
+  }
+
+  /**
+   * a grayscale copy of this image: the luminance (0.30 R + 0.59 G + 0.11 B) is
+   * stored as the blue value, red and green are 0
+   *
+   * @param buffer used for the pixels if large enough (e.g. of the previous frame), may be null
+   * @return the new image
+   */
+  public PixelImage toGray(int[] buffer) {
+    int[] d = buffer != null && buffer.length >= width * height ? buffer : new int[width * height];
+    for (int y = 0; y < height; y++) {
+      int p = offset + y * stride, q = y * width;
+      for (int x = 0; x < width; x++) {
+        int c = data[p + x];
+        d[q + x] = (77 * ((c >> 16) & 0xff) + 151 * ((c >> 8) & 0xff) + 28 * (c & 0xff)) >> 8;
+      }
+    }
+    return new PixelImage(width, height, d, 0, width);
+  }
+
+  /**
+   * a hash of all pixels (FNV-1a over the RGB values), used to detect unchanged frames
+   *
+   * @return the hash
+   */
+  public long hash() {
+    long h = 0xcbf29ce484222325L;
+    for (int y = 0; y < height; y++) {
+      int p = offset + y * stride;
+      for (int x = 0; x < width; x++) {
+        h = (h ^ (data[p + x] & 0xffffff)) * 0x100000001b3L;
+      }
+    }
+    return h;
+  }
+
+  /**
+   *
+   * @param x
+   * @param y
+   * @return the pixel as 0x00RRGGBB
+   */
+  public int getRGB(int x, int y) {
+    return data[offset + y * stride + x] & 0xffffff;
+  }
+}
@@ -0,0 +1,100 @@
+/*
+ * Copyright 2010-2013, Sikuli.org
+ * Released under the MIT License.
+ *
+ */
+package org.sikuli.script;
+
+/**
+ * internal use: the correlation on the color values converted to float planes
+ * (one array per channel), the inner loop works on 4 positions of a row at a time
+ * with independent sums, so the JIT can keep the CPU's floating point units busy<br />
+ * the area is converted once per band of rows (a few more rows than searched),
+ * that is small compared to the correlation at every position
+ */
+class PlanarKernel implements CorrelationKernel {
+
+  @Override
+  public String getName() {
+    return "planar";
+  }
+
+  @Override
+  public Area prepare(PixelImage img, int x, int y, int w, int h, boolean gray) {
+    return new Planes(img, x, y, w, h, gray);
+  }
+
+  private static class Planes implements Area {
+
+    final int x0, y0, w;
+    final float[] r, g, b;
+
+    Planes(PixelImage img, int x0, int y0, int w, int h, boolean gray) {
+      this.x0 = x0;
+      this.y0 = y0;
+      this.w = w;
+      r = gray ? null : new float[w * h];
+      g = gray ? null : new float[w * h];
+      b = new float[w * h];
+      for (int y = 0; y < h; y++) {
+        int p = img.offset + (y0 + y) * img.stride + x0, q = y * w;
+        for (int x = 0; x < w; x++) {
+          int c = img.data[p + x];
+          if (!gray) {
+            r[q + x] = (c >> 16) & 0xff;
+            g[q + x] = (c >> 8) & 0xff;
+          }
+          b[q + x] = c & 0xff;
+        }
+      }
+    }
+
+    @Override
+    public double correlate(JavaMatchEngine.Template t, int x, int y) {
+      if (t.gray) {
+        return correlateGray(t, x, y);
+      }
+      float[] tr = t.r, tg = t.g, tb = t.b;
+      double sum = 0;
+      int k = 0;
+      for (int j = 0; j < t.h; j++) {
+        int p = (y - y0 + j) * w + x - x0;
+        float a0 = 0, a1 = 0, a2 = 0, a3 = 0;
+        int i = 0;
+        for (; i + 3 < t.w; i += 4, k += 4, p += 4) {
+          a0 += tr[k] * r[p] + tg[k] * g[p] + tb[k] * b[p];
+          a1 += tr[k + 1] * r[p + 1] + tg[k + 1] * g[p + 1] + tb[k + 1] * b[p + 1];
+          a2 += tr[k + 2] * r[p + 2] + tg[k + 2] * g[p + 2] + tb[k + 2] * b[p + 2];
+          a3 += tr[k + 3] * r[p + 3] + tg[k + 3] * g[p + 3] + tb[k + 3] * b[p + 3];
+        }
+        for (; i < t.w; i++, k++, p++) {
+          a0 += tr[k] * r[p] + tg[k] * g[p] + tb[k] * b[p];
+        }
+        sum += (a0 + a1) + (a2 + a3);
+      }
+      return sum;
+    }
+
+    private double correlateGray(JavaMatchEngine.Template t, int x, int y) {
+      float[] tb = t.b;
+      double sum = 0;
+      int k = 0;
+      for (int j = 0; j < t.h; j++) {
+        int p = (y - y0 + j) * w + x - x0;
+        float a0 = 0, a1 = 0, a2 = 0, a3 = 0;
+        int i = 0;
+        for (; i + 3 < t.w; i += 4, k += 4, p += 4) {
+          a0 += tb[k] * b[p];
+          a1 += tb[k + 1] * b[p + 1];
+          a2 += tb[k + 2] * b[p + 2];
+          a3 += tb[k + 3] * b[p + 3];
+        }
+        for (; i < t.w; i++, k++, p++) {
+          a0 += tb[k] * b[p];
+        }
+        sum += (a0 + a1) + (a2 + a3);
+      }
+      return sum;
+    }
+  }
+}
@@ -12,9 +12,10 @@ import java.awt.Rectangle;
 import java.awt.event.InputEvent;
 import java.awt.event.KeyEvent;
 import java.io.IOException;
-import java.util.Date;
 import java.util.Iterator;
 import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Future;
 
 /**
  * A Region always lies completely inside its parent screen
@@ -59,10 +60,23 @@ public class Region {
    * Default time to wait for an image
    */
   protected double autoWaitTimeout = Settings.AutoWaitTimeout;
+  /**
+   * how often this region is scanned while waiting (null: Settings.WaitScanPolicy)
+   */
+  protected ScanRatePolicy scanRatePolicy = null;
+  /**
+   * how often this region is scanned by its observer in frames per second
+   * (0: Settings.ObserveScanRate)
+   */
+  protected float observeScanRate = 0;
   /**
    * Flag, if an observer is running on this region
    */
   private boolean observing = false;
+  /**
+   * the waiting of the running observer (null: not observing)
+   */
+  private volatile ScanScheduler.Task observeTask = null;
   /**
    * The {@link SikuliEventManager} Singleton instance
    */
@@ -198,6 +212,7 @@ public class Region {
     autoWaitTimeout = r.autoWaitTimeout;
     findFailedResponse = r.findFailedResponse;
     throwException = r.throwException;
+    scanRatePolicy = r.scanRatePolicy;
   }
 
   //</editor-fold>
@@ -352,6 +367,7 @@ public class Region {
     reg.autoWaitTimeout = r.autoWaitTimeout;
     reg.findFailedResponse = r.findFailedResponse;
     reg.throwException = r.throwException;
+    reg.scanRatePolicy = r.scanRatePolicy;
     return reg;
   }
 
@@ -481,6 +497,48 @@ public class Region {
     return autoWaitTimeout;
   }
 
+  /**
+   * how often this region is scanned while waiting for a target to appear or vanish
+   *
+   * @param policy e.g. new AdaptiveScanRate(), null: Settings.WaitScanPolicy
+   */
+  public void setScanRatePolicy(ScanRatePolicy policy) {
+    scanRatePolicy = policy;
+  }
+
+  /**
+   * current setting for this region (see setScanRatePolicy)
+   *
+   * @return the policy used
+   */
+  public ScanRatePolicy getScanRatePolicy() {
+    if (scanRatePolicy != null) {
+      return scanRatePolicy;
+    }
+    if (Settings.WaitScanPolicy != null) {
+      return Settings.WaitScanPolicy;
+    }
+    return new FixedScanRate();
+  }
+
+  /**
+   * how often this region is scanned while observing
+   *
+   * @param rate frames per second, 0: Settings.ObserveScanRate
+   */
+  public void setObserveScanRate(float rate) {
+    observeScanRate = rate;
+  }
+
+  /**
+   * current setting for this region (see setObserveScanRate)
+   *
+   * @return frames per second
+   */
+  public float getObserveScanRate() {
+    return observeScanRate > 0 ? observeScanRate : Settings.ObserveScanRate;
+  }
+
   /**
    * FindFailedResponse.<br /> ABORT - (initial value) abort script on FindFailed (=
    * setThrowException(true) )<br /> SKIP - ignore FindFailed (same as setThrowException(false) )<br
@@ -1407,6 +1465,10 @@ public class Region {
    * @throws FindFailed
    */
   private <PatternOrString> boolean handleFindFailed(PatternOrString target) throws FindFailed {
+    if (Thread.currentThread().isInterrupted()) {
+      // the search was cancelled (e.g. Future.cancel(true) of waitAsync): no prompt or retry
+      return false;
+    }
     FindFailedResponse response;
     if (findFailedResponse == FindFailedResponse.PROMPT) {
       FindFailedDialog fd = new FindFailedDialog(target);
@@ -1464,14 +1526,30 @@ public class Region {
    * @throws FindFailed if the Find operation failed
    */
   public <PatternOrString> Iterator<Match> findAll(PatternOrString target) throws FindFailed {
+    return findAllLimited(target, 0);
+  }
+
+  /**
+   * finds the best matches of the given pattern in this region, waits like findAll(target)
+   *
+   * @param target
+   * @param limit max number of matches (0 = no limit)
+   * @return the matches sorted by descending score
+   * @throws FindFailed if the Find operation failed
+   */
+  public Iterator<Match> findAll(Pattern target, int limit) throws FindFailed {
+    return findAllLimited(target, limit);
+  }
+
+  private Iterator<Match> findAllLimited(Object target, int limit) throws FindFailed {
     while (true) {
       try {
         if (autoWaitTimeout > 0) {
-          RepeatableFindAll rf = new RepeatableFindAll(target);
+          RepeatableFindAll rf = new RepeatableFindAll(target, limit);
           rf.repeat(autoWaitTimeout);
           lastMatches = rf.getMatches();
         } else {
-          lastMatches = doFindAll(target, null);
+          lastMatches = doFindAll(target, limit, null);
         }
       } catch (Exception e) {
         throw new FindFailed(e.getMessage());
@@ -1485,6 +1563,25 @@ public class Region {
     }
   }
 
+  /**
+   * finds all matches of the given pattern in this region (no waiting): the region is
+   * searched in parallel tiles and each match is available as soon as its tile is searched
+   * (hasNext() waits for the next tile if needed), the matches are not sorted by score
+   *
+   * @param target
+   * @param limit max number of matches (0 = no limit)
+   * @return the matches
+   * @throws FindFailed if the image file cannot be loaded
+   */
+  public Iterator<Match> findAllStreamed(Pattern target, int limit) throws FindFailed {
+    Finder f = new Finder(grabFrame(), this);
+    if (null == f.findAllStreamed(target, limit)) {
+      throw new FindFailed("ImageFile " + target.getFilename() + " not found on disk");
+    }
+    lastMatches = f;
+    return lastMatches;
+  }
+
   /**
    * Waits for the PatternOrString to appear
    *
@@ -1567,6 +1664,69 @@ public class Region {
     return null;
   }
 
+  /**
+   * search all given patterns in one capture of this region, the patterns are searched
+   * in parallel (see Settings.FindThreads)
+   *
+   * @param patterns
+   * @return for each pattern its best match or null (not found or image file missing)
+   */
+  public List<Match> findAny(List<Pattern> patterns) {
+    Finder f = new Finder(grabFrame(), this);
+    f.ownScreenImages();
+    List<Match> ret = f.findAny(patterns);
+    f.destroy();
+    for (int i = 0; i < ret.size(); i++) {
+      if (ret.get(i) != null) {
+        ret.get(i).setImage(getImageFilename(patterns.get(i)));
+      }
+    }
+    return ret;
+  }
+
+  /**
+   * waits until one of the given patterns appears (with the default autoWaitTimeout)
+   *
+   * @param patterns
+   * @return the match of the pattern found first
+   * @throws FindFailed
+   */
+  public Match waitAny(List<Pattern> patterns) throws FindFailed {
+    return waitAny(patterns, autoWaitTimeout);
+  }
+
+  /**
+   * waits until one of the given patterns appears or the timeout (in seconds) is passed<br />
+   * each capture is searched for all patterns in parallel, the search stops with the first
+   * pattern found (if more than one was found in the same capture, the best match is taken)
+   *
+   * @param patterns
+   * @param timeout Timeout in seconds
+   * @return the match of the pattern found first
+   * @throws FindFailed
+   */
+  public Match waitAny(List<Pattern> patterns, double timeout) throws FindFailed {
+    RepeatableFindAny rf;
+    while (true) {
+      try {
+        Debug.log(2, "waiting for any of " + patterns + " to appear");
+        rf = new RepeatableFindAny(patterns);
+        rf.repeat(timeout);
+      } catch (Exception e) {
+        throw new FindFailed(e.getMessage());
+      }
+      if (rf._match != null) {
+        lastMatch = rf._match;
+        lastMatch.setImage(getImageFilename(patterns.get(rf._index)));
+        Debug.log(2, "" + patterns.get(rf._index) + " has appeared.");
+        return lastMatch;
+      }
+      if (!handleFindFailed(patterns)) {
+        return null;
+      }
+    }
+  }
+
   //TODO implement findText + check text target already here (find(String))
   /**
    *
@@ -1640,16 +1800,302 @@ public class Region {
     }
     return false;
   }
+
+  /**
+   * find() in the background (see Settings.AsyncFindThreads), with autoWaitTimeout like
+   * waitAsync()
+   *
+   * @param target A search criteria
+   * @return the pending match, Future.get() throws an ExecutionException wrapping FindFailed
+   * if not found
+   */
+  public <PatternOrString> Future<Match> findAsync(final PatternOrString target) {
+    if (autoWaitTimeout > 0) {
+      return waitAsync(target, autoWaitTimeout);
+    }
+    return FindTasks.submit(new Callable<Match>() {
+      @Override
+      public Match call() throws FindFailed {
+        return Region.this.find(target);
+      }
+    });
+  }
+
+  /**
+   * wait() in the background with the default autoWaitTimeout (see Settings.AsyncFindThreads)
+   *
+   * @param target The target to search for
+   * @return the pending match
+   */
+  public <PatternOrString> Future<Match> waitAsync(PatternOrString target) {
+    return waitAsync(target, autoWaitTimeout);
+  }
+
+  /**
+   * wait() in the background (see Settings.AsyncFindThreads), the timeout starts now<br />
+   * Future.cancel() stops the waiting
+   *
+   * @param target The target to search for
+   * @param timeout Timeout in seconds
+   * @return the pending match, Future.get() throws an ExecutionException wrapping FindFailed
+   * if not found
+   */
+  public <PatternOrString> Future<Match> waitAsync(final PatternOrString target, double timeout) {
+    return new AsyncRepeat<Match>(timeout) {
+      @Override
+      Repeatable create() {
+        Debug.log(2, "waiting for " + target + " to appear");
+        return new RepeatableFind(target);
+      }
+
+      @Override
+      boolean finish(Repeatable r) throws FindFailed {
+        RepeatableFind rf = (RepeatableFind) r;
+        Match m = rf.getMatch();
+        if (m != null) {
+          m.setImage(rf._imagefilename);
+          lastMatch = m;
+          Debug.log(2, "" + target + " has appeared.");
+          found(m);
+          return false;
+        }
+        Debug.log(2, "" + target + " has not appeared.");
+        if (handleFindFailed(target)) {
+          return true;
+        }
+        found(null);
+        return false;
+      }
+
+      @Override
+      void failed(Exception e) {
+        super.failed(e instanceof FindFailed ? e : new FindFailed(e.getMessage()));
+      }
+    }.submit();
+  }
+
+  /**
+   * exists() in the background with the default autoWaitTimeout (see Settings.AsyncFindThreads)
+   *
+   * @param target Pattern or String
+   * @return the pending match (null if not found or image file missing)
+   */
+  public <PatternOrString> Future<Match> existsAsync(PatternOrString target) {
+    return existsAsync(target, autoWaitTimeout);
+  }
+
+  /**
+   * exists() in the background (see Settings.AsyncFindThreads), the timeout starts now<br />
+   * Future.cancel() stops the waiting
+   *
+   * @param target Pattern or String
+   * @param timeout Timeout in seconds
+   * @return the pending match (null if not found or image file missing)
+   */
+  public <PatternOrString> Future<Match> existsAsync(final PatternOrString target, double timeout) {
+    return new AsyncRepeat<Match>(timeout) {
+      @Override
+      Repeatable create() {
+        return new RepeatableFind(target);
+      }
+
+      @Override
+      boolean finish(Repeatable r) {
+        Match m = ((RepeatableFind) r).getMatch();
+        if (m != null) {
+          m.setImage(getImageFilename(target));
+          lastMatch = m;
+        }
+        found(m);
+        return false;
+      }
+
+      @Override
+      void failed(Exception e) {
+        Debug.error("Region.exists: seems that imagefile could not be found on disk", target);
+        found(null);
+      }
+    }.submit();
+  }
+
+  /**
+   * waitVanish() in the background with the default autoWaitTimeout
+   * (see Settings.AsyncFindThreads)
+   *
+   * @param target Pattern or String
+   * @return pending: true if the target vanishes
+   */
+  public <PatternOrString> Future<Boolean> waitVanishAsync(PatternOrString target) {
+    return waitVanishAsync(target, autoWaitTimeout);
+  }
+
+  /**
+   * waitVanish() in the background (see Settings.AsyncFindThreads), the timeout starts now<br />
+   * Future.cancel() stops the waiting
+   *
+   * @param target Pattern or String
+   * @param timeout Timeout in seconds
+   * @return pending: true if the target vanishes, false otherwise and if imagefile is missing
+   */
+  public <PatternOrString> Future<Boolean> waitVanishAsync(final PatternOrString target,
+          double timeout) {
+    return new AsyncRepeat<Boolean>(timeout) {
+      @Override
+      Repeatable create() {
+        Debug.log(2, "waiting for " + target + " to vanish");
+        return new RepeatableVanish(target);
+      }
+
+      @Override
+      boolean finish(Repeatable r) {
+        RepeatableVanish rv = (RepeatableVanish) r;
+        rv.release();
+        boolean vanished = rv.ifSuccessful();
+        Debug.log(2, "" + target + (vanished ? " has vanished" : " has not vanished before timeout"));
+        found(vanished);
+        return false;
+      }
+
+      @Override
+      void failed(Exception e) {
+        Debug.error("Region.waitVanish: seems that imagefile could not be found on disk", target);
+        found(false);
+      }
+    }.submit();
+  }
+
+  /**
+   * a repeated search in the background: each scan is a task of FindTasks, between the scans
+   * the search waits in ScanScheduler without using a thread (see ScanScheduler.Task.resumeAt)
+   */
+  private abstract class AsyncRepeat<T> implements Runnable {
+
+    private final FindTasks.Repeating<T> result = new FindTasks.Repeating<T>();
+    private final double timeout;
+    private Repeatable repeatable;
+    private volatile boolean waiting = false;
+
+    /**
+     *
+     * @param timeout in seconds, starts with submit()
+     */
+    AsyncRepeat(double timeout) {
+      this.timeout = timeout;
+    }
+
+    /**
+     *
+     * @return a new repetition of the search
+     */
+    abstract Repeatable create();
+
+    /**
+     * the repetition ended (successful or timeout): sets the result by found()
+     *
+     * @param r
+     * @return true to start a new repetition (FindFailedResponse.RETRY)
+     * @throws FindFailed
+     */
+    abstract boolean finish(Repeatable r) throws FindFailed;
+
+    /**
+     * the search failed with an exception (e.g. image file missing)
+     *
+     * @param e
+     */
+    void failed(Exception e) {
+      result.failed(e);
+    }
+
+    void found(T value) {
+      result.found(value);
+    }
+
+    Future<T> submit() {
+      begin();
+      FindTasks.execute(this);
+      return result;
+    }
+
+    private void begin() {
+      repeatable = create();
+      ScanScheduler.Task task = new ScanScheduler.Task(getScreen(), getRect(), timeout);
+      repeatable.begin(task, timeout);
+      FrameGrabber.get(getScreen()).register(Region.this);
+      result.setTask(task);
+    }
+
+    private void end() {
+      FrameGrabber.get(getScreen()).unregister(Region.this);
+    }
+
+    /**
+     * one scan, then the next one is scheduled or the result is set
+     */
+    @Override
+    public void run() {
+      Repeatable r = repeatable;
+      try {
+        boolean resumed = !waiting || r.getTask().resumed();
+        waiting = false;
+        if (!resumed || result.isCancelled() || r.scan()) {
+          done(r);
+          return;
+        }
+        if (r.nextScan()) {
+          waiting = true;
+          if (r.getTask().resumeAt(r.getDue(), this)) {
+            return;
+          }
+          waiting = false;
+        }
+        done(r);
+      } catch (Exception e) {
+        end();
+        r.release();
+        failed(e);
+      }
+    }
+
+    private void done(Repeatable r) throws FindFailed {
+      end();
+      if (result.isCancelled()) {
+        r.release();
+        return;
+      }
+      if (finish(r)) {
+        begin();
+        FindTasks.execute(this);
+      }
+    }
+  }
   //</editor-fold>
 
   //<editor-fold defaultstate="collapsed" desc="find internal methods">
+  /**
+   * the current image of this region: a new capture or, if Settings.MaxFrameAge &gt; 0
+   * or scans of other regions are due at the same time, taken from a capture shared
+   * with other regions (see FrameGrabber)
+   */
+  private ScreenImage grabFrame() {
+    FrameGrabber grabber = FrameGrabber.get(getScreen());
+    if (Settings.MaxFrameAge > 0 || grabber.isShared()) {
+      return grabber.capture(getRect());
+    }
+    return getScreen().capture(x, y, w, h);
+  }
+
   /**
    * Match findNow( Pattern/String/PatternClass ) finds the given pattern on the screen and returns
    * the best match without waiting.
    */
   private <PatternOrString> Match doFind(PatternOrString ptn, RepeatableFind repeating) throws IOException {
     Finder f;
-    ScreenImage simg = getScreen().capture(x, y, w, h);
+    ScreenImage simg = grabFrame();
+    if (repeating != null && !(repeating._finder != null && Settings.SkipUnchangedFrames)) {
+      // else the Finder knows if the frame changed
+      repeating.scanned(simg);
+    }
     if (repeating != null && repeating._finder != null) {
       f = repeating._finder;
       f.setScreenImage(simg);
@@ -1657,6 +2103,7 @@ public class Region {
       f.findRepeat();
     } else {
       f = new Finder(simg, this);
+      f.ownScreenImages();
       String text;
       if (ptn instanceof String) {
         text = f.find((String) ptn);
@@ -1677,19 +2124,27 @@ public class Region {
         repeating._imagefilename = text;
       }
     }
+    Match m = null;
     if (f.hasNext()) {
-      return f.next();
+      m = f.next();
     }
-    return null;
+    if (repeating == null) {
+      f.destroy();
+    }
+    return m;
   }
 
   /**
    * Match findAllNow( Pattern/String/PatternClass ) finds the given pattern on the screen and
    * returns the best match without waiting.
    */
-  private <PatternOrString> Iterator<Match> doFindAll(PatternOrString ptn, RepeatableFindAll repeating) throws IOException {
+  private <PatternOrString> Iterator<Match> doFindAll(PatternOrString ptn, int limit,
+          RepeatableFindAll repeating) throws IOException {
     Finder f;
-    ScreenImage simg = getScreen().capture(x, y, w, h);
+    ScreenImage simg = grabFrame();
+    if (repeating != null) {
+      repeating.scanned(simg);
+    }
     if (repeating != null && repeating._finder != null) {
       f = repeating._finder;
       f.setScreenImage(simg);
@@ -1697,17 +2152,24 @@ public class Region {
       f.findAllRepeat();
     } else {
       f = new Finder(simg, this);
-      if (ptn instanceof String) {
-        if (null == f.findAll((String) ptn)) {
-          throw new IOException();
-        }
-      } else {
-        if (null == f.findAll((Pattern) ptn)) {
-          throw new IOException("ImageFile " + ((Pattern) ptn).getFilename()
-                  + " not found on disk");
+      f.ownScreenImages();
+      try {
+        if (ptn instanceof String) {
+          if (null == f.findAll((String) ptn)) {
+            throw new IOException();
+          }
+        } else {
+          if (null == f.findAll((Pattern) ptn, limit)) {
+            throw new IOException("ImageFile " + ((Pattern) ptn).getFilename()
+                    + " not found on disk");
+          }
         }
+      } finally {
+        // the pooled image is given back also if the search failed
+        f.releaseScreenImage();
       }
     }
+    f.releaseScreenImage();
     if (f.hasNext()) {
       return f;
     }
@@ -1725,30 +2187,134 @@ public class Region {
     // return FALSE if otherwise
     // throws Exception if any unexpected error occurs
     boolean repeat(double timeout) throws Exception {
+      FrameGrabber grabber = FrameGrabber.get(getScreen());
+      grabber.register(Region.this);
+      try {
+        return repeatLoop(timeout);
+      } finally {
+        grabber.unregister(Region.this);
+      }
+    }
 
-      int MaxTimePerScan = (int) (1000.0 / Settings.WaitScanRate);
-      int MaxTimePerScanSecs = MaxTimePerScan / 1000;
-      long begin_t = (new Date()).getTime();
-      do {
-        long before_find = (new Date()).getTime();
-
-        run();
-        if (ifSuccessful()) {
+    /**
+     * the hash of the last scanned image, only kept if the scan rate depends on changes
+     */
+    private boolean _trackChanges = false;
+    private boolean _hashed = false;
+    private long _frameHash = 0;
+    private boolean _frameChanged = true;
+    /**
+     * the state of the repetition between the scans (see begin())
+     */
+    private ScanScheduler.Task _task = null;
+    private ScanRatePolicy _policy;
+    private double _timeout;
+    private int _scans;
+    private long _lastChange;
+    private long _beforeFind;
+    private long _due;
+
+    /**
+     * the image of the current scan: compared with the one of the last scan (see frameChanged)
+     *
+     * @param simg
+     */
+    void scanned(ScreenImage simg) {
+      if (!_trackChanges) {
+        return;
+      }
+      long hash = PixelImage.create(simg.getImage()).hash();
+      _frameChanged = !_hashed || hash != _frameHash;
+      _frameHash = hash;
+      _hashed = true;
+    }
+
+    /**
+     *
+     * @return false if the last scanned image is the same as the one before
+     */
+    boolean frameChanged() {
+      return _frameChanged;
+    }
+
+    private boolean repeatLoop(double timeout) throws Exception {
+      // the waiting between the scans, an interrupt (e.g. cancel of an asynchronous search)
+      // ends the waiting as not found
+      begin(new ScanScheduler.Task(getScreen(), getRect(), timeout), timeout);
+      while (true) {
+        if (scan()) {
           return true;
-        } else if (timeout < MaxTimePerScanSecs) {
-          // instant return on first search failed if timeout very small or 0
+        }
+        if (!nextScan() || !_task.await(_due)) {
           return false;
         }
+      }
+    }
 
-        long after_find = (new Date()).getTime();
-        if (after_find - before_find < MaxTimePerScan) {
-          getScreen().getRobot().delay((int) (MaxTimePerScan - (after_find - before_find)));
-        } else {
-          getScreen().getRobot().delay(10);
-        }
-      } while (begin_t + timeout * 1000 > (new Date()).getTime());
+    /**
+     * starts the repetition, the timeout runs from the task's creation
+     *
+     * @param task
+     * @param timeout
+     */
+    void begin(ScanScheduler.Task task, double timeout) {
+      _policy = getScanRatePolicy();
+      _trackChanges = !(_policy instanceof FixedScanRate);
+      _task = task;
+      _timeout = timeout;
+      _scans = 0;
+      _lastChange = task.begin;
+    }
+
+    /**
+     * one scan
+     *
+     * @return true if successful
+     */
+    boolean scan() throws Exception {
+      _beforeFind = _scans++ == 0 ? _task.begin : System.nanoTime();
+      run();
+      return ifSuccessful();
+    }
+
+    /**
+     * after an unsuccessful scan: the time of the next scan (getDue())
+     *
+     * @return false if there is no next scan
+     */
+    boolean nextScan() {
+      int MaxTimePerScanSecs = (int) (1000.0 / Settings.WaitScanRate) / 1000;
+      if (_timeout < MaxTimePerScanSecs) {
+        // instant return on first search failed if timeout very small or 0
+        return false;
+      }
+      if (_scans > 1 && frameChanged()) {
+        _lastChange = _beforeFind;
+      }
+      long lastInput = RobotDesktop.getLastInputTime();
+      long sinceInput = lastInput == 0 ? Long.MAX_VALUE
+              : (System.nanoTime() - lastInput) / 1000000;
+      long MaxTimePerScan = _policy.getInterval(sinceInput,
+              (_beforeFind - _lastChange) / 1000000) * 1000000;
+
+      long after_find = System.nanoTime();
+      _due = after_find - _beforeFind < MaxTimePerScan
+              ? _beforeFind + MaxTimePerScan : after_find + 10000000L;
+      return true;
+    }
 
-      return false;
+    ScanScheduler.Task getTask() {
+      return _task;
+    }
+
+    long getDue() {
+      return _due;
+    }
+
+    /**
+     * the repetition ended without taking its result (e.g. cancelled)
+     */
+    void release() {
     }
   }
 
@@ -1764,10 +2330,15 @@ public class Region {
     }
 
     public Match getMatch() {
+      release();
+      return (_match == null) ? _match : new Match(_match);
+    }
+
+    @Override
+    void release() {
       if (_finder != null) {
         _finder.destroy();
       }
-      return (_match == null) ? _match : new Match(_match);
     }
 
     @Override
@@ -1775,6 +2346,14 @@ public class Region {
       _match = doFind(_target, this);
     }
 
+    @Override
+    boolean frameChanged() {
+      if (_finder != null && Settings.SkipUnchangedFrames) {
+        return _finder.frameChanged();
+      }
+      return super.frameChanged();
+    }
+
     @Override
     boolean ifSuccessful() {
       return _match != null;
@@ -1796,11 +2375,13 @@ public class Region {
   private class RepeatableFindAll extends Repeatable {
 
     Object _target;
+    int _limit;
     Iterator<Match> _matches = null;
     Finder _finder = null;
 
-    public <PatternOrString> RepeatableFindAll(PatternOrString target) {
+    public <PatternOrString> RepeatableFindAll(PatternOrString target, int limit) {
       _target = target;
+      _limit = limit;
     }
 
     public Iterator<Match> getMatches() {
@@ -1809,7 +2390,7 @@ public class Region {
 
     @Override
     public void run() throws IOException {
-      _matches = doFindAll(_target, this);
+      _matches = doFindAll(_target, _limit, this);
     }
 
     @Override
@@ -1817,6 +2398,39 @@ public class Region {
       return _matches != null;
     }
   }
+
+  private class RepeatableFindAny extends Repeatable {
+
+    List<Pattern> _patterns;
+    Match _match = null;
+    int _index = -1;
+
+    public RepeatableFindAny(List<Pattern> patterns) {
+      _patterns = patterns;
+    }
+
+    @Override
+    public void run() {
+      ScreenImage simg = grabFrame();
+      scanned(simg);
+      Finder f = new Finder(simg, Region.this);
+      f.ownScreenImages();
+      List<Match> found = f.findAny(_patterns, true);
+      f.destroy();
+      for (int i = 0; i < found.size(); i++) {
+        Match m = found.get(i);
+        if (m != null && (_match == null || m.getScore() > _match.getScore())) {
+          _match = m;
+          _index = i;
+        }
+      }
+    }
+
+    @Override
+    boolean ifSuccessful() {
+      return _match != null;
+    }
+  }
   //</editor-fold>
 
   //<editor-fold defaultstate="collapsed" desc="Find internal -- obsolete??">
@@ -1879,22 +2493,73 @@ public class Region {
     getEventManager().addChangeObserver(Settings.ObserveMinChangedPixels, observer);
   }
 
+  /**
+   * the appear events of the target as a stream with backpressure (instead of onAppear),
+   * the events are sent while the region is observed
+   *
+   * @param target Pattern or String
+   * @return the stream (replaces an observer of the same target)
+   */
+  public <PatternOrString> SikuliEventStream getAppearEvents(PatternOrString target) {
+    SikuliEventStream stream = new SikuliEventStream();
+    getEventManager().addAppearObserver(target, stream);
+    return stream;
+  }
+
+  /**
+   * the vanish events of the target as a stream with backpressure (instead of onVanish)
+   *
+   * @param target Pattern or String
+   * @return the stream (replaces an observer of the same target)
+   */
+  public <PatternOrString> SikuliEventStream getVanishEvents(PatternOrString target) {
+    SikuliEventStream stream = new SikuliEventStream();
+    getEventManager().addVanishObserver(target, stream);
+    return stream;
+  }
+
+  /**
+   * the change events as a stream with backpressure (instead of onChange)
+   *
+   * @param threshold min size of a changed area in pixels
+   * @return the stream (replaces an observer with the same threshold)
+   */
+  public SikuliEventStream getChangeEvents(int threshold) {
+    SikuliEventStream stream = new SikuliEventStream();
+    getEventManager().addChangeObserver(threshold, stream);
+    return stream;
+  }
+
   public void observe() {
     observe(Float.POSITIVE_INFINITY);
   }
 
+  /**
+   * observe the region for the given time, the scans are done by the shared observer threads
+   * (see Settings.ObserverThreads), the observers are called in one of them
+   *
+   * @param secs time in seconds
+   */
   public void observeInBackground(final double secs) {
-    Thread th = new Thread() {
-      @Override
-      public void run() {
-        observe(secs);
-      }
-    };
-    th.start();
+    if (evtMgr == null) {
+      Debug.error("observeInBackground(): Nothing to observe (Region might be invalid)");
+      return;
+    }
+    observing = true;
+    evtMgr.initialize();
+    ObserverEngine.start(this, evtMgr, secs);
   }
 
   public void stopObserver() {
     observing = false;
+    ObserverEngine.stop(this);
+    ScanScheduler.Task task = observeTask;
+    if (task != null) {
+      task.cancel();
+    }
+    if (evtMgr != null) {
+      evtMgr.closeStreams();
+    }
   }
 
   public void observe(double secs) {
@@ -1902,25 +2567,35 @@ public class Region {
       Debug.error("observe(): Nothing to observe (Region might be invalid)");
       return;
     }
-    int MaxTimePerScan = (int) (1000.0 / Settings.ObserveScanRate);
-    long begin_t = (new Date()).getTime();
+    int MaxTimePerScan = (int) (1000.0 / getObserveScanRate());
     observing = true;
     evtMgr.initialize();
-    while (observing && begin_t + secs * 1000 > (new Date()).getTime()) {
-      long before_find = (new Date()).getTime();
-      ScreenImage simg = getScreen().capture(x, y, w, h);
+    FrameGrabber grabber = FrameGrabber.get(getScreen());
+    grabber.register(this);
+    try {
+      observeLoop(secs, MaxTimePerScan);
+    } finally {
+      grabber.unregister(this);
+    }
+    // the handlers of the events found have run, when observe returns
+    evtMgr.drain();
+    stopObserver();
+    observeTask = null;
+  }
+
+  private void observeLoop(double secs, int MaxTimePerScan) {
+    ScanScheduler.Task task = new ScanScheduler.Task(getScreen(), getRect(), secs);
+    observeTask = task;
+    while (observing && !task.expired()) {
+      long before_find = System.nanoTime();
+      ScreenImage simg = grabFrame();
       if (!evtMgr.update(simg)) {
         break;
       }
-      long after_find = (new Date()).getTime();
-      try {
-        if (after_find - before_find < MaxTimePerScan) {
-          Thread.sleep((int) (MaxTimePerScan - (after_find - before_find)));
-        }
-      } catch (Exception e) {
+      if (!task.await(before_find + MaxTimePerScan * 1000000L)) {
+        break;
       }
     }
-    stopObserver();
   }
   //</editor-fold>
 
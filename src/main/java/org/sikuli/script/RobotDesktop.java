@@ -21,6 +21,7 @@ public class RobotDesktop extends Robot implements RobotIF {
   private static String heldKeys = "";
   private static ArrayList<Integer> heldKeyCodes = new ArrayList<Integer>();
   private Screen scr = null;
+  private static volatile long lastInputTime = 0;
 
   @Override
   public Screen getScreen() {
@@ -57,6 +58,65 @@ public class RobotDesktop extends Robot implements RobotIF {
     }
   }
 
+  /**
+   *
+   * @return System.nanoTime() of the last mouse or keyboard action (0 if there was none)
+   */
+  public static long getLastInputTime() {
+    return lastInputTime;
+  }
+
+  private void inputDone() {
+    inputDone(scr);
+  }
+
+  /**
+   * a mouse or keyboard action was done on the screen: the cached matches of the screen
+   * and the captures shared between regions are no longer valid
+   */
+  static void inputDone(Screen scr) {
+    long now = System.nanoTime();
+    lastInputTime = now == 0 ? 1 : now;
+    MatchCache.invalidate(scr.getID());
+    FrameGrabber.invalidateAll();
+  }
+
+  @Override
+  public void mouseMove(int x, int y) {
+    super.mouseMove(x, y);
+    inputDone();
+  }
+
+  @Override
+  public void mousePress(int buttons) {
+    super.mousePress(buttons);
+    inputDone();
+  }
+
+  @Override
+  public void mouseRelease(int buttons) {
+    super.mouseRelease(buttons);
+    inputDone();
+  }
+
+  @Override
+  public void mouseWheel(int wheelAmt) {
+    super.mouseWheel(wheelAmt);
+    inputDone();
+  }
+
+  @Override
+  public void keyPress(int keycode) {
+    super.keyPress(keycode);
+    inputDone();
+  }
+
+  @Override
+  public void keyRelease(int keycode) {
+    super.keyRelease(keycode);
+    inputDone();
+  }
+
   @Override
   public void mouseDown(int buttons) {
     if (heldButtons != 0) {
@@ -0,0 +1,56 @@
+/*
+ * Copyright 2010-2013, Sikuli.org
+ * Released under the MIT License.
+ *
+ */
+package org.sikuli.script;
+
+/**
+ * internal use: the correlation directly on the packed RGB pixels (no preparation),
+ * one value at a time
+ */
+class ScalarKernel implements CorrelationKernel {
+
+  @Override
+  public String getName() {
+    return "scalar";
+  }
+
+  @Override
+  public Area prepare(final PixelImage img, int x, int y, int w, int h, boolean gray) {
+    return new Area() {
+      @Override
+      public double correlate(JavaMatchEngine.Template t, int x, int y) {
+        return ScalarKernel.correlate(img, t, x, y);
+      }
+    };
+  }
+
+  static double correlate(PixelImage img, JavaMatchEngine.Template t, int x, int y) {
+    int[] data = img.data;
+    float[] tr = t.r, tg = t.g, tb = t.b;
+    double sum = 0;
+    int k = 0;
+    if (t.gray) {
+      for (int j = 0; j < t.h; j++) {
+        int p = img.offset + (y + j) * img.stride + x;
+        float acc = 0;
+        for (int i = 0; i < t.w; i++, k++) {
+          acc += tb[k] * (data[p + i] & 0xff);
+        }
+        sum += acc;
+      }
+      return sum;
+    }
+    for (int j = 0; j < t.h; j++) {
+      int p = img.offset + (y + j) * img.stride + x;
+      float acc = 0;
+      for (int i = 0; i < t.w; i++, k++) {
+        int c = data[p + i];
+        acc += tr[k] * ((c >> 16) & 0xff) + tg[k] * ((c >> 8) & 0xff) + tb[k] * (c & 0xff);
+      }
+      sum += acc;
+    }
+    return sum;
+  }
+}
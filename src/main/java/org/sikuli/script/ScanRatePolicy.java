@@ -0,0 +1,26 @@
+/*
+ * Copyright 2010-2013, Sikuli.org
+ * Released under the MIT License.
+ *
+ */
+package org.sikuli.script;
+
+/**
+ * decides how often a Region is scanned while waiting (wait, exists, waitVanish, findAll
+ * with timeout)<br />
+ * see FixedScanRate (the default, Settings.WaitScanRate) and AdaptiveScanRate,
+ * set per Region with Region.setScanRatePolicy() or for all with Settings.WaitScanPolicy
+ */
+public interface ScanRatePolicy {
+
+  /**
+   * the time between the starts of two scans
+   *
+   * @param sinceInput ms since the last mouse or keyboard action
+   * (Long.MAX_VALUE if there was none)
+   * @param sinceChange ms since the scanned image changed last
+   * (since the wait started if no change was seen)
+   * @return the interval in ms
+   */
+  public long getInterval(long sinceInput, long sinceChange);
+}
@@ -0,0 +1,337 @@
+/*
+ * Copyright 2010-2013, Sikuli.org
+ * Released under the MIT License.
+ *
+ */
+package org.sikuli.script;
+
+import java.awt.Rectangle;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+
+/**
+ * internal use: one thread, that wakes up the waiting searches and observers
+ * (Region.wait/exists/waitVanish/observe) when their next scan is due<br />
+ * all times are System.nanoTime() values, a Task is woken up at its due time or at its
+ * deadline (timeout)<br />
+ * tasks, that are due within Settings.ScanCoalesceTime after the first one, are woken up
+ * together with it (so up to ScanCoalesceTime early): scans of the same screen then share one
+ * capture of the screen (see FrameGrabber.share), that is made by the first of the woken
+ * threads needing it (the scheduler thread only wakes up)<br />
+ * asynchronous searches do not wait in a thread: their next scan is submitted to FindTasks
+ * when it is due (see Task.resumeAt)
+ */
+class ScanScheduler {
+
+  private static final PriorityQueue<Task> queue = new PriorityQueue<Task>(16,
+          new Comparator<Task>() {
+    @Override
+    public int compare(Task t1, Task t2) {
+      long d = t1.due - t2.due;
+      return d < 0 ? -1 : (d > 0 ? 1 : 0);
+    }
+  });
+  private static Thread thread = null;
+  private static long wakeups = 0;
+  private static long coalesced = 0;
+
+  /**
+   * a repeated search or observer: the waiting thread calls await() between its scans,
+   * an asynchronous search calls resumeAt() instead
+   */
+  static class Task {
+
+    final Screen screen;
+    final Rectangle rect;
+    final long begin;
+    private final long deadline;
+    private final boolean timed;
+    private long due;
+    private boolean ready = false;
+    private boolean cancelled = false;
+    private SharedCapture capture = null;
+    private Runnable next = null;
+
+    /**
+     *
+     * @param scr the screen scanned (null: no shared captures)
+     * @param rect the area scanned
+     * @param timeout in seconds from now (infinite or very large: no deadline)
+     */
+    Task(Screen scr, Rectangle rect, double timeout) {
+      screen = scr;
+      this.rect = rect;
+      begin = System.nanoTime();
+      timed = timeout * 1e9 < Long.MAX_VALUE / 2;
+      deadline = timed ? begin + (long) (timeout * 1e9) : 0;
+    }
+
+    /**
+     *
+     * @return true if the deadline is reached
+     */
+    boolean expired() {
+      return timed && System.nanoTime() - deadline >= 0;
+    }
+
+    /**
+     * waits until the next scan is due
+     *
+     * @param due the time of the next scan (nanoTime)
+     * @return false if the deadline was reached first, the task was cancelled or the
+     * waiting thread was interrupted (the interrupt status is kept)
+     */
+    boolean await(long due) {
+      SharedCapture shared = null;
+      boolean ok;
+      synchronized (this) {
+        if (cancelled) {
+          return false;
+        }
+        if (timed && due - deadline > 0) {
+          due = deadline;
+        }
+        ok = true;
+        if (due - System.nanoTime() > 0) {
+          this.due = due;
+          ready = false;
+          schedule(this);
+          try {
+            while (!ready && !cancelled) {
+              wait();
+            }
+          } catch (InterruptedException e) {
+            cancelled = true;
+            unschedule(this);
+            Thread.currentThread().interrupt();
+            ok = false;
+          }
+        }
+        if (ok) {
+          shared = capture;
+          ok = !cancelled && !expired();
+        }
+        capture = null;
+      }
+      if (ok && shared != null) {
+        shared.capture();
+      }
+      return ok;
+    }
+
+    /**
+     * like await(), but returns at once: the next scan is run by FindTasks when it is due,
+     * at the deadline or when the task is cancelled, it has to call resumed() first
+     *
+     * @param due the time of the next scan (nanoTime)
+     * @param step the next scan
+     * @return false if the task is cancelled (step is not run)
+     */
+    boolean resumeAt(long due, Runnable step) {
+      synchronized (this) {
+        if (cancelled) {
+          return false;
+        }
+        if (timed && due - deadline > 0) {
+          due = deadline;
+        }
+        this.due = due;
+        ready = false;
+        next = step;
+      }
+      schedule(this);
+      return true;
+    }
+
+    /**
+     * called by the step submitted by resumeAt(): makes the shared capture if needed
+     *
+     * @return false if the deadline is reached or the task was cancelled
+     */
+    boolean resumed() {
+      SharedCapture shared;
+      boolean ok;
+      synchronized (this) {
+        ok = !cancelled && !expired();
+        shared = ok ? capture : null;
+        capture = null;
+      }
+      if (shared != null) {
+        shared.capture();
+      }
+      return ok;
+    }
+
+    /**
+     * ends the waiting: await() returns false, a step waiting for resumeAt() is run at once
+     * (resumed() returns false)
+     */
+    void cancel() {
+      Runnable step;
+      synchronized (this) {
+        cancelled = true;
+        notifyAll();
+        step = next;
+        next = null;
+      }
+      unschedule(this);
+      if (step != null) {
+        FindTasks.execute(step);
+      }
+    }
+
+    private void wake(SharedCapture shared) {
+      Runnable step;
+      synchronized (this) {
+        ready = true;
+        capture = shared;
+        notifyAll();
+        step = next;
+        next = null;
+      }
+      if (step != null) {
+        FindTasks.execute(step);
+      }
+    }
+  }
+
+  /**
+   * the capture of a screen shared by the tasks woken up together: made once by the first
+   * woken thread, the others wait until it is available
+   */
+  private static class SharedCapture {
+
+    private final FrameGrabber grabber;
+    private final Rectangle union;
+    private boolean done = false;
+
+    SharedCapture(FrameGrabber grabber, Rectangle union) {
+      this.grabber = grabber;
+      this.union = union;
+    }
+
+    synchronized void capture() {
+      if (done) {
+        return;
+      }
+      done = true;
+      try {
+        grabber.share(union);
+      } catch (Exception e) {
+        Debug.error("ScanScheduler: shared capture failed: " + e.getMessage());
+      }
+    }
+  }
+
+  private static void schedule(Task t) {
+    synchronized (queue) {
+      queue.add(t);
+      if (thread == null) {
+        thread = new Thread("SikuliScanScheduler") {
+          @Override
+          public void run() {
+            runScheduler();
+          }
+        };
+        thread.setDaemon(true);
+        thread.start();
+      }
+      queue.notifyAll();
+    }
+  }
+
+  private static void unschedule(Task t) {
+    synchronized (queue) {
+      queue.remove(t);
+    }
+  }
+
+  private static void runScheduler() {
+    while (true) {
+      List<Task> batch = new ArrayList<Task>();
+      synchronized (queue) {
+        try {
+          while (true) {
+            Task head = queue.peek();
+            if (head == null) {
+              queue.wait();
+              continue;
+            }
+            long delay = head.due - System.nanoTime();
+            if (delay <= 0) {
+              break;
+            }
+            queue.wait(delay / 1000000, (int) (delay % 1000000));
+          }
+        } catch (InterruptedException e) {
+          continue;
+        }
+        long limit = System.nanoTime() + (long) (Settings.ScanCoalesceTime * 1e9);
+        while (!queue.isEmpty() && queue.peek().due - limit <= 0) {
+          batch.add(queue.poll());
+        }
+        wakeups++;
+        coalesced += batch.size() - 1;
+      }
+      Map<Task, SharedCapture> shared = share(batch);
+      for (Task t : batch) {
+        t.wake(shared.get(t));
+      }
+    }
+  }
+
+  /**
+   * one capture for all tasks of the batch on the same screen
+   *
+   * @return the shared capture of each task (tasks alone on their screen have none)
+   */
+  private static Map<Task, SharedCapture> share(List<Task> batch) {
+    Map<Task, SharedCapture> ret = new IdentityHashMap<Task, SharedCapture>();
+    if (batch.size() < 2) {
+      return ret;
+    }
+    Map<FrameGrabber, List<Task>> screens = new IdentityHashMap<FrameGrabber, List<Task>>();
+    for (Task t : batch) {
+      if (t.screen == null || t.rect == null) {
+        continue;
+      }
+      FrameGrabber grabber = FrameGrabber.get(t.screen);
+      List<Task> tasks = screens.get(grabber);
+      if (tasks == null) {
+        tasks = new ArrayList<Task>();
+        screens.put(grabber, tasks);
+      }
+      tasks.add(t);
+    }
+    for (FrameGrabber grabber : screens.keySet()) {
+      List<Task> tasks = screens.get(grabber);
+      if (tasks.size() < 2) {
+        continue;
+      }
+      Rectangle union = new Rectangle(tasks.get(0).rect);
+      for (Task t : tasks) {
+        union = union.union(t.rect);
+      }
+      SharedCapture capture = new SharedCapture(grabber, union);
+      for (Task t : tasks) {
+        ret.put(t, capture);
+      }
+    }
+    return ret;
+  }
+
+  /**
+   *
+   * @return number of times the scheduler woke up tasks and number of tasks woken up
+   * together with an other one (coalesced)
+   */
+  static long[] getStatistics() {
+    synchronized (queue) {
+      return new long[]{wakeups, coalesced};
+    }
+  }
+}
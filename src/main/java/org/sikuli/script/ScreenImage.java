@@ -29,6 +29,7 @@ public class ScreenImage {
 	protected Rectangle _roi;
 	protected BufferedImage _img;
 	protected String _filename = null;
+	protected boolean _pooled = false;
 
 	/**
 	 * create ScreenImage with given
@@ -45,6 +46,29 @@ public class ScreenImage {
 		h = (int) roi.getHeight();
 	}
 
+	/**
+	 * create ScreenImage with an image taken from the ImagePool
+	 *
+	 * @param roi the rectangle it was taken from
+	 * @param img the BufferedImage
+	 * @param pooled true: the image is given back to the ImagePool with release()
+	 */
+	ScreenImage(Rectangle roi, BufferedImage img, boolean pooled) {
+		this(roi, img);
+		_pooled = pooled;
+	}
+
+	/**
+	 * the image is no longer needed: if it was taken from the ImagePool, it is given back
+	 * (getImage() returns null afterwards), other images are left to the garbage collector
+	 */
+	public void release() {
+		if (_pooled && _img != null) {
+			ImagePool.release(_img);
+			_img = null;
+		}
+	}
+
 	/**
 	 * creates the PNG tempfile only when needed.
 	 *
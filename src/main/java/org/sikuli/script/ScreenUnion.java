@@ -6,6 +6,7 @@
  */
 package org.sikuli.script;
 
+import java.awt.Color;
 import java.awt.Graphics2D;
 import java.awt.Rectangle;
 import java.awt.image.BufferedImage;
@@ -46,8 +47,11 @@ public class ScreenUnion extends Screen {
    public ScreenImage capture(Rectangle rect) {
       Debug.log(5, "capture: " + rect);
 
-      BufferedImage ret = new BufferedImage( rect.width, rect.height, BufferedImage.TYPE_INT_RGB );
+      BufferedImage ret = ImagePool.get(rect.width, rect.height);
       Graphics2D g2d = ret.createGraphics();
+      // a pooled image still has the content of its last use
+      g2d.setColor(Color.BLACK);
+      g2d.fillRect(0, 0, rect.width, rect.height);
       for (int i=0; i < Screen.getNumberScreens(); i++) {
          Rectangle scrBound = Screen.getBounds(i);
          if(scrBound.intersects(rect)){
@@ -61,7 +65,7 @@ public class ScreenUnion extends Screen {
          }
       }
       g2d.dispose();
-      return new ScreenImage(rect, ret);
+      return new ScreenImage(rect, ret, true);
    }
 
   @Override
@@ -219,9 +219,28 @@ public class Settings {
   public static boolean ThrowException = true; // throw FindFailed exception
   public static float AutoWaitTimeout = 3f; // in seconds
   public static float WaitScanRate = 3f; // frames per second
+  public static ScanRatePolicy WaitScanPolicy = null; // null: WaitScanRate fixed, see ScanRatePolicy
   public static float ObserveScanRate = 3f; // frames per second
   public static int ObserveMinChangedPixels = 50; // in pixels
+  public static float MaxFrameAge = 0f; // in seconds, captures shared between regions (0 = own capture)
+  public static float ScanCoalesceTime = 0.02f; // in seconds, scans due together share one capture
+  public static boolean SkipUnchangedFrames = true; // repeated finds skip frames not changed
+  public static boolean FindNearLastMatch = false; // heuristic: search near the last match first
+  public static boolean ExactMatchHash = true; // exact(): pixel identical matches by rolling hash
+  public static boolean CacheMatches = true; // reuse results in unchanged frames, see MatchCache
   public static double MinSimilarity = 0.7;
+  public static String MatchEngine = null; // "native", "java" or null (native if available)
+  public static int FindThreads = 0; // parallel searches (0 = number of processors)
+  public static boolean MatchPrefilter = true; // java engine: skip hopeless positions
+  public static String CorrelationKernel = null; // java engine: "planar" (default) or "scalar"
+  public static int AsyncFindThreads = 16; // threads scanning for Region.xxxAsync (waits use none)
+  public static int ObserverThreads = 2; // threads scanning background observers
+  public static int ObserverEventQueueSize = 64; // a region's events waiting (0 = no queue)
+  public static ObserverOverflow ObserverOverflowPolicy = ObserverOverflow.BLOCK; // queue full
+  public static int ObserverHandlerThreads = 4; // threads running handlers (a region's in order)
+  public static double FindAllOverlap = 0.5; // findAll: max overlap of results (width/height)
+  public static int PatternCacheSize = 64; // in MB, loaded image files (0 = no caching)
+  public static int ImagePoolSize = 4; // captures across screens kept for reuse (0 = no pooling)
   public static float MoveMouseDelay = 0.5f; // in seconds
   public static double DelayBeforeDrop = 0.3;
   public static double DelayAfterDrag = 0.3;
@@ -6,15 +6,15 @@
  */
 package org.sikuli.script;
 
-import java.awt.AWTException;
+import java.awt.Rectangle;
+import java.io.IOException;
 import java.util.*;
-import org.sikuli.script.natives.FindInput;
-import org.sikuli.script.natives.FindResult;
-import org.sikuli.script.natives.FindResults;
-import org.sikuli.script.natives.Mat;
-import org.sikuli.script.natives.OpenCV;
-import org.sikuli.script.natives.Vision;
 
+/**
+ * the observers of a region: update() checks a new frame of the region (the scan),
+ * the observers may be added or removed at any time (e.g. by a handler), the events found
+ * by a scan are given to the EventDispatcher after the scan
+ */
 public class SikuliEventManager {
 
   protected enum State {
@@ -22,13 +22,38 @@ public class SikuliEventManager {
     UNKNOWN, MISSING, APPEARED, VANISHED
   }
   private Region _region;
-  private Mat _lastImgMat = null;
+  private final ChangeDetector _changes = new ChangeDetector();
   private Map<Object, State> _state;
   private Map<Object, Match> _lastMatch;
   private Map<Object, SikuliEventObserver> _appearOb, _vanishOb;
   private Map<Integer, SikuliEventObserver> _changeOb;
-  private int _minChanges;
   private boolean sthgLeft;
+  /**
+   * searches the observed patterns in each new frame
+   */
+  private Finder _finder = null;
+  /**
+   * the located image targets of the observed patterns (null: text or not found)
+   */
+  private Map<Object, Pattern> _targets;
+  /**
+   * the events found by the current scan
+   */
+  private final List<Event> _events = new ArrayList<Event>();
+
+  /**
+   * an event waiting for the end of the scan (see EventDispatcher.dispatch)
+   */
+  private static class Event {
+
+    final Object key;
+    final Runnable handler;
+
+    Event(Object key, Runnable handler) {
+      this.key = key;
+      this.handler = handler;
+    }
+  }
 
   public SikuliEventManager(Region region) {
     _region = region;
@@ -37,14 +62,20 @@ public class SikuliEventManager {
     _appearOb = new HashMap<Object, SikuliEventObserver>();
     _vanishOb = new HashMap<Object, SikuliEventObserver>();
     _changeOb = new HashMap<Integer, SikuliEventObserver>();
+    _targets = new HashMap<Object, Pattern>();
   }
 
-  public void initialize() {
+  public synchronized void initialize() {
     Debug.log(2, "SikuliEventManager: resetting observe states");
     sthgLeft = true;
     for (Object ptn : _state.keySet()) {
       _state.put(ptn, State.UNKNOWN);
     }
+    if (_finder != null) {
+      _finder.destroy();
+      _finder = null;
+    }
+    _changes.reset();
   }
 
   private <PSC> float getSimiliarity(PSC ptn) {
@@ -58,153 +89,285 @@ public class SikuliEventManager {
     return similarity;
   }
 
-  public <PSC> void addAppearObserver(PSC ptn, SikuliEventObserver ob) {
+  public synchronized <PSC> void addAppearObserver(PSC ptn, SikuliEventObserver ob) {
     _appearOb.put(ptn, ob);
     _state.put(ptn, State.UNKNOWN);
+    // also checked, if added while observing (e.g. by a handler)
+    sthgLeft = true;
   }
 
-  public <PSC> void removeAppearObserver(PSC ptn) {
+  public synchronized <PSC> void removeAppearObserver(PSC ptn) {
     _appearOb.remove(ptn);
     _state.remove(ptn);
+    _targets.remove(ptn);
   }
 
-  public <PSC> void addVanishObserver(PSC ptn, SikuliEventObserver ob) {
+  public synchronized <PSC> void addVanishObserver(PSC ptn, SikuliEventObserver ob) {
     _vanishOb.put(ptn, ob);
     _state.put(ptn, State.UNKNOWN);
+    // also checked, if added while observing (e.g. by a handler)
+    sthgLeft = true;
   }
 
-  public <PSC> void removeVanishObserver(PSC ptn) {
+  public synchronized <PSC> void removeVanishObserver(PSC ptn) {
     _vanishOb.remove(ptn);
     _state.remove(ptn);
+    _targets.remove(ptn);
   }
 
+  /**
+   * the observer is called through the EventDispatcher after the scan
+   * (not by the scanning thread)
+   */
   protected void callAppearObserver(Object ptn, Match m) {
-    SikuliEventAppear se = new SikuliEventAppear(ptn, m, _region);
-    SikuliEventObserver ob = _appearOb.get(ptn);
-    ob.targetAppeared(se);
+    final SikuliEventAppear se = new SikuliEventAppear(ptn, m, _region);
+    final SikuliEventObserver ob = _appearOb.get(ptn);
+    dispatch(Arrays.asList("appear", ptn), new Runnable() {
+      @Override
+      public void run() {
+        ob.targetAppeared(se);
+      }
+    });
   }
 
+  /**
+   * the observer is called through the EventDispatcher after the scan
+   * (not by the scanning thread)
+   */
   protected void callVanishObserver(Object ptn, Match m) {
-    SikuliEventVanish se = new SikuliEventVanish(ptn, m, _region);
-    SikuliEventObserver ob = _vanishOb.get(ptn);
-    ob.targetVanished(se);
+    final SikuliEventVanish se = new SikuliEventVanish(ptn, m, _region);
+    final SikuliEventObserver ob = _vanishOb.get(ptn);
+    dispatch(Arrays.asList("vanish", ptn), new Runnable() {
+      @Override
+      public void run() {
+        ob.targetVanished(se);
+      }
+    });
+  }
+
+  private void dispatchChange(Integer n, final SikuliEventChange se) {
+    final SikuliEventObserver ob = _changeOb.get(n);
+    dispatch(Arrays.asList("change", n), new Runnable() {
+      @Override
+      public void run() {
+        ob.targetChanged(se);
+      }
+    });
   }
 
+  /**
+   * keep the event until the scan is done
+   */
+  private void dispatch(Object key, Runnable handler) {
+    _events.add(new Event(key, handler));
+  }
+
+  /**
+   * the image target of the observed pattern, the image file is located and loaded
+   * only the first time
+   *
+   * @param ptn
+   * @return null if a text or the image file is not found
+   */
+  private Pattern getTarget(Object ptn) {
+    if (_targets.containsKey(ptn)) {
+      return _targets.get(ptn);
+    }
+    Pattern target = null;
+    try {
+      if (ptn instanceof Pattern) {
+        Pattern p = (Pattern) ptn;
+        if (p.hasImage()) {
+          target = p;
+        } else if (p.getFilename() != null) {
+          String filename = p.getFilename();
+          PatternCache.get(filename);
+          target = new Pattern(p).setFilename(filename);
+        }
+      } else {
+        String filename = ImageLocator.locate((String) ptn);
+        PatternCache.get(filename);
+        target = new Pattern(filename);
+      }
+    } catch (IOException e) {
+      target = null;
+    }
+    _targets.put(ptn, target);
+    return target;
+  }
+
+  /**
+   * the pending image patterns are searched in parallel in the frame (see Finder.findAny),
+   * texts and missing image files one after the other
+   *
+   * @param simg
+   */
   protected void checkPatterns(ScreenImage simg) {
-    Finder finder = new Finder(simg, _region);
-    String imgOK;
+    if (_finder == null) {
+      _finder = new Finder(simg, _region);
+    } else {
+      _finder.setScreenImage(simg);
+    }
+    List<Object> pending = new ArrayList<Object>();
+    List<Pattern> targets = new ArrayList<Pattern>();
+    List<Object> others = new ArrayList<Object>();
     for (Object ptn : _state.keySet()) {
       if (_state.get(ptn) != State.UNKNOWN) {
         continue;
       }
+      Pattern target = getTarget(ptn);
+      if (target != null) {
+        pending.add(ptn);
+        targets.add(target);
+      } else {
+        others.add(ptn);
+      }
+    }
+    if (!targets.isEmpty()) {
+      List<Match> found = _finder.findAny(targets);
+      for (int i = 0; i < pending.size(); i++) {
+        checked(pending.get(i), found.get(i));
+      }
+    }
+    String imgOK;
+    for (Object ptn : others) {
       if (ptn.getClass().isInstance("")) {
-        imgOK = finder.find((String) ptn);
+        imgOK = _finder.find((String) ptn);
       } else {
-        imgOK = finder.find((Pattern) ptn);
+        imgOK = _finder.find((Pattern) ptn);
       }
       if (null == imgOK) {
         Debug.error("Observe: ImageFile not found", ptn);
         _state.put(ptn, State.MISSING);
         continue;
       }
-      Match m = null;
-      boolean hasMatch = false;
-      if (finder.hasNext()) {
-        m = finder.next();
-        if (m.getScore() >= getSimiliarity(ptn)) {
-          hasMatch = true;
-          _lastMatch.put(ptn, m);
-        }
+      checked(ptn, _finder.hasNext() ? _finder.next() : null);
+    }
+  }
+
+  /**
+   * update the state of the pattern and call its observer if it appeared or vanished
+   *
+   * @param ptn
+   * @param m the best match in the frame or null
+   */
+  private void checked(Object ptn, Match m) {
+    boolean hasMatch = false;
+    if (m != null && m.getScore() >= getSimiliarity(ptn)) {
+      hasMatch = true;
+      _lastMatch.put(ptn, m);
+    }
+    Debug.log(9, "check pattern: " + _state.get(ptn) + " match:" + hasMatch);
+    sthgLeft = true;
+    if (_appearOb.containsKey(ptn)) {
+      if (_state.get(ptn) != State.APPEARED && hasMatch) {
+        _state.put(ptn, State.APPEARED);
+        sthgLeft = false;
+        callAppearObserver(ptn, m);
       }
-      Debug.log(9, "check pattern: " + _state.get(ptn) + " match:" + hasMatch);
-      sthgLeft = true;
-      if (_appearOb.containsKey(ptn)) {
-        if (_state.get(ptn) != State.APPEARED && hasMatch) {
-          _state.put(ptn, State.APPEARED);
-          sthgLeft = false;
-          callAppearObserver(ptn, m);
-        }
-      } else if (_vanishOb.containsKey(ptn)) {
-        if (_state.get(ptn) != State.VANISHED && !hasMatch) {
-          sthgLeft = false;
-          _state.put(ptn, State.VANISHED);
-          callVanishObserver(ptn, _lastMatch.get(ptn));
-        }
+    } else if (_vanishOb.containsKey(ptn)) {
+      if (_state.get(ptn) != State.VANISHED && !hasMatch) {
+        sthgLeft = false;
+        _state.put(ptn, State.VANISHED);
+        callVanishObserver(ptn, _lastMatch.get(ptn));
       }
     }
-
   }
 
-  public void addChangeObserver(int threshold, SikuliEventObserver ob) {
+  public synchronized void addChangeObserver(int threshold, SikuliEventObserver ob) {
     _changeOb.put(new Integer(threshold), ob);
-    _minChanges = getMinChanges();
   }
 
-  public void removeChangeObserver(int threshold) {
+  public synchronized void removeChangeObserver(int threshold) {
     _changeOb.remove(new Integer(threshold));
-    _minChanges = getMinChanges();
   }
 
-  private int getMinChanges() {
-    int min = Integer.MAX_VALUE;
-    for (Integer n : _changeOb.keySet()) {
-      if (n < min) {
-        min = n;
-      }
-    }
-    return min;
-  }
-
-  protected void callChangeObserver(FindResults results) throws AWTException {
+  /**
+   * call the change observers, whose min size (in pixels) is reached by a changed area
+   *
+   * @param changed the changed areas relative to the region
+   */
+  protected void callChangeObserver(List<Rectangle> changed) {
     for (Integer n : _changeOb.keySet()) {
       List<Match> changes = new ArrayList<Match>();
-      for (int i = 0; i < results.size(); i++) {
-        FindResult r = results.get(i);
-        if (r.getW() * r.getH() >= n) {
-          changes.add(_region.toGlobalCoord(new Match(r, _region.getScreen())));
+      for (Rectangle r : changed) {
+        if (r.width * r.height >= n) {
+          changes.add(_region.toGlobalCoord(new Match(
+                  new MatchResult(r.x, r.y, r.width, r.height, 1), _region.getScreen())));
         }
       }
       if (changes.size() > 0) {
-        SikuliEventChange se = new SikuliEventChange(changes, _region);
-        SikuliEventObserver ob = _changeOb.get(n);
-        ob.targetChanged(se);
+        dispatchChange(n, new SikuliEventChange(changes, _region));
       }
     }
   }
 
+  /**
+   * compare the image with the one of the last call (see ChangeDetector)
+   *
+   * @param img
+   */
   protected void checkChanges(ScreenImage img) {
-    if (_lastImgMat == null) {
-      _lastImgMat = OpenCV.convertBufferedImageToMat(img.getImage());
-      return;
-    }
-    FindInput fin = new FindInput();
-    fin.setSource(_lastImgMat);
-    Mat target = OpenCV.convertBufferedImageToMat(img.getImage());
-    fin.setTarget(target);
-    fin.setSimilarity(_minChanges);
-    FindResults results = Vision.findChanges(fin);
-    try {
-      callChangeObserver(results);
-    } catch (AWTException e) {
-      e.printStackTrace();
+    List<Rectangle> changed = _changes.update(img.getImage());
+    if (!changed.isEmpty()) {
+      callChangeObserver(changed);
+    }
+  }
+
+  /**
+   * the observation has ended: the event streams (see Region.getAppearEvents, ...) are closed,
+   * their subscribers get onComplete()
+   */
+  void closeStreams() {
+    List<SikuliEventObserver> obs = new ArrayList<SikuliEventObserver>();
+    synchronized (this) {
+      obs.addAll(_appearOb.values());
+      obs.addAll(_vanishOb.values());
+      obs.addAll(_changeOb.values());
+    }
+    for (SikuliEventObserver ob : obs) {
+      if (ob instanceof SikuliEventStream) {
+        ((SikuliEventStream) ob).close();
+      }
     }
-    _lastImgMat = target;
   }
 
+  /**
+   * the scan: the observers can not be changed meanwhile, the events found are dispatched
+   * afterwards (a handler may add or remove observers)
+   *
+   * @param simg the new frame of the region
+   * @return false if there is nothing left to observe
+   */
   public boolean update(ScreenImage simg) {
     boolean ret;
-    ret = sthgLeft;
-    if (sthgLeft) {
-      checkPatterns(simg);
+    List<Event> events;
+    synchronized (this) {
+      ret = sthgLeft;
+      if (sthgLeft) {
+        checkPatterns(simg);
+      }
+      ret = sthgLeft;
+      if (_changeOb.size() > 0) {
+        checkChanges(simg);
+        ret = true;
+      }
+      events = new ArrayList<Event>(_events);
+      _events.clear();
     }
-    ret = sthgLeft;
-    if (_changeOb.size() > 0) {
-      checkChanges(simg);
-      ret = true;
+    for (Event e : events) {
+      EventDispatcher.dispatch(this, e.key, e.handler);
     }
     return ret;
   }
 
+  /**
+   * waits until the handlers of the events found so far have run
+   */
+  void drain() {
+    EventDispatcher.drain(this);
+  }
+
   protected void finalize() throws Throwable {
   }
 }
\ No newline at end of file
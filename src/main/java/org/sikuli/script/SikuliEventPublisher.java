@@ -0,0 +1,22 @@
+/*
+ * Copyright 2010-2013, Sikuli.org
+ * Released under the MIT License.
+ *
+ */
+package org.sikuli.script;
+
+/**
+ * a stream of observer events (appear, vanish or change of a Region), that are handed to
+ * its subscribers only as far as they requested them (backpressure)<br />
+ * the same contract as java.util.concurrent.Flow.Publisher of Java 9
+ */
+public interface SikuliEventPublisher {
+
+  /**
+   * the subscriber gets a SikuliEventSubscription with onSubscribe() first and then the events
+   * it requests with it
+   *
+   * @param subscriber
+   */
+  public void subscribe(SikuliEventSubscriber subscriber);
+}
@@ -0,0 +1,258 @@
+/*
+ * Copyright 2010-2013, Sikuli.org
+ * Released under the MIT License.
+ *
+ */
+package org.sikuli.script;
+
+import java.util.ArrayList;
+import java.util.LinkedList;
+import java.util.List;
+
+/**
+ * a SikuliEventPublisher fed by the observer events it receives as a SikuliEventObserver
+ * (see Region.getAppearEvents, getVanishEvents, getChangeEvents)<br />
+ * each subscriber has its own buffer of at most bufferSize events not yet requested,
+ * if it is full, the oldest event is dropped (see getDropped()),
+ * the scanning of the region is never delayed by a subscriber<br />
+ * an event is sent in the thread, that received it (see EventDispatcher) or in the thread,
+ * that requested it<br />
+ * the stream is closed, when the observation of the region ends (stopObserver or timeout)
+ */
+public class SikuliEventStream implements SikuliEventPublisher, SikuliEventObserver {
+
+  /**
+   * default number of events buffered per subscriber
+   */
+  public static final int BUFFER_SIZE = 256;
+  private final int bufferSize;
+  private final List<Link> links = new ArrayList<Link>();
+  private boolean closed = false;
+  private long dropped = 0;
+
+  public SikuliEventStream() {
+    this(BUFFER_SIZE);
+  }
+
+  /**
+   *
+   * @param bufferSize max number of events buffered per subscriber (at least 1)
+   */
+  public SikuliEventStream(int bufferSize) {
+    this.bufferSize = Math.max(1, bufferSize);
+  }
+
+  /**
+   * one subscriber: its demand and buffer, the events are sent by one thread at a time
+   */
+  private class Link implements SikuliEventSubscription {
+
+    final SikuliEventSubscriber subscriber;
+    private final LinkedList<SikuliEvent> buffer = new LinkedList<SikuliEvent>();
+    private long demand = 0;
+    private boolean sending = false;
+    private boolean cancelled = false;
+    private boolean completed = false;
+    private Throwable error = null;
+
+    Link(SikuliEventSubscriber subscriber) {
+      this.subscriber = subscriber;
+    }
+
+    @Override
+    public void request(long n) {
+      synchronized (this) {
+        if (cancelled) {
+          return;
+        }
+        if (n <= 0) {
+          error = new IllegalArgumentException("request: " + n + " events (must be > 0)");
+          buffer.clear();
+        } else {
+          demand = demand + n < 0 ? Long.MAX_VALUE : demand + n;
+        }
+      }
+      send();
+    }
+
+    @Override
+    public void cancel() {
+      synchronized (this) {
+        cancelled = true;
+        buffer.clear();
+      }
+      remove(this);
+    }
+
+    void add(SikuliEvent e) {
+      synchronized (this) {
+        if (cancelled || error != null) {
+          return;
+        }
+        if (buffer.size() >= bufferSize) {
+          buffer.removeFirst();
+          dropped();
+        }
+        buffer.add(e);
+      }
+      send();
+    }
+
+    void complete() {
+      synchronized (this) {
+        completed = true;
+      }
+      send();
+    }
+
+    /**
+     * send the requested events, if no other thread does it (calls from onNext() included)
+     */
+    private void send() {
+      synchronized (this) {
+        if (sending) {
+          return;
+        }
+        sending = true;
+      }
+      while (true) {
+        SikuliEvent e = null;
+        Throwable failed = null;
+        boolean done = false;
+        synchronized (this) {
+          if (cancelled) {
+            sending = false;
+            return;
+          }
+          if (error != null) {
+            failed = error;
+            cancelled = true;
+          } else if (demand > 0 && !buffer.isEmpty()) {
+            e = buffer.removeFirst();
+            if (demand != Long.MAX_VALUE) {
+              demand--;
+            }
+          } else if (completed && buffer.isEmpty()) {
+            done = true;
+            cancelled = true;
+          } else {
+            sending = false;
+            return;
+          }
+        }
+        try {
+          if (failed != null) {
+            remove(this);
+            subscriber.onError(failed);
+          } else if (done) {
+            remove(this);
+            subscriber.onComplete();
+          } else {
+            subscriber.onNext(e);
+          }
+        } catch (RuntimeException ex) {
+          Debug.error("SikuliEventStream: subscriber failed: " + ex.getMessage());
+          cancel();
+        }
+      }
+    }
+  }
+
+  @Override
+  public void subscribe(SikuliEventSubscriber subscriber) {
+    Link link = new Link(subscriber);
+    boolean complete;
+    synchronized (links) {
+      complete = closed;
+      if (!closed) {
+        links.add(link);
+      }
+    }
+    subscriber.onSubscribe(link);
+    if (complete) {
+      link.complete();
+    }
+  }
+
+  private void remove(Link link) {
+    synchronized (links) {
+      links.remove(link);
+    }
+  }
+
+  private void dropped() {
+    synchronized (links) {
+      dropped++;
+    }
+  }
+
+  /**
+   * hand the event to all subscribers
+   *
+   * @param e
+   */
+  public void publish(SikuliEvent e) {
+    List<Link> to;
+    synchronized (links) {
+      if (closed) {
+        return;
+      }
+      to = new ArrayList<Link>(links);
+    }
+    for (Link link : to) {
+      link.add(e);
+    }
+  }
+
+  /**
+   * end the stream: the subscribers get onComplete() after the buffered events
+   */
+  public void close() {
+    List<Link> to;
+    synchronized (links) {
+      if (closed) {
+        return;
+      }
+      closed = true;
+      to = new ArrayList<Link>(links);
+    }
+    for (Link link : to) {
+      link.complete();
+    }
+  }
+
+  /**
+   *
+   * @return the number of current subscribers
+   */
+  public int getSubscribers() {
+    synchronized (links) {
+      return links.size();
+    }
+  }
+
+  /**
+   *
+   * @return the number of events dropped because a subscriber's buffer was full
+   */
+  public long getDropped() {
+    synchronized (links) {
+      return dropped;
+    }
+  }
+
+  @Override
+  public void targetAppeared(SikuliEventAppear e) {
+    publish(e);
+  }
+
+  @Override
+  public void targetVanished(SikuliEventVanish e) {
+    publish(e);
+  }
+
+  @Override
+  public void targetChanged(SikuliEventChange e) {
+    publish(e);
+  }
+}
@@ -0,0 +1,40 @@
+/*
+ * Copyright 2010-2013, Sikuli.org
+ * Released under the MIT License.
+ *
+ */
+package org.sikuli.script;
+
+/**
+ * receives the events of a SikuliEventPublisher<br />
+ * the same contract as java.util.concurrent.Flow.Subscriber of Java 9: the methods are called
+ * one after the other, never at the same time, onNext() only for requested events
+ */
+public interface SikuliEventSubscriber {
+
+  /**
+   * the first call, no events are sent until requested with the subscription
+   *
+   * @param subscription
+   */
+  public void onSubscribe(SikuliEventSubscription subscription);
+
+  /**
+   * the next requested event
+   *
+   * @param e
+   */
+  public void onNext(SikuliEvent e);
+
+  /**
+   * the last call: the stream failed (e.g. invalid request)
+   *
+   * @param error
+   */
+  public void onError(Throwable error);
+
+  /**
+   * the last call: the stream was closed
+   */
+  public void onComplete();
+}
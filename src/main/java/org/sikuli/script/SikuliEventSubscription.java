@@ -0,0 +1,25 @@
+/*
+ * Copyright 2010-2013, Sikuli.org
+ * Released under the MIT License.
+ *
+ */
+package org.sikuli.script;
+
+/**
+ * the link between a SikuliEventPublisher and one of its subscribers<br />
+ * the same contract as java.util.concurrent.Flow.Subscription of Java 9
+ */
+public interface SikuliEventSubscription {
+
+  /**
+   * the subscriber wants n more events (may be called from onNext())
+   *
+   * @param n &gt; 0 (Long.MAX_VALUE: unbounded)
+   */
+  public void request(long n);
+
+  /**
+   * no more events, the events not yet sent are dropped
+   */
+  public void cancel();
+}
@@ -0,0 +1,222 @@
+/*
+ * Copyright 2010-2013, Sikuli.org
+ * Released under the MIT License.
+ *
+ */
+package org.sikuli.script;
+
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * internal use: findAll in horizontal tiles of the image, that are searched in parallel
+ * (see Settings.FindThreads)<br />
+ * the tiles overlap by the target size, so no match position is lost, the results of
+ * the tiles are merged by non-maximum suppression (see Settings.FindAllOverlap)<br />
+ * either all results are collected (findAll()) or they are handed out as soon as their tile
+ * is searched (start(), then use as Iterator - not sorted by score in this case)
+ */
+class TiledFindAll implements Iterator<MatchResult> {
+
+  /**
+   * min number of match positions (rows) per tile
+   */
+  static final int MIN_TILE_ROWS = 16;
+  private final MatchEngine _engine;
+  private final BufferedImage _img;
+  private final Pattern _ptn;
+  private final double _similarity;
+  private final int _limit;
+  private final List<Rectangle> _tiles = new ArrayList<Rectangle>();
+  private final BlockingQueue<List<MatchResult>> _done = new LinkedBlockingQueue<List<MatchResult>>();
+  private final AtomicBoolean _cancelled = new AtomicBoolean(false);
+  private volatile IOException _error = null;
+  private int _received = 0;
+  private final LinkedList<MatchResult> _pending = new LinkedList<MatchResult>();
+  private final List<MatchResult> _emitted = new ArrayList<MatchResult>();
+
+  /**
+   *
+   * @param engine
+   * @param img the image to search in
+   * @param ptn
+   * @param tw the width of the Pattern's image
+   * @param th the height of the Pattern's image
+   * @param similarity
+   * @param limit max number of results (0 = no limit)
+   */
+  TiledFindAll(MatchEngine engine, BufferedImage img, Pattern ptn, int tw, int th,
+          double similarity, int limit) {
+    _engine = engine;
+    _img = img;
+    _ptn = ptn;
+    _similarity = similarity;
+    _limit = limit;
+    int rows = img.getHeight() - th + 1;
+    if (rows < 1 || img.getWidth() < tw) {
+      return;
+    }
+    int n = Math.max(1, Math.min(FindWorkers.getThreads() * 2, rows / Math.max(th, MIN_TILE_ROWS)));
+    for (int i = 0; i < n; i++) {
+      int y0 = rows * i / n, y1 = rows * (i + 1) / n;
+      _tiles.add(new Rectangle(0, y0, img.getWidth(), y1 - y0 + th - 1));
+    }
+  }
+
+  /**
+   *
+   * @return the number of tiles
+   */
+  int getTiles() {
+    return _tiles.size();
+  }
+
+  private List<MatchResult> searchTile(int i) {
+    if (_cancelled.get()) {
+      return Collections.emptyList();
+    }
+    Rectangle t = _tiles.get(i);
+    MatchSource src = _engine.createSource(_img.getSubimage(t.x, t.y, t.width, t.height));
+    try {
+      List<MatchResult> ret = src.find(_ptn, _similarity, true, _limit);
+      for (MatchResult mr : ret) {
+        mr.x += t.x;
+        mr.y += t.y;
+      }
+      return ret;
+    } catch (IOException e) {
+      _error = e;
+      _cancelled.set(true);
+      return Collections.emptyList();
+    } finally {
+      src.release();
+    }
+  }
+
+  /**
+   * search all tiles and wait for the results
+   *
+   * @return the results sorted by descending score
+   * @throws IOException if the Pattern's image cannot be loaded
+   */
+  List<MatchResult> findAll() throws IOException {
+    final List<List<MatchResult>> found = new ArrayList<List<MatchResult>>(_tiles.size());
+    for (int i = 0; i < _tiles.size(); i++) {
+      found.add(null);
+    }
+    FindWorkers.invoke(_tiles.size(), new FindWorkers.Job() {
+      @Override
+      public void run(int index) {
+        found.set(index, searchTile(index));
+      }
+    });
+    if (_error != null) {
+      throw _error;
+    }
+    List<MatchResult> all = new ArrayList<MatchResult>();
+    for (List<MatchResult> tile : found) {
+      all.addAll(tile);
+    }
+    return MatchResult.suppressOverlaps(all, _limit);
+  }
+
+  /**
+   * start searching the tiles in the background, the results are available through
+   * hasNext()/next() as soon as their tile is searched
+   */
+  void start() {
+    for (int i = 0; i < _tiles.size(); i++) {
+      final int index = i;
+      Runnable job = new Runnable() {
+        @Override
+        public void run() {
+          _done.add(searchTile(index));
+        }
+      };
+      try {
+        FindWorkers.getPool().execute(job);
+      } catch (RejectedExecutionException e) {
+        job.run();
+      }
+    }
+  }
+
+  /**
+   * tiles not yet searched are skipped
+   */
+  void cancel() {
+    _cancelled.set(true);
+  }
+
+  /**
+   *
+   * @return the error of the search (image file could not be loaded) or null
+   */
+  IOException getError() {
+    return _error;
+  }
+
+  /**
+   * waits for the next tile if needed
+   *
+   * @return true if there is another result
+   */
+  @Override
+  public boolean hasNext() {
+    while (_pending.isEmpty() && _received < _tiles.size()
+            && (_limit <= 0 || _emitted.size() < _limit)) {
+      List<MatchResult> tile;
+      try {
+        tile = _done.take();
+      } catch (InterruptedException e) {
+        cancel();
+        Thread.currentThread().interrupt();
+        return false;
+      }
+      _received++;
+      for (MatchResult mr : MatchResult.suppressOverlaps(new ArrayList<MatchResult>(tile), 0)) {
+        boolean overlaps = false;
+        for (MatchResult m : _emitted) {
+          if (m.overlaps(mr, Settings.FindAllOverlap)) {
+            overlaps = true;
+            break;
+          }
+        }
+        if (!overlaps) {
+          _pending.add(mr);
+          _emitted.add(mr);
+          if (_limit > 0 && _emitted.size() >= _limit) {
+            cancel();
+            break;
+          }
+        }
+      }
+    }
+    return !_pending.isEmpty();
+  }
+
+  @Override
+  public MatchResult next() {
+    if (!hasNext()) {
+      return null;
+    }
+    return _pending.removeFirst();
+  }
+
+  /**
+   * not used
+   */
+  @Override
+  public void remove() {
+  }
+}
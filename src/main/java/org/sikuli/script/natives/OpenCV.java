@@ -9,6 +9,8 @@ package org.sikuli.script.natives;
 import java.awt.*;
 import java.awt.color.*;
 import java.awt.image.*;
+import java.util.Iterator;
+import java.util.LinkedList;
 import org.sikuli.script.natives.Mat;
 import org.sikuli.script.natives.Vision;
 
@@ -29,18 +31,136 @@ public class OpenCV {
       return bm;
    }
 
+   /**
+    * max number of buffers kept for reuse by convertBufferedImageToMat
+    */
+   private static final int POOL_SIZE = 4;
+   private static final LinkedList<byte[]> pool = new LinkedList<byte[]>();
+
+   /**
+    * the pixels as 4 channel bytes (R, G, B, A per pixel) as needed by Vision.createMat
+    *
+    * @param img
+    * @return a new byte array
+    */
    public static byte[] convertBufferedImageToByteArray(BufferedImage img){
-      BufferedImage cvImg = createBufferedImage(img.getWidth(), img.getHeight());
+      byte[] data = new byte[img.getWidth() * img.getHeight() * 4];
+      convertBufferedImageToByteArray(img, data);
+      return data;
+   }
+
+   /**
+    * the pixels as 4 channel bytes (R, G, B, A per pixel) written to the given array<br />
+    * opaque images of TYPE_INT_RGB, TYPE_INT_BGR and TYPE_3BYTE_BGR (e.g. screen captures)
+    * are read directly from their pixel arrays, others are drawn into the array
+    *
+    * @param img
+    * @param data at least width * height * 4 bytes
+    */
+   public static void convertBufferedImageToByteArray(BufferedImage img, byte[] data){
+      if (copyPixels(img, data)) {
+         return;
+      }
+      int w = img.getWidth(), h = img.getHeight();
+      BufferedImage cvImg = createBufferedImage(w, h);
       Graphics2D g = cvImg.createGraphics();
       g.drawImage(img, 0, 0, null);
       g.dispose();
-      return ((DataBufferByte)cvImg.getRaster().getDataBuffer()).getData();
+      System.arraycopy(((DataBufferByte)cvImg.getRaster().getDataBuffer()).getData(), 0,
+              data, 0, w * h * 4);
+   }
+
+   private static boolean copyPixels(BufferedImage img, byte[] data) {
+      int type = img.getType();
+      Raster r = img.getRaster();
+      int w = img.getWidth(), h = img.getHeight();
+      int tx = r.getSampleModelTranslateX(), ty = r.getSampleModelTranslateY();
+      if ((type == BufferedImage.TYPE_INT_RGB || type == BufferedImage.TYPE_INT_BGR)
+              && r.getSampleModel() instanceof SinglePixelPackedSampleModel
+              && r.getDataBuffer() instanceof DataBufferInt) {
+         int scan = ((SinglePixelPackedSampleModel) r.getSampleModel()).getScanlineStride();
+         DataBufferInt db = (DataBufferInt) r.getDataBuffer();
+         int[] src = db.getData();
+         int off = db.getOffset() - ty * scan - tx;
+         int sr = 16, sb = 0;
+         if (type == BufferedImage.TYPE_INT_BGR) {
+            sr = 0;
+            sb = 16;
+         }
+         int k = 0;
+         for (int y = 0; y < h; y++) {
+            int p = off + y * scan;
+            for (int x = 0; x < w; x++) {
+               int c = src[p + x];
+               data[k++] = (byte) (c >> sr);
+               data[k++] = (byte) (c >> 8);
+               data[k++] = (byte) (c >> sb);
+               data[k++] = (byte) 0xff;
+            }
+         }
+         return true;
+      }
+      if (type == BufferedImage.TYPE_3BYTE_BGR
+              && r.getSampleModel() instanceof ComponentSampleModel
+              && r.getDataBuffer() instanceof DataBufferByte) {
+         ComponentSampleModel sm = (ComponentSampleModel) r.getSampleModel();
+         DataBufferByte db = (DataBufferByte) r.getDataBuffer();
+         byte[] src = db.getData();
+         int scan = sm.getScanlineStride(), ps = sm.getPixelStride();
+         int[] bands = sm.getBandOffsets();
+         int off = db.getOffset() - ty * scan - tx * ps;
+         int k = 0;
+         for (int y = 0; y < h; y++) {
+            int p = off + y * scan;
+            for (int x = 0; x < w; x++, p += ps) {
+               data[k++] = src[p + bands[0]];
+               data[k++] = src[p + bands[1]];
+               data[k++] = src[p + bands[2]];
+               data[k++] = (byte) 0xff;
+            }
+         }
+         return true;
+      }
+      return false;
    }
 
+   private static byte[] takeBuffer(int size) {
+      synchronized (pool) {
+         for (Iterator<byte[]> it = pool.iterator(); it.hasNext();) {
+            byte[] buf = it.next();
+            if (buf.length == size) {
+               it.remove();
+               return buf;
+            }
+         }
+      }
+      return new byte[size];
+   }
+
+   private static void returnBuffer(byte[] buf) {
+      synchronized (pool) {
+         pool.addFirst(buf);
+         if (pool.size() > POOL_SIZE) {
+            pool.removeLast();
+         }
+      }
+   }
+
+   /**
+    * the image as Mat, the intermediate byte buffer is reused for images of the same size
+    * (createMat copies the data)
+    *
+    * @param img
+    * @return a new Mat
+    */
    public static Mat convertBufferedImageToMat(BufferedImage img){
-      byte[] data = convertBufferedImageToByteArray(img);
-      return Vision.createMat(img.getHeight(), img.getWidth(), data);
+      byte[] data = takeBuffer(img.getWidth() * img.getHeight() * 4);
+      try {
+         convertBufferedImageToByteArray(img, data);
+         return Vision.createMat(img.getHeight(), img.getWidth(), data);
+      } finally {
+         returnBuffer(data);
+      }
    }
 
 }
-
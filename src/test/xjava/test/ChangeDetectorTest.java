@@ -0,0 +1,106 @@
+/*
+ * Copyright 2010-2013, Sikuli.org
+ * Released under the MIT License.
+ *
+ */
+package test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Method;
+import java.util.List;
+
+import org.junit.Test;
+import org.sikuli.script.Region;
+
+/**
+ * Test the change detection of onChange observers.
+ */
+public class ChangeDetectorTest {
+
+    static Object create() throws Exception {
+        Class<?> cls = Class.forName("org.sikuli.script.ChangeDetector", true,
+                Region.class.getClassLoader());
+        Constructor<?> c = cls.getDeclaredConstructor();
+        c.setAccessible(true);
+        return c.newInstance();
+    }
+
+    @SuppressWarnings("unchecked")
+    static List<Rectangle> update(Object detector, BufferedImage img) throws Exception {
+        Method m = detector.getClass().getDeclaredMethod("update", BufferedImage.class);
+        m.setAccessible(true);
+        return (List<Rectangle>) m.invoke(detector, img);
+    }
+
+    /**
+     * Test that changed areas are found and neighbouring blocks are merged.
+     */
+    @Test
+    public void testChanges() throws Exception {
+        BufferedImage shot = JavaMatchEngineTest.createScreenshot(300, 200, 1);
+        Object detector = create();
+        assertEquals(0, update(detector, shot).size());
+        assertEquals(0, update(detector, JavaMatchEngineTest.copy(shot, 0, 0, 300, 200)).size());
+
+        Graphics2D g = shot.createGraphics();
+        g.setColor(Color.MAGENTA);
+        g.fillRect(20, 20, 30, 10);
+        g.fillRect(200, 150, 5, 5);
+        g.dispose();
+        shot.setRGB(210, 160, 0x123456);
+        List<Rectangle> changed = update(detector, shot);
+        assertEquals(2, changed.size());
+        assertEquals(new Rectangle(20, 20, 30, 10), changed.get(0));
+        // the block of the single pixel touches the block of the rectangle
+        assertEquals(new Rectangle(200, 150, 11, 11), changed.get(1));
+        assertEquals(0, update(detector, shot).size());
+    }
+
+    /**
+     * Test images not stored as int pixels and a change of the size.
+     */
+    @Test
+    public void testOtherImages() throws Exception {
+        BufferedImage img = new BufferedImage(100, 50, BufferedImage.TYPE_3BYTE_BGR);
+        Object detector = create();
+        update(detector, img);
+        img.setRGB(99, 49, 0xffffff);
+        List<Rectangle> changed = update(detector, img);
+        assertEquals(1, changed.size());
+        assertEquals(new Rectangle(99, 49, 1, 1), changed.get(0));
+        assertEquals(0, update(detector, new BufferedImage(60, 60, BufferedImage.TYPE_INT_RGB)).size());
+    }
+
+    /**
+     * Test that small color differences are no change and a blinking caret
+     * is only as large as the caret.
+     */
+    @Test
+    public void testSmallChanges() throws Exception {
+        BufferedImage img = new BufferedImage(200, 100, BufferedImage.TYPE_INT_RGB);
+        Graphics2D g = img.createGraphics();
+        g.setColor(new Color(200, 200, 200));
+        g.fillRect(0, 0, 200, 100);
+        g.dispose();
+        Object detector = create();
+        update(detector, img);
+        for (int x = 0; x < 200; x += 3) {
+            img.setRGB(x, 50, new Color(205, 195, 200).getRGB());
+        }
+        assertEquals(0, update(detector, img).size());
+        for (int y = 40; y < 56; y++) {
+            img.setRGB(100, y, 0);
+        }
+        List<Rectangle> changed = update(detector, img);
+        assertEquals(1, changed.size());
+        assertEquals(new Rectangle(100, 40, 1, 16), changed.get(0));
+        assertTrue(changed.get(0).width * changed.get(0).height < 50);
+    }
+}
@@ -0,0 +1,208 @@
+/*
+ * Copyright 2010-2013, Sikuli.org
+ * Released under the MIT License.
+ *
+ */
+package test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.sikuli.script.EventDispatcher;
+import org.sikuli.script.ObserverOverflow;
+import org.sikuli.script.Settings;
+
+/**
+ * Test the queued calls of the observer handlers.
+ */
+public class EventDispatcherTest {
+
+    private int size;
+    private ObserverOverflow policy;
+    private final List<String> handled = Collections.synchronizedList(new ArrayList<String>());
+    private final CountDownLatch started = new CountDownLatch(1);
+    private final CountDownLatch release = new CountDownLatch(1);
+
+    @Before
+    public void setUp() {
+        size = Settings.ObserverEventQueueSize;
+        policy = Settings.ObserverOverflowPolicy;
+        EventDispatcher.resetStatistics();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        release.countDown();
+        waitDispatched(0);
+        Settings.ObserverEventQueueSize = size;
+        Settings.ObserverOverflowPolicy = policy;
+    }
+
+    static void dispatch(Object key, Runnable handler) throws Exception {
+        dispatch("test", key, handler);
+    }
+
+    static void dispatch(Object source, Object key, Runnable handler) throws Exception {
+        Method m = EventDispatcher.class.getDeclaredMethod("dispatch", Object.class,
+                Object.class, Runnable.class);
+        m.setAccessible(true);
+        m.invoke(null, source, key, handler);
+    }
+
+    void event(final String name) throws Exception {
+        dispatch(name.substring(0, 1), new Runnable() {
+            @Override
+            public void run() {
+                handled.add(name);
+            }
+        });
+    }
+
+    /**
+     * an event, whose handler runs until released
+     */
+    void blocker() throws Exception {
+        dispatch("blocker", new Runnable() {
+            @Override
+            public void run() {
+                started.countDown();
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                }
+            }
+        });
+        started.await();
+    }
+
+    static void waitDispatched(long n) throws Exception {
+        for (int i = 0; i < 200 && (EventDispatcher.getQueueDepth() > 0
+                || EventDispatcher.getDispatched() < n); i++) {
+            Thread.sleep(10);
+        }
+    }
+
+    /**
+     * Test that a slow handler does not delay the caller.
+     */
+    @Test
+    public void testAsync() throws Exception {
+        long start = System.nanoTime();
+        for (int i = 0; i < 3; i++) {
+            dispatch("slow" + i, new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        Thread.sleep(100);
+                    } catch (InterruptedException e) {
+                    }
+                }
+            });
+        }
+        assertTrue((System.nanoTime() - start) / 1000000 < 80);
+        waitDispatched(3);
+        assertEquals(3, EventDispatcher.getDispatched());
+        assertTrue(EventDispatcher.getMaxLatency() >= 90);
+        assertTrue(EventDispatcher.getAverageWait() >= 50);
+    }
+
+    /**
+     * Test that the oldest events are dropped.
+     */
+    @Test
+    public void testDropOldest() throws Exception {
+        Settings.ObserverEventQueueSize = 3;
+        Settings.ObserverOverflowPolicy = ObserverOverflow.DROP_OLDEST;
+        blocker();
+        for (String name : new String[]{"a", "b", "c", "d", "e"}) {
+            event(name);
+        }
+        assertEquals(3, EventDispatcher.getMaxQueueDepth());
+        release.countDown();
+        waitDispatched(4);
+        assertEquals(Arrays.asList("c", "d", "e"), handled);
+        assertEquals(2, EventDispatcher.getDropped());
+    }
+
+    /**
+     * Test that a waiting event of the same observer is replaced.
+     */
+    @Test
+    public void testCoalesce() throws Exception {
+        Settings.ObserverEventQueueSize = 3;
+        Settings.ObserverOverflowPolicy = ObserverOverflow.COALESCE;
+        blocker();
+        for (String name : new String[]{"x1", "y1", "x2", "x3", "z1"}) {
+            event(name);
+        }
+        release.countDown();
+        waitDispatched(4);
+        assertEquals(Arrays.asList("y1", "x3", "z1"), handled);
+        assertEquals(1, EventDispatcher.getCoalesced());
+        assertEquals(1, EventDispatcher.getDropped());
+    }
+
+    /**
+     * Test that the caller waits for room in the queue.
+     */
+    @Test
+    public void testBlock() throws Exception {
+        Settings.ObserverEventQueueSize = 1;
+        Settings.ObserverOverflowPolicy = ObserverOverflow.BLOCK;
+        blocker();
+        event("a");
+        Thread caller = new Thread() {
+            @Override
+            public void run() {
+                try {
+                    event("b");
+                } catch (Exception e) {
+                }
+            }
+        };
+        caller.start();
+        caller.join(100);
+        assertTrue(caller.isAlive());
+        release.countDown();
+        caller.join(1000);
+        waitDispatched(3);
+        assertEquals(Arrays.asList("a", "b"), handled);
+        assertEquals(0, EventDispatcher.getDropped());
+    }
+
+    /**
+     * Test that a slow handler does not delay the events of other sources
+     * and that the events of a source are handled in order.
+     */
+    @Test
+    public void testSources() throws Exception {
+        blocker();
+        event("a");
+        final CountDownLatch other = new CountDownLatch(3);
+        for (final String name : new String[]{"x1", "x2", "x3"}) {
+            dispatch("other", name, new Runnable() {
+                @Override
+                public void run() {
+                    handled.add(name);
+                    other.countDown();
+                }
+            });
+        }
+        assertTrue(other.await(1, TimeUnit.SECONDS));
+        assertEquals(Arrays.asList("x1", "x2", "x3"), handled);
+        release.countDown();
+        waitDispatched(5);
+        assertEquals(Arrays.asList("x1", "x2", "x3", "a"), handled);
+    }
+}
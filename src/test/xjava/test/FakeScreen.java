@@ -0,0 +1,177 @@
+/*
+ * Copyright 2010-2013, Sikuli.org
+ * Released under the MIT License.
+ *
+ */
+package test;
+
+import java.awt.GraphicsConfiguration;
+import java.awt.GraphicsDevice;
+import java.awt.GraphicsEnvironment;
+import java.awt.Rectangle;
+import java.awt.geom.AffineTransform;
+import java.awt.image.BufferedImage;
+import java.awt.image.ColorModel;
+import java.lang.reflect.Field;
+import java.util.Map;
+
+import org.sikuli.script.FrameGrabber;
+import org.sikuli.script.MatchCache;
+import org.sikuli.script.Screen;
+import org.sikuli.script.ScreenImage;
+
+/**
+ * A screen showing a given image, for tests without a display.
+ * The captures are copies of the parts of the image.
+ */
+public class FakeScreen extends Screen {
+
+    private BufferedImage content;
+    private int captures = 0;
+    private int releases = 0;
+    private String captureThread = null;
+
+    private FakeScreen(int id) throws Exception {
+        super(id);
+    }
+
+    /**
+     * replace the screens of the system by fake screens of the given sizes side by side
+     *
+     * @return the screens (ids 0, 1, ...)
+     */
+    public static FakeScreen[] install(int... widthHeight) throws Exception {
+        int n = widthHeight.length / 2;
+        genv = GraphicsEnvironment.getLocalGraphicsEnvironment();
+        gdevs = new GraphicsDevice[n];
+        int x = 0;
+        for (int i = 0; i < n; i++) {
+            gdevs[i] = new Device(i, new Rectangle(x, 0, widthHeight[2 * i], widthHeight[2 * i + 1]));
+            x += widthHeight[2 * i];
+        }
+        // the captures shared by the regions of the replaced screens
+        Field grabbers = FrameGrabber.class.getDeclaredField("grabbers");
+        grabbers.setAccessible(true);
+        ((Map<?, ?>) grabbers.get(null)).clear();
+        MatchCache.clear();
+        FakeScreen[] ret = new FakeScreen[n];
+        screens = ret;
+        primaryScreen = 0;
+        for (int i = 0; i < n; i++) {
+            ret[i] = new FakeScreen(i);
+            ret[i].content = new BufferedImage(widthHeight[2 * i], widthHeight[2 * i + 1],
+                    BufferedImage.TYPE_INT_RGB);
+        }
+        return ret;
+    }
+
+    /**
+     * the displayed image (screen coordinates relative to the screen's top left corner)
+     */
+    public synchronized void show(BufferedImage img) {
+        content = JavaMatchEngineTest.copy(img, 0, 0, img.getWidth(), img.getHeight());
+    }
+
+    public synchronized int getCaptures() {
+        return captures;
+    }
+
+    /**
+     * the name of the thread, that made the last capture
+     */
+    public synchronized String getCaptureThread() {
+        return captureThread;
+    }
+
+    /**
+     * the number of captures given back with ScreenImage.release()
+     */
+    public synchronized int getReleases() {
+        return releases;
+    }
+
+    @Override
+    public synchronized ScreenImage capture(Rectangle rect) {
+        captures++;
+        captureThread = Thread.currentThread().getName();
+        Rectangle b = getBounds();
+        BufferedImage img = JavaMatchEngineTest.copy(content, rect.x - b.x, rect.y - b.y,
+                rect.width, rect.height);
+        ScreenImage simg = new ScreenImage(new Rectangle(rect), img) {
+            private boolean released = false;
+
+            @Override
+            public void release() {
+                synchronized (FakeScreen.this) {
+                    if (!released) {
+                        released = true;
+                        releases++;
+                    }
+                }
+            }
+        };
+        lastScreenImage = simg;
+        return simg;
+    }
+
+    private static class Device extends GraphicsDevice {
+
+        private final int id;
+        private final GraphicsConfiguration config;
+
+        Device(int id, final Rectangle bounds) {
+            this.id = id;
+            config = new GraphicsConfiguration() {
+                @Override
+                public GraphicsDevice getDevice() {
+                    return Device.this;
+                }
+
+                @Override
+                public ColorModel getColorModel() {
+                    return ColorModel.getRGBdefault();
+                }
+
+                @Override
+                public ColorModel getColorModel(int transparency) {
+                    return ColorModel.getRGBdefault();
+                }
+
+                @Override
+                public AffineTransform getDefaultTransform() {
+                    return new AffineTransform();
+                }
+
+                @Override
+                public AffineTransform getNormalizingTransform() {
+                    return new AffineTransform();
+                }
+
+                @Override
+                public Rectangle getBounds() {
+                    return new Rectangle(bounds);
+                }
+            };
+        }
+
+        @Override
+        public int getType() {
+            return TYPE_RASTER_SCREEN;
+        }
+
+        @Override
+        public String getIDstring() {
+            return "fake" + id;
+        }
+
+        @Override
+        public GraphicsConfiguration[] getConfigurations() {
+            return new GraphicsConfiguration[]{config};
+        }
+
+        @Override
+        public GraphicsConfiguration getDefaultConfiguration() {
+            return config;
+        }
+    }
+}
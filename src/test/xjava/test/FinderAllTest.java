@@ -0,0 +1,145 @@
+/*
+ * Copyright 2010-2013, Sikuli.org
+ * Released under the MIT License.
+ *
+ */
+package test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.lang.reflect.Field;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.sikuli.script.Finder;
+import org.sikuli.script.MatchResult;
+import org.sikuli.script.Pattern;
+import org.sikuli.script.Settings;
+
+/**
+ * Test findAll with limit and streamed results.
+ */
+public class FinderAllTest {
+
+    private String engine;
+    private int threads;
+
+    @Before
+    public void setUp() {
+        engine = Settings.MatchEngine;
+        threads = Settings.FindThreads;
+        Settings.MatchEngine = "java";
+        Settings.FindThreads = 3;
+    }
+
+    @After
+    public void tearDown() {
+        Settings.MatchEngine = engine;
+        Settings.FindThreads = threads;
+        Settings.FindAllOverlap = 0.5;
+    }
+
+    /**
+     * a grid of icons (like a desktop)
+     */
+    static BufferedImage createGrid(int cols, int rows) {
+        BufferedImage shot = JavaMatchEngineTest.createScreenshot(cols * 60 + 20, rows * 50 + 20, 5);
+        BufferedImage icon = JavaMatchEngineTest.createIcon();
+        Graphics2D g = shot.createGraphics();
+        for (int r = 0; r < rows; r++) {
+            for (int c = 0; c < cols; c++) {
+                g.drawImage(icon, 10 + c * 60, 10 + r * 50, null);
+            }
+        }
+        g.dispose();
+        return shot;
+    }
+
+    static Object field(Finder f, String name) throws Exception {
+        Field fld = Finder.class.getDeclaredField(name);
+        fld.setAccessible(true);
+        return fld.get(f);
+    }
+
+    /**
+     * Test the limit of findAll.
+     */
+    @Test
+    public void testLimit() throws Exception {
+        BufferedImage grid = createGrid(8, 6);
+        Finder f = new Finder(grid);
+        f.findAll(new Pattern(JavaMatchEngineTest.createIcon()).similar(0.95f));
+        assertEquals(48, ((List<?>) field(f, "_results")).size());
+        f.findAll(new Pattern(JavaMatchEngineTest.createIcon()).similar(0.95f), 5);
+        assertEquals(5, ((List<?>) field(f, "_results")).size());
+    }
+
+    /**
+     * Test that all matches are streamed and the limit is kept.
+     */
+    @Test
+    public void testStreamed() throws Exception {
+        BufferedImage grid = createGrid(8, 10);
+        Pattern ptn = new Pattern(JavaMatchEngineTest.createIcon()).similar(0.95f);
+        Finder f = new Finder(grid);
+        assertNotNull(f.findAllStreamed(ptn, 0));
+        @SuppressWarnings("unchecked")
+        Iterator<MatchResult> stream = (Iterator<MatchResult>) field(f, "_stream");
+        List<MatchResult> streamed = new ArrayList<MatchResult>();
+        while (stream.hasNext()) {
+            streamed.add(stream.next());
+        }
+        assertEquals(80, streamed.size());
+        for (int r = 0; r < 10; r++) {
+            for (int c = 0; c < 8; c++) {
+                boolean found = false;
+                for (MatchResult mr : streamed) {
+                    found |= mr.x == 10 + c * 60 && mr.y == 10 + r * 50;
+                }
+                assertTrue("not found: " + c + "," + r, found);
+            }
+        }
+
+        f.findAllStreamed(ptn, 7);
+        @SuppressWarnings("unchecked")
+        Iterator<MatchResult> limited = (Iterator<MatchResult>) field(f, "_stream");
+        int n = 0;
+        while (limited.hasNext()) {
+            limited.next();
+            n++;
+        }
+        assertEquals(7, n);
+    }
+
+    /**
+     * Test the overlap setting of the non-maximum suppression.
+     */
+    @Test
+    public void testOverlap() throws Exception {
+        BufferedImage shot = JavaMatchEngineTest.createScreenshot(200, 100, 6);
+        Color[] stripes = {Color.RED, Color.RED, Color.GREEN, Color.BLUE, Color.BLUE, Color.WHITE};
+        Graphics2D g = shot.createGraphics();
+        for (int x = 0; x < 60; x++) {
+            g.setColor(stripes[x % 6]);
+            g.drawLine(20 + x, 20, 20 + x, 39);
+        }
+        g.dispose();
+        // matches every 6 pixels, neighbours overlap by 40%
+        Pattern ptn = new Pattern(JavaMatchEngineTest.copy(shot, 20, 20, 10, 20)).similar(0.99f);
+        Finder f = new Finder(shot);
+        f.findAll(ptn);
+        assertEquals(9, ((List<?>) field(f, "_results")).size());
+        Settings.FindAllOverlap = 0;
+        f.findAll(ptn);
+        assertEquals(5, ((List<?>) field(f, "_results")).size());
+    }
+}
@@ -0,0 +1,120 @@
+/*
+ * Copyright 2010-2013, Sikuli.org
+ * Released under the MIT License.
+ *
+ */
+package test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.sikuli.script.Finder;
+import org.sikuli.script.MatchResult;
+import org.sikuli.script.Pattern;
+import org.sikuli.script.Settings;
+
+/**
+ * Test the search of several patterns in one image.
+ */
+public class FinderAnyTest {
+
+    private String engine;
+    private int threads;
+
+    @Before
+    public void setUp() {
+        engine = Settings.MatchEngine;
+        threads = Settings.FindThreads;
+        Settings.MatchEngine = "java";
+        Settings.FindThreads = 4;
+    }
+
+    @After
+    public void tearDown() {
+        Settings.MatchEngine = engine;
+        Settings.FindThreads = threads;
+    }
+
+    /**
+     * the results of Finder.findAny (Match objects need a screen)
+     */
+    static MatchResult[] findAny(Finder f, List<Pattern> patterns, boolean firstHit) throws Exception {
+        Method m = Finder.class.getDeclaredMethod("findAnyResults", List.class, boolean.class);
+        m.setAccessible(true);
+        return (MatchResult[]) m.invoke(f, patterns, firstHit);
+    }
+
+    static BufferedImage createButton(Color color) {
+        BufferedImage img = new BufferedImage(30, 20, BufferedImage.TYPE_INT_RGB);
+        Graphics2D g = img.createGraphics();
+        g.setColor(Color.LIGHT_GRAY);
+        g.fillRect(0, 0, 30, 20);
+        g.setColor(color);
+        g.fillRect(4, 4, 22, 12);
+        g.setColor(Color.BLACK);
+        g.drawLine(4, 10, 25, 10);
+        g.dispose();
+        return img;
+    }
+
+    /**
+     * Test that each pattern gets its own best match.
+     */
+    @Test
+    public void testFindAny() throws Exception {
+        BufferedImage shot = JavaMatchEngineTest.createScreenshot(640, 480, 1);
+        Color[] colors = {Color.RED, Color.GREEN, Color.BLUE, Color.MAGENTA, Color.ORANGE};
+        int[][] at = {{20, 30}, {500, 100}, null, {300, 400}, null};
+        List<Pattern> patterns = new ArrayList<Pattern>();
+        Graphics2D g = shot.createGraphics();
+        for (int i = 0; i < colors.length; i++) {
+            BufferedImage button = createButton(colors[i]);
+            patterns.add(new Pattern(button).similar(0.95f));
+            if (at[i] != null) {
+                g.drawImage(button, at[i][0], at[i][1], null);
+            }
+        }
+        g.dispose();
+        MatchResult[] res = findAny(new Finder(shot), patterns, false);
+        assertEquals(colors.length, res.length);
+        for (int i = 0; i < colors.length; i++) {
+            if (at[i] == null) {
+                assertNull(res[i]);
+            } else {
+                assertNotNull(res[i]);
+                assertEquals(at[i][0], res[i].x);
+                assertEquals(at[i][1], res[i].y);
+            }
+        }
+    }
+
+    /**
+     * Test the first hit mode: at least one found, no false results.
+     */
+    @Test
+    public void testFirstHit() throws Exception {
+        BufferedImage shot = JavaMatchEngineTest.createScreenshot(640, 480, 2);
+        List<Pattern> patterns = new ArrayList<Pattern>();
+        Graphics2D g = shot.createGraphics();
+        patterns.add(new Pattern(createButton(Color.RED)).similar(0.95f));
+        patterns.add(new Pattern(createButton(Color.GREEN)).similar(0.95f));
+        g.drawImage(createButton(Color.GREEN), 200, 200, null);
+        g.dispose();
+        MatchResult[] res = findAny(new Finder(shot), patterns, true);
+        assertNull(res[0]);
+        assertNotNull(res[1]);
+        assertTrue(res[1].score > 0.99);
+    }
+}
@@ -0,0 +1,104 @@
+/*
+ * Copyright 2010-2013, Sikuli.org
+ * Released under the MIT License.
+ *
+ */
+package test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.sikuli.script.Finder;
+import org.sikuli.script.MatchResult;
+import org.sikuli.script.Pattern;
+import org.sikuli.script.Settings;
+
+/**
+ * Test the search of pixel identical occurrences of exact patterns.
+ */
+public class FinderExactTest {
+
+    private String engine;
+    private int threads;
+
+    @Before
+    public void setUp() {
+        engine = Settings.MatchEngine;
+        threads = Settings.FindThreads;
+        Settings.MatchEngine = "java";
+        Settings.FindThreads = 3;
+    }
+
+    @After
+    public void tearDown() {
+        Settings.MatchEngine = engine;
+        Settings.FindThreads = threads;
+        Settings.ExactMatchHash = true;
+    }
+
+    static BufferedImage createScene(int[][] at) {
+        BufferedImage shot = JavaMatchEngineTest.createScreenshot(640, 480, 7);
+        BufferedImage icon = JavaMatchEngineTest.createIcon();
+        Graphics2D g = shot.createGraphics();
+        for (int[] p : at) {
+            g.drawImage(icon, p[0], p[1], null);
+        }
+        g.dispose();
+        return shot;
+    }
+
+    /**
+     * Test find and findAll, compared with the match engine.
+     */
+    @Test
+    public void testExact() throws Exception {
+        int[][] at = {{300, 200}, {20, 400}, {500, 30}, {100, 100}};
+        BufferedImage shot = createScene(at);
+        Pattern ptn = new Pattern(JavaMatchEngineTest.createIcon()).exact();
+        Finder f = new Finder(shot);
+        f.find(ptn);
+        List<MatchResult> res = FinderRepeatTest.results(f);
+        assertEquals(1, res.size());
+        assertEquals(500, res.get(0).x);
+        assertEquals(30, res.get(0).y);
+        assertTrue(res.get(0).score > 0.999);
+
+        f.findAll(ptn);
+        res = FinderRepeatTest.results(f);
+        assertEquals(at.length, res.size());
+        for (int[] p : at) {
+            assertTrue(FinderRepeatTest.contains(res, p[0], p[1]));
+        }
+        f.findAll(ptn, 2);
+        assertEquals(2, FinderRepeatTest.results(f).size());
+
+        Settings.ExactMatchHash = false;
+        f.findAll(ptn);
+        res = FinderRepeatTest.results(f);
+        assertEquals(at.length, res.size());
+    }
+
+    /**
+     * Test that the match engine is used if there is no pixel identical occurrence.
+     */
+    @Test
+    public void testFallback() throws Exception {
+        BufferedImage shot = createScene(new int[][]{{200, 150}});
+        int rgb = shot.getRGB(210, 160);
+        shot.setRGB(210, 160, (rgb & 0xffff00) | ((rgb & 0xff) ^ 1));
+        Finder f = new Finder(shot);
+        f.find(new Pattern(JavaMatchEngineTest.createIcon()).exact());
+        List<MatchResult> res = FinderRepeatTest.results(f);
+        assertEquals(1, res.size());
+        assertEquals(200, res.get(0).x);
+        assertEquals(150, res.get(0).y);
+        assertTrue(res.get(0).score >= 0.99);
+    }
+}
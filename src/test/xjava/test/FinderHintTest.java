@@ -0,0 +1,191 @@
+/*
+ * Copyright 2010-2013, Sikuli.org
+ * Released under the MIT License.
+ *
+ */
+package test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.awt.Color;
+import java.awt.Font;
+import java.awt.Graphics2D;
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.sikuli.script.Finder;
+import org.sikuli.script.LocationHints;
+import org.sikuli.script.MatchResult;
+import org.sikuli.script.Pattern;
+import org.sikuli.script.ScreenImage;
+import org.sikuli.script.Settings;
+
+/**
+ * Test the search near the last location of a match.
+ */
+public class FinderHintTest {
+
+    private String engine;
+    private boolean nearLastMatch;
+
+    @Before
+    public void setUp() {
+        engine = Settings.MatchEngine;
+        nearLastMatch = Settings.FindNearLastMatch;
+        Settings.MatchEngine = "java";
+        Settings.FindNearLastMatch = true;
+        LocationHints.clear();
+    }
+
+    @After
+    public void tearDown() {
+        Settings.MatchEngine = engine;
+        Settings.FindNearLastMatch = nearLastMatch;
+        LocationHints.clear();
+    }
+
+    /**
+     * a capture of the screen area at (100, 50)
+     */
+    static ScreenImage frame(BufferedImage img) {
+        BufferedImage copy = JavaMatchEngineTest.copy(img, 0, 0, img.getWidth(), img.getHeight());
+        return new ScreenImage(new Rectangle(100, 50, img.getWidth(), img.getHeight()), copy);
+    }
+
+    static MatchResult best(BufferedImage shot, Pattern ptn) throws Exception {
+        Finder f = new Finder(frame(shot));
+        f.find(ptn);
+        List<MatchResult> res = FinderRepeatTest.results(f);
+        return res.isEmpty() ? null : res.get(0);
+    }
+
+    /**
+     * Test that the target is found near its last location and elsewhere after it moved.
+     */
+    @Test
+    public void testMoved() throws Exception {
+        BufferedImage shot = JavaMatchEngineTest.createScreenshot(640, 480, 1);
+        BufferedImage background = JavaMatchEngineTest.copy(shot, 0, 0, 640, 480);
+        BufferedImage icon = JavaMatchEngineTest.createIcon();
+        Pattern ptn = new Pattern(icon).similar(0.95f);
+        Graphics2D g = shot.createGraphics();
+        g.drawImage(icon, 300, 200, null);
+        MatchResult mr = best(shot, ptn);
+        assertEquals(300, mr.x);
+        assertEquals(0, LocationHints.getHits() + LocationHints.getMisses());
+
+        mr = best(shot, ptn);
+        assertEquals(300, mr.x);
+        assertEquals(200, mr.y);
+        assertEquals(1, LocationHints.getHits());
+
+        g.drawImage(background.getSubimage(300, 200, 40, 40), 300, 200, null);
+        g.drawImage(icon, 40, 400, null);
+        mr = best(shot, ptn);
+        assertEquals(40, mr.x);
+        assertEquals(400, mr.y);
+        assertEquals(1, LocationHints.getMisses());
+        g.dispose();
+    }
+
+    /**
+     * Test that a worse match at the last location does not hide a better one elsewhere.
+     */
+    @Test
+    public void testBetterElsewhere() throws Exception {
+        BufferedImage shot = JavaMatchEngineTest.createScreenshot(640, 480, 2);
+        BufferedImage icon = JavaMatchEngineTest.createIcon();
+        Pattern ptn = new Pattern(icon).similar(0.7f);
+        Graphics2D g = shot.createGraphics();
+        g.drawImage(icon, 300, 200, null);
+        assertEquals(300, best(shot, ptn).x);
+
+        g.setColor(Color.BLACK);
+        g.fillRect(300, 200, 4, 4);
+        g.drawImage(icon, 500, 100, null);
+        MatchResult mr = best(shot, ptn);
+        assertEquals(500, mr.x);
+        assertEquals(100, mr.y);
+        assertTrue(mr.score > 0.99);
+        g.dispose();
+    }
+
+    /**
+     * Test that the whole image is searched if switched off.
+     */
+    @Test
+    public void testSwitchedOff() throws Exception {
+        Settings.FindNearLastMatch = false;
+        BufferedImage shot = JavaMatchEngineTest.createScreenshot(640, 480, 3);
+        BufferedImage icon = JavaMatchEngineTest.createIcon();
+        Pattern ptn = new Pattern(icon).similar(0.95f);
+        Graphics2D g = shot.createGraphics();
+        g.drawImage(icon, 300, 200, null);
+        g.dispose();
+        best(shot, ptn);
+        assertEquals(300, best(shot, ptn).x);
+        assertEquals(0, LocationHints.getHits() + LocationHints.getMisses());
+    }
+
+    /**
+     * a button like image wider than the margins of the search window
+     */
+    static BufferedImage createWide() {
+        BufferedImage img = new BufferedImage(120, 30, BufferedImage.TYPE_INT_RGB);
+        Graphics2D g = img.createGraphics();
+        g.setColor(Color.WHITE);
+        g.fillRect(0, 0, 120, 30);
+        g.setColor(Color.RED);
+        g.drawRect(0, 0, 119, 29);
+        g.setColor(Color.BLACK);
+        g.setFont(new Font("SansSerif", Font.PLAIN, 12));
+        g.drawString("Wide button", 20, 19);
+        g.dispose();
+        return img;
+    }
+
+    /**
+     * Test that a target wider than twice the margin is found near its last location
+     * after it moved by a few pixels (the window covers the whole last match)
+     * and elsewhere after it moved further.
+     */
+    @Test
+    public void testWideMoved() throws Exception {
+        BufferedImage shot = JavaMatchEngineTest.createScreenshot(640, 480, 4);
+        BufferedImage background = JavaMatchEngineTest.copy(shot, 0, 0, 640, 480);
+        BufferedImage wide = createWide();
+        Graphics2D g = shot.createGraphics();
+        g.drawImage(wide, 300, 200, null);
+        for (Pattern ptn : new Pattern[]{new Pattern(wide).similar(0.95f),
+                new Pattern(wide).similar(0.95f).firstHit()}) {
+            LocationHints.clear();
+            g.drawImage(background.getSubimage(290, 190, 150, 50), 290, 190, null);
+            g.drawImage(wide, 300, 200, null);
+            assertEquals(300, best(shot, ptn).x);
+
+            g.drawImage(background.getSubimage(290, 190, 150, 50), 290, 190, null);
+            g.drawImage(wide, 305, 197, null);
+            MatchResult mr = best(shot, ptn);
+            assertEquals(305, mr.x);
+            assertEquals(197, mr.y);
+            assertEquals(120, mr.w);
+            assertEquals(1, LocationHints.getHits());
+            assertEquals(0, LocationHints.getMisses());
+
+            // moved further than the margin: searched from the last position
+            g.drawImage(background.getSubimage(290, 190, 150, 50), 290, 190, null);
+            g.drawImage(wide, 345, 240, null);
+            mr = best(shot, ptn);
+            assertEquals(345, mr.x);
+            assertEquals(240, mr.y);
+            assertEquals(1, LocationHints.getMisses());
+            g.drawImage(background.getSubimage(340, 235, 130, 40), 340, 235, null);
+        }
+        g.dispose();
+    }
+}
@@ -0,0 +1,198 @@
+/*
+ * Copyright 2010-2013, Sikuli.org
+ * Released under the MIT License.
+ *
+ */
+package test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
+import java.lang.reflect.Field;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.sikuli.script.Finder;
+import org.sikuli.script.MatchResult;
+import org.sikuli.script.Pattern;
+import org.sikuli.script.ScreenImage;
+import org.sikuli.script.Settings;
+
+/**
+ * Test repeated searches with the same Finder.
+ */
+public class FinderRepeatTest {
+
+    private String engine;
+
+    @Before
+    public void setUp() {
+        engine = Settings.MatchEngine;
+        Settings.MatchEngine = "java";
+    }
+
+    @After
+    public void tearDown() {
+        Settings.MatchEngine = engine;
+        Settings.SkipUnchangedFrames = true;
+    }
+
+    static ScreenImage frame(BufferedImage img) {
+        BufferedImage copy = JavaMatchEngineTest.copy(img, 0, 0, img.getWidth(), img.getHeight());
+        return new ScreenImage(new Rectangle(0, 0, img.getWidth(), img.getHeight()), copy);
+    }
+
+    /**
+     * Test that an unchanged frame is not searched again.
+     * The target is changed in place: a new search would not find it anymore.
+     */
+    @Test
+    public void testUnchangedFrame() {
+        BufferedImage shot = JavaMatchEngineTest.createScreenshot(320, 240, 1);
+        BufferedImage icon = JavaMatchEngineTest.createIcon();
+        Graphics2D g = shot.createGraphics();
+        g.drawImage(icon, 100, 50, null);
+        g.dispose();
+        Finder f = new Finder(frame(shot));
+        f.find(new Pattern(icon).similar(0.95f));
+        assertTrue(f.hasNext());
+        f.setRepeating();
+        f.setScreenImage(frame(shot));
+        f.findRepeat();
+        assertTrue(f.hasNext());
+
+        g = icon.createGraphics();
+        g.setColor(Color.BLACK);
+        g.fillRect(0, 0, 12, 18);
+        g.dispose();
+        f.setScreenImage(frame(shot));
+        f.findRepeat();
+        assertTrue(f.hasNext());
+
+        shot.setRGB(110, 60, 0);
+        f.setScreenImage(frame(shot));
+        f.findRepeat();
+        assertFalse(f.hasNext());
+    }
+
+    /**
+     * the current results (Match objects need a screen)
+     */
+    @SuppressWarnings("unchecked")
+    static List<MatchResult> results(Finder f) throws Exception {
+        Field fld = Finder.class.getDeclaredField("_results");
+        fld.setAccessible(true);
+        return (List<MatchResult>) fld.get(f);
+    }
+
+    static boolean contains(List<MatchResult> res, int x, int y) {
+        for (MatchResult mr : res) {
+            if (mr.x == x && mr.y == y) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Test that changes in parts of the frame are found by findAllRepeat.
+     */
+    @Test
+    public void testChangedParts() throws Exception {
+        BufferedImage shot = JavaMatchEngineTest.createScreenshot(640, 480, 3);
+        BufferedImage background = JavaMatchEngineTest.copy(shot, 0, 0, 640, 480);
+        BufferedImage icon = JavaMatchEngineTest.createIcon();
+        Graphics2D g = shot.createGraphics();
+        g.drawImage(icon, 10, 10, null);
+        g.drawImage(icon, 400, 40, null);
+        Finder f = new Finder(frame(shot));
+        f.findAll(new Pattern(icon).similar(0.95f));
+        assertEquals(2, results(f).size());
+        f.setRepeating();
+        f.setScreenImage(frame(shot));
+        f.findAllRepeat();
+        assertEquals(2, results(f).size());
+
+        g.drawImage(icon, 300, 350, null);
+        f.setScreenImage(frame(shot));
+        f.findAllRepeat();
+        assertEquals(3, results(f).size());
+        assertTrue(contains(results(f), 300, 350));
+
+        g.drawImage(background.getSubimage(0, 0, 40, 40), 0, 0, null);
+        f.setScreenImage(frame(shot));
+        f.findAllRepeat();
+        assertEquals(2, results(f).size());
+        assertTrue(contains(results(f), 400, 40));
+        assertTrue(contains(results(f), 300, 350));
+        g.dispose();
+    }
+
+    /**
+     * Test that the best match is found again after parts of the frame changed.
+     */
+    @Test
+    public void testChangedBest() throws Exception {
+        BufferedImage shot = JavaMatchEngineTest.createScreenshot(640, 480, 4);
+        BufferedImage background = JavaMatchEngineTest.copy(shot, 0, 0, 640, 480);
+        BufferedImage icon = JavaMatchEngineTest.createIcon();
+        Graphics2D g = shot.createGraphics();
+        g.drawImage(icon, 100, 50, null);
+        Finder f = new Finder(frame(shot));
+        f.find(new Pattern(icon).similar(0.95f));
+        f.setRepeating();
+        f.setScreenImage(frame(shot));
+        f.findRepeat();
+        assertTrue(contains(results(f), 100, 50));
+
+        g.drawImage(background.getSubimage(90, 40, 50, 40), 90, 40, null);
+        f.setScreenImage(frame(shot));
+        f.findRepeat();
+        assertEquals(0, results(f).size());
+
+        g.drawImage(icon, 500, 400, null);
+        f.setScreenImage(frame(shot));
+        f.findRepeat();
+        assertEquals(1, results(f).size());
+        assertTrue(contains(results(f), 500, 400));
+
+        g.drawImage(icon, 20, 20, null);
+        f.setScreenImage(frame(shot));
+        f.findRepeat();
+        assertEquals(1, results(f).size());
+        g.dispose();
+    }
+
+    /**
+     * Test that every frame is searched if switched off.
+     */
+    @Test
+    public void testSwitchedOff() {
+        Settings.SkipUnchangedFrames = false;
+        BufferedImage shot = JavaMatchEngineTest.createScreenshot(320, 240, 2);
+        BufferedImage icon = JavaMatchEngineTest.createIcon();
+        Graphics2D g = shot.createGraphics();
+        g.drawImage(icon, 100, 50, null);
+        g.dispose();
+        Finder f = new Finder(frame(shot));
+        f.find(new Pattern(icon).similar(0.95f));
+        f.setRepeating();
+        f.setScreenImage(frame(shot));
+        f.findRepeat();
+        assertTrue(f.hasNext());
+        g = icon.createGraphics();
+        g.setColor(Color.BLACK);
+        g.fillRect(0, 0, 12, 18);
+        g.dispose();
+        f.setScreenImage(frame(shot));
+        f.findRepeat();
+        assertFalse(f.hasNext());
+    }
+}
@@ -0,0 +1,103 @@
+/*
+ * Copyright 2010-2013, Sikuli.org
+ * Released under the MIT License.
+ *
+ */
+package test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.awt.Rectangle;
+import java.lang.reflect.Method;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.sikuli.script.FrameGrabber;
+import org.sikuli.script.Region;
+import org.sikuli.script.Screen;
+import org.sikuli.script.ScreenImage;
+import org.sikuli.script.Settings;
+
+/**
+ * Test the captures shared by the regions of a screen.
+ */
+public class FrameGrabberTest {
+
+    private float maxFrameAge;
+    private FakeScreen scr;
+
+    @Before
+    public void setUp() throws Exception {
+        maxFrameAge = Settings.MaxFrameAge;
+        Settings.MaxFrameAge = 10;
+        scr = FakeScreen.install(640, 480, 320, 240)[0];
+        scr.show(JavaMatchEngineTest.createScreenshot(640, 480, 2));
+    }
+
+    @After
+    public void tearDown() {
+        Settings.MaxFrameAge = maxFrameAge;
+    }
+
+    static void inputDone(Screen scr) throws Exception {
+        Class<?> robot = Class.forName("org.sikuli.script.RobotDesktop", true,
+                Region.class.getClassLoader());
+        Method m = robot.getDeclaredMethod("inputDone", Screen.class);
+        m.setAccessible(true);
+        m.invoke(null, scr);
+    }
+
+    /**
+     * Test that all Screen objects of a screen use the same grabber.
+     */
+    @Test
+    public void testPerScreen() throws Exception {
+        FrameGrabber fg = FrameGrabber.get(scr);
+        assertSame(fg, FrameGrabber.get(new Screen(0)));
+        assertSame(fg, FrameGrabber.get(new Screen(0)));
+        assertTrue(fg != FrameGrabber.get(new Screen(1)));
+    }
+
+    /**
+     * Test that the registered regions get one capture.
+     */
+    @Test
+    public void testShared() throws Exception {
+        Region r1 = new Region(10, 10, 100, 100, scr);
+        Region r2 = new Region(300, 200, 50, 50, scr);
+        FrameGrabber fg = FrameGrabber.get(scr);
+        fg.register(r1);
+        fg.register(r2);
+        try {
+            ScreenImage img1 = fg.capture(r1.getRect());
+            ScreenImage img2 = fg.capture(r2.getRect());
+            assertEquals(new Rectangle(300, 200, 50, 50), img2.getROI());
+            assertEquals(100, img1.getImage().getWidth());
+            assertEquals(1, scr.getCaptures());
+            assertEquals(1, fg.getShared());
+        } finally {
+            fg.unregister(r1);
+            fg.unregister(r2);
+        }
+    }
+
+    /**
+     * Test that a mouse or keyboard action drops the shared capture.
+     */
+    @Test
+    public void testInvalidatedByInput() throws Exception {
+        Rectangle rect = new Rectangle(10, 10, 100, 100);
+        FrameGrabber fg = FrameGrabber.get(scr);
+        fg.capture(rect);
+        fg.capture(rect);
+        assertEquals(1, scr.getCaptures());
+        inputDone(new Screen(1));
+        fg.capture(rect);
+        assertEquals(2, scr.getCaptures());
+        fg.capture(rect);
+        assertEquals(2, scr.getCaptures());
+    }
+}
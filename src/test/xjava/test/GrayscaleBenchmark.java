@@ -0,0 +1,77 @@
+/*
+ * Copyright 2010-2013, Sikuli.org
+ * Released under the MIT License.
+ *
+ */
+package test;
+
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.util.List;
+
+import org.sikuli.script.JavaMatchEngine;
+import org.sikuli.script.MatchResult;
+import org.sikuli.script.MatchSource;
+import org.sikuli.script.Pattern;
+
+/**
+ * Compares the latency and the score/position drift of color, grayscale and downscaled
+ * search (Pattern.grayscale()/scale()) with the pure Java engine. The converted frame
+ * is made once per frame: the first search in a new frame includes the conversion,
+ * further patterns in the same frame use it.<br />
+ * usage: java test.GrayscaleBenchmark [width height] (default 1920 1080)
+ */
+public class GrayscaleBenchmark {
+
+    static final int RUNS = 3;
+    static final int PATTERNS = 4;
+
+    public static void main(String[] args) throws Exception {
+        int w = args.length > 1 ? Integer.parseInt(args[0]) : 1920;
+        int h = args.length > 1 ? Integer.parseInt(args[1]) : 1080;
+        BufferedImage shot = JavaMatchEngineTest.createScreenshot(w, h, 42);
+        Graphics2D g = shot.createGraphics();
+        g.drawImage(JavaMatchEngineTest.createIcon(), w * 3 / 4, h * 2 / 3, null);
+        g.dispose();
+        BufferedImage target = JavaMatchEngineTest.copy(shot, w * 3 / 4 - 12, h * 2 / 3 - 11, 48, 40);
+        String[] names = {"color", "grayscale", "scale(0.5)", "grayscale scale(0.5)", "scale(0.25)"};
+        Pattern[] patterns = {new Pattern(target), new Pattern(target).grayscale(),
+            new Pattern(target).scale(0.5f), new Pattern(target).grayscale().scale(0.5f),
+            new Pattern(target).scale(0.25f)};
+        MatchResult reference = null;
+        System.out.println(w + "x" + h + ", target 48x40, " + PATTERNS + " patterns per frame");
+        System.out.println(String.format("%-22s %12s %14s %8s %11s %9s", "mode", "1st in frame",
+                "next in frame", "speedup", "score drift", "pos error"));
+        long base = 0;
+        for (int i = 0; i < patterns.length; i++) {
+            long first = 0, next = 0;
+            MatchResult mr = null;
+            for (int r = 0; r < RUNS; r++) {
+                MatchSource src = new JavaMatchEngine().createSource(shot);
+                long start = System.nanoTime();
+                List<MatchResult> res = src.find(patterns[i], 0.7, false, 0);
+                first += System.nanoTime() - start;
+                start = System.nanoTime();
+                for (int p = 1; p < PATTERNS; p++) {
+                    src.find(patterns[i], 0.7, false, 0);
+                }
+                next += (System.nanoTime() - start) / (PATTERNS - 1);
+                mr = res.isEmpty() ? null : res.get(0);
+                src.release();
+            }
+            first /= RUNS * 1000000L;
+            next /= RUNS * 1000000L;
+            if (i == 0) {
+                reference = mr;
+                base = next;
+            }
+            if (mr == null) {
+                System.out.println(String.format("%-22s %9d ms %11d ms  not found", names[i], first, next));
+                continue;
+            }
+            System.out.println(String.format("%-22s %9d ms %11d ms %7.1fx %11.4f %6d px", names[i],
+                    first, next, (double) base / Math.max(1, next), mr.score - reference.score,
+                    Math.max(Math.abs(mr.x - reference.x), Math.abs(mr.y - reference.y))));
+        }
+    }
+}
@@ -0,0 +1,88 @@
+/*
+ * Copyright 2010-2013, Sikuli.org
+ * Released under the MIT License.
+ *
+ */
+package test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.sikuli.script.ImagePool;
+import org.sikuli.script.ScreenImage;
+import org.sikuli.script.Settings;
+
+/**
+ * Test the reuse of capture images.
+ */
+public class ImagePoolTest {
+
+    private int poolSize;
+
+    @Before
+    public void setUp() {
+        poolSize = Settings.ImagePoolSize;
+        ImagePool.clear();
+        ImagePool.resetStatistics();
+    }
+
+    @After
+    public void tearDown() {
+        Settings.ImagePoolSize = poolSize;
+        ImagePool.clear();
+    }
+
+    /**
+     * Test that released images are handed out again for the same size only.
+     */
+    @Test
+    public void testReuse() {
+        BufferedImage img = ImagePool.get(200, 100);
+        ImagePool.release(img);
+        assertNotSame(img, ImagePool.get(100, 200));
+        assertSame(img, ImagePool.get(200, 100));
+        assertEquals(2, ImagePool.getAllocations());
+        assertEquals(1, ImagePool.getReuses());
+        assertEquals(2 * 4 * 200 * 100, ImagePool.getAllocatedBytes());
+    }
+
+    /**
+     * Test the limit of pooled images.
+     */
+    @Test
+    public void testLimit() {
+        Settings.ImagePoolSize = 1;
+        BufferedImage img1 = ImagePool.get(10, 10);
+        BufferedImage img2 = ImagePool.get(10, 10);
+        ImagePool.release(img1);
+        ImagePool.release(img2);
+        assertSame(img2, ImagePool.get(10, 10));
+        assertNotSame(img1, ImagePool.get(10, 10));
+        Settings.ImagePoolSize = 0;
+        ImagePool.release(img1);
+        assertNotSame(img1, ImagePool.get(10, 10));
+    }
+
+    /**
+     * Test that only images of the pool are given back by ScreenImage.release()
+     * and counted (a single screen's capture is not pooled).
+     */
+    @Test
+    public void testScreenImage() {
+        BufferedImage img = new BufferedImage(20, 20, BufferedImage.TYPE_INT_RGB);
+        ScreenImage simg = new ScreenImage(new Rectangle(0, 0, 20, 20), img);
+        simg.release();
+        assertNotNull(simg.getImage());
+        assertNotSame(img, ImagePool.get(20, 20));
+        assertEquals(0, ImagePool.getReleases());
+        assertEquals(1, ImagePool.getAllocations());
+    }
+}
@@ -0,0 +1,344 @@
+/*
+ * Copyright 2010-2013, Sikuli.org
+ * Released under the MIT License.
+ *
+ */
+package test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.awt.Color;
+import java.awt.Font;
+import java.awt.Graphics2D;
+import java.awt.Point;
+import java.awt.image.BufferedImage;
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+import java.lang.reflect.Field;
+import java.net.URL;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.List;
+import java.util.Random;
+
+import javax.imageio.ImageIO;
+
+import org.junit.Test;
+import org.sikuli.script.Finder;
+import org.sikuli.script.INativeLoader;
+import org.sikuli.script.JavaMatchEngine;
+import org.sikuli.script.MatchResult;
+import org.sikuli.script.MatchSource;
+import org.sikuli.script.NativeMatchEngine;
+import org.sikuli.script.Pattern;
+import org.sikuli.script.Settings;
+
+/**
+ * Tests the pure Java image search against generated screenshots.
+ */
+public class JavaMatchEngineTest {
+
+    /**
+     * the rendered image/target pairs with their reference scores (see ReferenceScores)
+     */
+    static final String IMAGES = "src/test/xjava/test/images";
+    static final String EXPECTED = "reference-scores.txt";
+    /**
+     * the allowed difference to the reference scores
+     */
+    static final double SCORE_TOLERANCE = 0.01;
+
+    /**
+     * a screenshot like image: gradient background, some colored boxes and text
+     */
+    static BufferedImage createScreenshot(int w, int h, long seed) {
+        BufferedImage img = new BufferedImage(w, h, BufferedImage.TYPE_INT_RGB);
+        Graphics2D g = img.createGraphics();
+        for (int y = 0; y < h; y++) {
+            g.setColor(new Color(200, 200, 220 - y * 100 / h));
+            g.drawLine(0, y, w, y);
+        }
+        Random rnd = new Random(seed);
+        for (int i = 0; i < 20; i++) {
+            g.setColor(new Color(rnd.nextInt(256), rnd.nextInt(256), rnd.nextInt(256)));
+            g.fillRect(rnd.nextInt(w), rnd.nextInt(h), 10 + rnd.nextInt(60), 10 + rnd.nextInt(40));
+        }
+        g.setColor(Color.BLACK);
+        g.setFont(new Font("SansSerif", Font.PLAIN, 12));
+        for (int i = 0; i < 8; i++) {
+            g.drawString("Label " + i, rnd.nextInt(w - 50), 15 + rnd.nextInt(h - 20));
+        }
+        g.dispose();
+        return img;
+    }
+
+    static BufferedImage createIcon() {
+        BufferedImage icon = new BufferedImage(24, 18, BufferedImage.TYPE_INT_RGB);
+        Graphics2D g = icon.createGraphics();
+        g.setColor(Color.WHITE);
+        g.fillRect(0, 0, 24, 18);
+        g.setColor(Color.RED);
+        g.fillOval(2, 2, 14, 14);
+        g.setColor(Color.BLUE);
+        g.drawLine(0, 17, 23, 0);
+        g.dispose();
+        return icon;
+    }
+
+    static BufferedImage copy(BufferedImage img, int x, int y, int w, int h) {
+        BufferedImage ret = new BufferedImage(w, h, BufferedImage.TYPE_INT_RGB);
+        Graphics2D g = ret.createGraphics();
+        g.drawImage(img.getSubimage(x, y, w, h), 0, 0, null);
+        g.dispose();
+        return ret;
+    }
+
+    static MatchSource source(BufferedImage img) {
+        return new JavaMatchEngine().createSource(img);
+    }
+
+    /**
+     * Test finding a cut out part of a screenshot.
+     */
+    @Test
+    public void testFindBest() throws Exception {
+        BufferedImage shot = createScreenshot(320, 240, 1);
+        Graphics2D g = shot.createGraphics();
+        g.drawImage(createIcon(), 130, 83, null);
+        g.dispose();
+        BufferedImage target = copy(shot, 123, 77, 40, 30);
+        List<MatchResult> res = source(shot).find(new Pattern(target), 0.7, false, 0);
+        assertEquals(1, res.size());
+        assertEquals(123, res.get(0).x);
+        assertEquals(77, res.get(0).y);
+        assertEquals(40, res.get(0).w);
+        assertEquals(30, res.get(0).h);
+        assertTrue(res.get(0).score > 0.99);
+    }
+
+    /**
+     * Test finding all occurrences of an icon placed on a screenshot.
+     */
+    @Test
+    public void testFindAll() throws Exception {
+        BufferedImage shot = createScreenshot(320, 240, 2);
+        BufferedImage icon = createIcon();
+        int[][] at = {{10, 10}, {200, 40}, {60, 180}, {280, 200}};
+        Graphics2D g = shot.createGraphics();
+        for (int[] p : at) {
+            g.drawImage(icon, p[0], p[1], null);
+        }
+        g.dispose();
+        List<MatchResult> res = source(shot).find(new Pattern(icon), 0.95, true, 0);
+        assertEquals(at.length, res.size());
+        for (int[] p : at) {
+            boolean found = false;
+            for (MatchResult mr : res) {
+                found |= mr.x == p[0] && mr.y == p[1];
+            }
+            assertTrue("not found at " + p[0] + "," + p[1], found);
+        }
+        for (int i = 1; i < res.size(); i++) {
+            assertTrue(res.get(i - 1).score >= res.get(i).score);
+        }
+        assertEquals(2, source(shot).find(new Pattern(icon), 0.95, true, 2).size());
+    }
+
+    /**
+     * Test that an image not contained in the screenshot is not found.
+     */
+    @Test
+    public void testNotFound() throws Exception {
+        BufferedImage shot = createScreenshot(320, 240, 3);
+        BufferedImage other = copy(createScreenshot(320, 240, 4), 100, 100, 40, 30);
+        assertEquals(0, source(shot).find(new Pattern(other), 0.9, false, 0).size());
+        assertEquals(0, source(shot).find(new Pattern(other), 0.9, true, 0).size());
+    }
+
+    /**
+     * Test plain colored targets (no variance).
+     */
+    @Test
+    public void testPlainColor() throws Exception {
+        BufferedImage shot = createScreenshot(320, 240, 5);
+        Graphics2D g = shot.createGraphics();
+        g.setColor(new Color(10, 200, 30));
+        g.fillRect(150, 100, 30, 20);
+        g.dispose();
+        BufferedImage target = copy(shot, 155, 105, 20, 10);
+        List<MatchResult> res = source(shot).find(new Pattern(target), 0.99, false, 0);
+        assertEquals(1, res.size());
+        assertTrue(res.get(0).x >= 150 && res.get(0).x <= 160);
+        assertTrue(res.get(0).y >= 100 && res.get(0).y <= 110);
+    }
+
+    /**
+     * Test searching in a subimage of a capture (pixels used in place).
+     */
+    @Test
+    public void testSubimage() throws Exception {
+        BufferedImage shot = createScreenshot(320, 240, 6);
+        Graphics2D g = shot.createGraphics();
+        g.drawImage(createIcon(), 205, 155, null);
+        g.dispose();
+        BufferedImage target = copy(shot, 200, 150, 30, 30);
+        BufferedImage sub = shot.getSubimage(100, 100, 200, 120);
+        List<MatchResult> res = source(sub).find(new Pattern(target), 0.7, false, 0);
+        assertEquals(1, res.size());
+        assertEquals(100, res.get(0).x);
+        assertEquals(50, res.get(0).y);
+    }
+
+    /**
+     * Test that coarse to fine search finds the same as the exhaustive search.
+     */
+    @Test
+    public void testFast() throws Exception {
+        BufferedImage shot = createScreenshot(640, 480, 7);
+        Graphics2D g = shot.createGraphics();
+        g.drawImage(createIcon(), 412, 301, null);
+        g.drawImage(createIcon(), 50, 60, null);
+        g.dispose();
+        BufferedImage target = copy(shot, 400, 290, 48, 40);
+        MatchSource src = source(shot);
+        MatchResult full = src.find(new Pattern(target), 0.7, false, 0).get(0);
+        List<MatchResult> res = src.find(new Pattern(target).fast(), 0.7, false, 0);
+        assertEquals(1, res.size());
+        assertEquals(full.x, res.get(0).x);
+        assertEquals(full.y, res.get(0).y);
+        assertEquals(full.score, res.get(0).score, 1e-4);
+        res = src.find(new Pattern(createIcon()).minScale(0.5f), 0.95, true, 0);
+        assertEquals(2, res.size());
+    }
+
+    /**
+     * Test that the first hit search finds the occurrence nearest to the start.
+     */
+    @Test
+    public void testFirstHit() throws Exception {
+        BufferedImage shot = createScreenshot(640, 480, 8);
+        BufferedImage icon = createIcon();
+        Graphics2D g = shot.createGraphics();
+        g.drawImage(icon, 20, 30, null);
+        g.drawImage(icon, 300, 220, null);
+        g.drawImage(icon, 580, 400, null);
+        g.dispose();
+        MatchSource src = source(shot);
+        Pattern ptn = new Pattern(icon).firstHit();
+        List<MatchResult> res = src.findFirst(ptn, 0.95, null);
+        assertEquals(1, res.size());
+        assertEquals(300, res.get(0).x);
+        assertEquals(220, res.get(0).y);
+        assertTrue(res.get(0).score > 0.99);
+        res = src.findFirst(ptn, 0.95, new Point(600, 420));
+        assertEquals(580, res.get(0).x);
+        assertEquals(400, res.get(0).y);
+        res = src.findFirst(ptn.fast(), 0.95, new Point(0, 0));
+        assertEquals(20, res.get(0).x);
+        assertEquals(30, res.get(0).y);
+        BufferedImage other = copy(createScreenshot(320, 240, 4), 100, 100, 40, 30);
+        assertEquals(0, src.findFirst(new Pattern(other), 0.9, null).size());
+    }
+
+    /**
+     * Test searching in grayscale and in downscaled images.
+     */
+    @Test
+    public void testGrayscaleScaled() throws Exception {
+        BufferedImage shot = createScreenshot(640, 480, 9);
+        Graphics2D g = shot.createGraphics();
+        g.drawImage(createIcon(), 412, 301, null);
+        g.dispose();
+        BufferedImage target = copy(shot, 400, 290, 48, 40);
+        MatchSource src = source(shot);
+        List<MatchResult> res = src.find(new Pattern(target).grayscale(), 0.9, false, 0);
+        assertEquals(1, res.size());
+        assertEquals(400, res.get(0).x);
+        assertEquals(290, res.get(0).y);
+        assertTrue(res.get(0).score > 0.99);
+        for (Pattern ptn : new Pattern[]{new Pattern(target).scale(0.5f),
+                new Pattern(target).scale(0.5f).grayscale(), new Pattern(target).scale(0.25f).fast()}) {
+            res = src.find(ptn, 0.8, false, 0);
+            assertEquals(1, res.size());
+            assertTrue(Math.abs(res.get(0).x - 400) < 4);
+            assertTrue(Math.abs(res.get(0).y - 290) < 4);
+            assertEquals(48, res.get(0).w);
+            assertEquals(40, res.get(0).h);
+        }
+        res = src.findFirst(new Pattern(target).grayscale().scale(0.5f), 0.8, new Point(0, 0));
+        assertTrue(Math.abs(res.get(0).x - 400) < 4);
+    }
+
+    /**
+     * Test the positions and scores against a double precision reference on rendered
+     * Swing dialogs (see ReferenceScores).
+     */
+    @Test
+    public void testReferenceScores() throws Exception {
+        File dir = new File(IMAGES);
+        BufferedReader in = new BufferedReader(new FileReader(new File(dir, EXPECTED)));
+        int count = 0;
+        try {
+            String line;
+            while ((line = in.readLine()) != null) {
+                if (line.startsWith("#") || line.trim().length() == 0) {
+                    continue;
+                }
+                String[] f = line.trim().split("\\s+");
+                BufferedImage shot = ImageIO.read(new File(dir, f[0]));
+                BufferedImage target = ImageIO.read(new File(dir, f[1]));
+                int x = Integer.parseInt(f[2]), y = Integer.parseInt(f[3]);
+                double score = Double.parseDouble(f[4]);
+                MatchSource src = source(shot);
+                for (boolean findAll : new boolean[]{false, true}) {
+                    List<MatchResult> res = src.find(new Pattern(target), 0.7, findAll, 0);
+                    assertEquals(line, 1, res.size());
+                    assertEquals(line, x, res.get(0).x);
+                    assertEquals(line, y, res.get(0).y);
+                    assertEquals(line, score, res.get(0).score, SCORE_TOLERANCE);
+                }
+                count++;
+            }
+        } finally {
+            in.close();
+        }
+        assertTrue(count > 0);
+    }
+
+    /**
+     * Test that without SikuliX-Natives (no NativeLoader registered) the java engine is used
+     * (and the JVM does not exit).
+     */
+    @Test
+    public void testWithoutNatives() throws Exception {
+        Thread thread = Thread.currentThread();
+        ClassLoader context = thread.getContextClassLoader();
+        String engine = Settings.MatchEngine;
+        Field available = NativeMatchEngine.class.getDeclaredField("available");
+        available.setAccessible(true);
+        Object wasAvailable = available.get(null);
+        thread.setContextClassLoader(new ClassLoader(JavaMatchEngineTest.class.getClassLoader()) {
+            @Override
+            public Enumeration<URL> getResources(String name) throws IOException {
+                if (name.endsWith(INativeLoader.class.getName())) {
+                    return Collections.enumeration(Collections.<URL>emptyList());
+                }
+                return super.getResources(name);
+            }
+        });
+        try {
+            Settings.MatchEngine = null;
+            available.set(null, null);
+            assertFalse(new NativeMatchEngine().isAvailable());
+            assertTrue(Finder.getMatchEngine(null) instanceof JavaMatchEngine);
+        } finally {
+            thread.setContextClassLoader(context);
+            available.set(null, wasAvailable);
+            Settings.MatchEngine = engine;
+        }
+    }
+}
@@ -0,0 +1,67 @@
+/*
+ * Copyright 2010-2013, Sikuli.org
+ * Released under the MIT License.
+ *
+ */
+package test;
+
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+
+import org.sikuli.script.JavaMatchEngine;
+import org.sikuli.script.MatchResult;
+import org.sikuli.script.MatchSource;
+import org.sikuli.script.Pattern;
+import org.sikuli.script.Settings;
+
+/**
+ * Compares the correlation kernels of the pure Java engine (Settings.CorrelationKernel)
+ * across pattern and region sizes, exhaustive search (prefilter off).<br />
+ * usage: java test.KernelBenchmark [maxWidth] (default 1280)
+ */
+public class KernelBenchmark {
+
+    static final int[][] REGIONS = {{320, 240}, {640, 480}, {1280, 720}, {1920, 1080}};
+    static final int[] PATTERNS = {16, 32, 48, 64};
+    static final int RUNS = 3;
+
+    public static void main(String[] args) throws Exception {
+        int maxWidth = args.length > 0 ? Integer.parseInt(args[0]) : 1280;
+        Settings.MatchPrefilter = false;
+        System.out.println("region     pattern  scalar(ms)  planar(ms)  speedup  same");
+        for (int[] region : REGIONS) {
+            if (region[0] > maxWidth) {
+                break;
+            }
+            BufferedImage shot = JavaMatchEngineTest.createScreenshot(region[0], region[1], 42);
+            Graphics2D g = shot.createGraphics();
+            g.drawImage(JavaMatchEngineTest.createIcon(), region[0] / 2, region[1] / 2, null);
+            g.dispose();
+            for (int size : PATTERNS) {
+                BufferedImage target = JavaMatchEngineTest.copy(shot, region[0] / 2 - 8, region[1] / 2 - 8,
+                        size, size);
+                Pattern ptn = new Pattern(target);
+                MatchSource src = new JavaMatchEngine().createSource(shot);
+                Settings.CorrelationKernel = "scalar";
+                MatchResult scalar = src.find(ptn, 0.7, false, 0).get(0);
+                long tScalar = time(src, ptn);
+                Settings.CorrelationKernel = "planar";
+                MatchResult planar = src.find(ptn, 0.7, false, 0).get(0);
+                long tPlanar = time(src, ptn);
+                boolean same = scalar.x == planar.x && scalar.y == planar.y
+                        && Math.abs(scalar.score - planar.score) < 1e-5;
+                System.out.println(String.format("%4dx%-5d %3dx%-3d %11d %11d %7.1fx  %s",
+                        region[0], region[1], size, size, tScalar, tPlanar,
+                        (double) tScalar / Math.max(1, tPlanar), same));
+            }
+        }
+    }
+
+    static long time(MatchSource src, Pattern ptn) throws Exception {
+        long start = System.nanoTime();
+        for (int i = 0; i < RUNS; i++) {
+            src.find(ptn, 0.7, false, 0);
+        }
+        return (System.nanoTime() - start) / 1000000 / RUNS;
+    }
+}
@@ -0,0 +1,215 @@
+/*
+ * Copyright 2010-2013, Sikuli.org
+ * Released under the MIT License.
+ *
+ */
+package test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+import java.awt.Graphics2D;
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.imageio.ImageIO;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.sikuli.script.Finder;
+import org.sikuli.script.MatchCache;
+import org.sikuli.script.MatchResult;
+import org.sikuli.script.Pattern;
+import org.sikuli.script.Region;
+import org.sikuli.script.ScreenImage;
+import org.sikuli.script.Settings;
+
+/**
+ * Test the cache of find results.
+ */
+public class MatchCacheTest {
+
+    private static final Rectangle ROI = new Rectangle(10, 20, 300, 200);
+    private String engine;
+    private boolean cacheMatches;
+    private boolean skipUnchanged;
+
+    @Before
+    public void setUp() {
+        engine = Settings.MatchEngine;
+        cacheMatches = Settings.CacheMatches;
+        skipUnchanged = Settings.SkipUnchangedFrames;
+        MatchCache.clear();
+    }
+
+    @After
+    public void tearDown() {
+        Settings.MatchEngine = engine;
+        Settings.CacheMatches = cacheMatches;
+        Settings.SkipUnchangedFrames = skipUnchanged;
+        MatchCache.clear();
+    }
+
+    @SuppressWarnings("unchecked")
+    static List<MatchResult> get(int screen, String target, long hash) throws Exception {
+        Method m = MatchCache.class.getDeclaredMethod("get", int.class, Rectangle.class,
+                String.class, long.class);
+        m.setAccessible(true);
+        return (List<MatchResult>) m.invoke(null, screen, ROI, target, hash);
+    }
+
+    static void put(int screen, String target, long hash, List<MatchResult> results) throws Exception {
+        Method m = MatchCache.class.getDeclaredMethod("put", int.class, Rectangle.class,
+                String.class, long.class, List.class);
+        m.setAccessible(true);
+        m.invoke(null, screen, ROI, target, hash, results);
+    }
+
+    static void invalidate(int screen) throws Exception {
+        Method m = MatchCache.class.getDeclaredMethod("invalidate", int.class);
+        m.setAccessible(true);
+        m.invoke(null, screen);
+    }
+
+    static List<MatchResult> found(int x, int y) {
+        List<MatchResult> res = new ArrayList<MatchResult>();
+        res.add(new MatchResult(x, y, 30, 20, 0.98));
+        return res;
+    }
+
+    /**
+     * Test that only the same target in the same frame content is found.
+     */
+    @Test
+    public void testKey() throws Exception {
+        put(0, "a.png:0.7", 1234L, found(5, 6));
+        put(0, "b.png:0.7", 1234L, new ArrayList<MatchResult>());
+        List<MatchResult> res = get(0, "a.png:0.7", 1234L);
+        assertNotNull(res);
+        assertEquals(5, res.get(0).x);
+        assertEquals(6, res.get(0).y);
+        assertEquals(0, get(0, "b.png:0.7", 1234L).size());
+        assertNull(get(0, "a.png:0.7", 1235L));
+        assertNull(get(0, "a.png:0.9", 1234L));
+        assertNull(get(1, "a.png:0.7", 1234L));
+        assertEquals(2, MatchCache.getHits());
+        assertEquals(3, MatchCache.getMisses());
+    }
+
+    /**
+     * Test that an input action on a screen drops the results of this screen only.
+     */
+    @Test
+    public void testInvalidate() throws Exception {
+        put(0, "a.png", 1L, found(1, 1));
+        put(1, "a.png", 1L, found(2, 2));
+        invalidate(0);
+        assertNull(get(0, "a.png", 1L));
+        assertEquals(2, get(1, "a.png", 1L).get(0).x);
+    }
+
+    /**
+     * Test that the least recently used results are dropped.
+     */
+    @Test
+    public void testEviction() throws Exception {
+        for (int i = 0; i < 100; i++) {
+            put(0, "p" + i, 1L, found(i, i));
+            get(0, "p0", 1L);
+        }
+        assertNotNull(get(0, "p0", 1L));
+        assertNull(get(0, "p1", 1L));
+        assertNotNull(get(0, "p99", 1L));
+    }
+
+    /**
+     * a find of the given pattern in a capture of the whole screen
+     */
+    static Finder find(Region reg, BufferedImage shot, Pattern ptn) {
+        Finder f = new Finder(capture(shot), reg);
+        f.find(ptn);
+        return f;
+    }
+
+    static ScreenImage capture(BufferedImage shot) {
+        return new ScreenImage(new Rectangle(0, 0, shot.getWidth(), shot.getHeight()),
+                JavaMatchEngineTest.copy(shot, 0, 0, shot.getWidth(), shot.getHeight()));
+    }
+
+    /**
+     * Test that the minimum scale, the image file's modification and the engine actually used
+     * are part of the key of a find in a Region.
+     */
+    @Test
+    public void testFinderKey() throws Exception {
+        Settings.CacheMatches = true;
+        Settings.MatchEngine = "java";
+        FakeScreen scr = FakeScreen.install(640, 480)[0];
+        Region reg = new Region(0, 0, 640, 480, scr);
+        BufferedImage shot = JavaMatchEngineTest.createScreenshot(640, 480, 7);
+        BufferedImage icon = JavaMatchEngineTest.createIcon();
+        Graphics2D g = shot.createGraphics();
+        g.drawImage(icon, 300, 200, null);
+        g.dispose();
+        File file = File.createTempFile("sikuli-cache", ".png");
+        try {
+            ImageIO.write(icon, "png", file);
+            String name = file.getAbsolutePath();
+            find(reg, shot, new Pattern(name).similar(0.9f)).destroy();
+            find(reg, shot, new Pattern(name).similar(0.9f)).destroy();
+            assertEquals(1, MatchCache.getHits());
+            find(reg, shot, new Pattern(name).similar(0.9f).fast()).destroy();
+            assertEquals(1, MatchCache.getHits());
+
+            // not available: the java engine is used as before
+            Settings.MatchEngine = "native";
+            find(reg, shot, new Pattern(name).similar(0.9f)).destroy();
+            assertEquals(2, MatchCache.getHits());
+            Settings.MatchEngine = "java";
+
+            BufferedImage other = JavaMatchEngineTest.copy(shot, 310, 210, 40, 40);
+            ImageIO.write(other, "png", file);
+            file.setLastModified(file.lastModified() + 10000);
+            Finder f = find(reg, shot, new Pattern(name).similar(0.9f));
+            assertEquals(2, MatchCache.getHits());
+            assertEquals(310, FinderRepeatTest.results(f).get(0).x);
+            f.destroy();
+        } finally {
+            file.delete();
+        }
+    }
+
+    /**
+     * Test that a repeated find compares the frame with the hash made for the cache
+     * in the first find (the unchanged frame is not searched again).
+     */
+    @Test
+    public void testFrameHashReused() throws Exception {
+        Settings.CacheMatches = true;
+        Settings.SkipUnchangedFrames = true;
+        Settings.MatchEngine = "java";
+        FakeScreen scr = FakeScreen.install(640, 480)[0];
+        Region reg = new Region(0, 0, 640, 480, scr);
+        BufferedImage shot = JavaMatchEngineTest.createScreenshot(640, 480, 8);
+        BufferedImage icon = JavaMatchEngineTest.createIcon();
+        Graphics2D g = shot.createGraphics();
+        g.drawImage(icon, 100, 50, null);
+        g.dispose();
+        Finder f = find(reg, shot, new Pattern(icon).similar(0.9f));
+        f.setScreenImage(capture(shot));
+        f.setRepeating();
+        f.findRepeat();
+        Method changed = Finder.class.getDeclaredMethod("frameChanged");
+        changed.setAccessible(true);
+        assertFalse((Boolean) changed.invoke(f));
+        assertEquals(100, FinderRepeatTest.results(f).get(0).x);
+        f.destroy();
+    }
+}
@@ -0,0 +1,177 @@
+/*
+ * Copyright 2010-2013, Sikuli.org
+ * Released under the MIT License.
+ *
+ */
+package test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.awt.Rectangle;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.sikuli.script.Region;
+import org.sikuli.script.ScreenImage;
+import org.sikuli.script.SikuliEventAdapter;
+import org.sikuli.script.SikuliEventManager;
+
+/**
+ * Test the captures shared by the background observers.
+ */
+public class ObserverEngineTest {
+
+    private FakeScreen scr;
+
+    @Before
+    public void setUp() throws Exception {
+        scr = FakeScreen.install(640, 480)[0];
+        scr.show(JavaMatchEngineTest.createScreenshot(640, 480, 4));
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        call("stopAll", new Class<?>[0]);
+    }
+
+    static Object call(String name, Class<?>[] types, Object... args) throws Exception {
+        Class<?> engine = Class.forName("org.sikuli.script.ObserverEngine", true,
+                Region.class.getClassLoader());
+        Method m = engine.getDeclaredMethod(name, types);
+        m.setAccessible(true);
+        return m.invoke(null, args);
+    }
+
+    static int getObserving() throws Exception {
+        return (Integer) call("getObserving", new Class<?>[0]);
+    }
+
+    static boolean engineRunning() {
+        for (Thread t : Thread.getAllStackTraces().keySet()) {
+            if ("SikuliObserverEngine".equals(t.getName()) && t.isAlive()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    static void waitEngineEnded(long millis) throws Exception {
+        long end = System.currentTimeMillis() + millis;
+        while (engineRunning() && System.currentTimeMillis() < end) {
+            Thread.sleep(20);
+        }
+    }
+
+    /**
+     * counts the scans, the observation goes on until stopped
+     */
+    static class Counter extends SikuliEventManager {
+
+        final AtomicInteger scans = new AtomicInteger(0);
+
+        Counter(Region reg) {
+            super(reg);
+        }
+
+        @Override
+        public boolean update(ScreenImage simg) {
+            scans.incrementAndGet();
+            return true;
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    static List<Rectangle> merge(List<Rectangle> rects) throws Exception {
+        Class<?> engine = Class.forName("org.sikuli.script.ObserverEngine", true,
+                Region.class.getClassLoader());
+        Method m = engine.getDeclaredMethod("merge", List.class);
+        m.setAccessible(true);
+        return (List<Rectangle>) m.invoke(null, rects);
+    }
+
+    static boolean covered(List<Rectangle> areas, Rectangle r) {
+        for (Rectangle a : areas) {
+            if (a.contains(r)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Test that overlapping regions get one capture, separate ones their own.
+     */
+    @Test
+    public void testMerge() throws Exception {
+        List<Rectangle> rects = new ArrayList<Rectangle>();
+        rects.add(new Rectangle(0, 0, 100, 100));
+        rects.add(new Rectangle(500, 500, 50, 50));
+        rects.add(new Rectangle(90, 90, 100, 100));
+        rects.add(new Rectangle(180, 0, 20, 95));
+        rects.add(new Rectangle(1000, 0, 0, 0));
+        List<Rectangle> areas = merge(rects);
+        assertEquals(2, areas.size());
+        for (Rectangle r : rects) {
+            assertTrue(r.isEmpty() || covered(areas, r));
+        }
+        assertTrue(areas.contains(new Rectangle(0, 0, 200, 190)));
+        assertTrue(areas.contains(new Rectangle(500, 500, 50, 50)));
+    }
+
+    /**
+     * Test that several observers run on one engine thread, that ends with the last one.
+     */
+    @Test
+    public void testStartStop() throws Exception {
+        waitEngineEnded(2000);
+        Region[] regions = new Region[3];
+        for (int i = 0; i < regions.length; i++) {
+            regions[i] = new Region(10 + 200 * i, 10, 100, 100, scr);
+            regions[i].onChange(new SikuliEventAdapter());
+            regions[i].observeInBackground(60);
+        }
+        assertEquals(3, getObserving());
+        assertTrue(engineRunning());
+        regions[0].stopObserver();
+        regions[2].stopObserver();
+        assertEquals(1, getObserving());
+        Thread.sleep(200);
+        assertTrue(engineRunning());
+        regions[1].stopObserver();
+        assertEquals(0, getObserving());
+        waitEngineEnded(2000);
+        assertTrue(!engineRunning());
+    }
+
+    /**
+     * Test that each region is scanned at its own rate until its time is over.
+     */
+    @Test
+    public void testRates() throws Exception {
+        waitEngineEnded(2000);
+        Region fast = new Region(0, 0, 100, 100, scr);
+        fast.setObserveScanRate(20);
+        Region slow = new Region(300, 300, 100, 100, scr);
+        slow.setObserveScanRate(5);
+        Counter fastScans = new Counter(fast);
+        Counter slowScans = new Counter(slow);
+        Class<?>[] types = {Region.class, SikuliEventManager.class, double.class};
+        call("start", types, fast, fastScans, 1.0);
+        call("start", types, slow, slowScans, 1.0);
+        assertEquals(2, getObserving());
+        Thread.sleep(1500);
+        assertEquals(0, getObserving());
+        waitEngineEnded(2000);
+        assertTrue(!engineRunning());
+        int n = fastScans.scans.get();
+        assertTrue("fast: " + n, n >= 15 && n <= 21);
+        n = slowScans.scans.get();
+        assertTrue("slow: " + n, n >= 4 && n <= 6);
+    }
+}
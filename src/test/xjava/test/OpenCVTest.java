@@ -0,0 +1,79 @@
+/*
+ * Copyright 2010-2013, Sikuli.org
+ * Released under the MIT License.
+ *
+ */
+package test;
+
+import static org.junit.Assert.assertTrue;
+
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferByte;
+import java.util.Arrays;
+
+import org.junit.Test;
+import org.sikuli.script.natives.OpenCV;
+
+/**
+ * Test the conversion of images to the byte layout used for Mats.
+ */
+public class OpenCVTest {
+
+    /**
+     * the conversion as done before the direct pixel access
+     */
+    static byte[] reference(BufferedImage img) {
+        BufferedImage cvImg = OpenCV.createBufferedImage(img.getWidth(), img.getHeight());
+        Graphics2D g = cvImg.createGraphics();
+        g.drawImage(img, 0, 0, null);
+        g.dispose();
+        return ((DataBufferByte) cvImg.getRaster().getDataBuffer()).getData();
+    }
+
+    static BufferedImage convert(BufferedImage img, int type) {
+        BufferedImage ret = new BufferedImage(img.getWidth(), img.getHeight(), type);
+        Graphics2D g = ret.createGraphics();
+        g.drawImage(img, 0, 0, null);
+        g.dispose();
+        return ret;
+    }
+
+    private void check(BufferedImage img) {
+        assertTrue(Arrays.equals(reference(img), OpenCV.convertBufferedImageToByteArray(img)));
+        BufferedImage sub = img.getSubimage(13, 7, 50, 40);
+        assertTrue(Arrays.equals(reference(sub), OpenCV.convertBufferedImageToByteArray(sub)));
+    }
+
+    /**
+     * Test the direct conversion of int RGB images.
+     */
+    @Test
+    public void testIntRGB() {
+        check(JavaMatchEngineTest.createScreenshot(120, 90, 1));
+    }
+
+    /**
+     * Test the direct conversion of int BGR images.
+     */
+    @Test
+    public void testIntBGR() {
+        check(convert(JavaMatchEngineTest.createScreenshot(120, 90, 2), BufferedImage.TYPE_INT_BGR));
+    }
+
+    /**
+     * Test the direct conversion of 3 byte BGR images.
+     */
+    @Test
+    public void test3ByteBGR() {
+        check(convert(JavaMatchEngineTest.createScreenshot(120, 90, 3), BufferedImage.TYPE_3BYTE_BGR));
+    }
+
+    /**
+     * Test other image types (drawn).
+     */
+    @Test
+    public void testOther() {
+        check(convert(JavaMatchEngineTest.createScreenshot(120, 90, 4), BufferedImage.TYPE_USHORT_565_RGB));
+    }
+}
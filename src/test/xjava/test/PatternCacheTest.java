@@ -0,0 +1,106 @@
+/*
+ * Copyright 2010-2013, Sikuli.org
+ * Released under the MIT License.
+ *
+ */
+package test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.util.List;
+import javax.imageio.ImageIO;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.sikuli.script.MatchResult;
+import org.sikuli.script.MatchSource;
+import org.sikuli.script.Pattern;
+import org.sikuli.script.PatternCache;
+import org.sikuli.script.Settings;
+
+/**
+ * Test the cache of image files used as search targets.
+ */
+public class PatternCacheTest {
+
+    private int cacheSize;
+    private File file;
+
+    @Before
+    public void setUp() throws Exception {
+        cacheSize = Settings.PatternCacheSize;
+        PatternCache.invalidateAll();
+        PatternCache.resetStatistics();
+        file = File.createTempFile("sikuli-pattern", ".png");
+        ImageIO.write(JavaMatchEngineTest.createIcon(), "png", file);
+    }
+
+    @After
+    public void tearDown() {
+        Settings.PatternCacheSize = cacheSize;
+        PatternCache.invalidateAll();
+        file.delete();
+    }
+
+    private List<MatchResult> find(MatchSource src) throws Exception {
+        return src.find(new Pattern(file.getAbsolutePath()), 0.95, false, 0);
+    }
+
+    /**
+     * Test that repeated finds load the image file only once.
+     */
+    @Test
+    public void testHits() throws Exception {
+        BufferedImage shot = JavaMatchEngineTest.createScreenshot(320, 240, 1);
+        Graphics2D g = shot.createGraphics();
+        g.drawImage(JavaMatchEngineTest.createIcon(), 100, 50, null);
+        g.dispose();
+        MatchSource src = JavaMatchEngineTest.source(shot);
+        for (int i = 0; i < 5; i++) {
+            List<MatchResult> res = find(src);
+            assertEquals(1, res.size());
+            assertEquals(100, res.get(0).x);
+            assertEquals(50, res.get(0).y);
+        }
+        assertEquals(1, PatternCache.getMisses());
+        assertEquals(4, PatternCache.getHits());
+        assertEquals(1, PatternCache.getCount());
+        assertTrue(PatternCache.getSize() > 4 * 24 * 18);
+    }
+
+    /**
+     * Test that a modified image file is loaded again.
+     */
+    @Test
+    public void testModified() throws Exception {
+        MatchSource src = JavaMatchEngineTest.source(JavaMatchEngineTest.createScreenshot(320, 240, 2));
+        find(src);
+        file.setLastModified(file.lastModified() - 10000);
+        find(src);
+        assertEquals(2, PatternCache.getMisses());
+        PatternCache.invalidate(file.getAbsolutePath());
+        assertEquals(0, PatternCache.getCount());
+        find(src);
+        assertEquals(3, PatternCache.getMisses());
+        assertEquals(0, PatternCache.getHits());
+    }
+
+    /**
+     * Test the size limit.
+     */
+    @Test
+    public void testEviction() throws Exception {
+        MatchSource src = JavaMatchEngineTest.source(JavaMatchEngineTest.createScreenshot(320, 240, 3));
+        Settings.PatternCacheSize = 0;
+        find(src);
+        find(src);
+        assertEquals(0, PatternCache.getCount());
+        assertEquals(0, PatternCache.getSize());
+        assertEquals(2, PatternCache.getMisses());
+    }
+}
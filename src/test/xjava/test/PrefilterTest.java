@@ -0,0 +1,87 @@
+/*
+ * Copyright 2010-2013, Sikuli.org
+ * Released under the MIT License.
+ *
+ */
+package test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Test;
+import org.sikuli.script.JavaMatchEngine;
+import org.sikuli.script.MatchResult;
+import org.sikuli.script.Pattern;
+import org.sikuli.script.Settings;
+
+/**
+ * Test that the prefilter of the java engine skips positions without changing the results.
+ */
+public class PrefilterTest {
+
+    @After
+    public void tearDown() {
+        Settings.MatchPrefilter = true;
+    }
+
+    static List<MatchResult> find(BufferedImage shot, Pattern ptn, double sim, boolean all,
+            boolean prefilter) throws Exception {
+        Settings.MatchPrefilter = prefilter;
+        return JavaMatchEngineTest.source(shot).find(ptn, sim, all, 0);
+    }
+
+    static void assertSame(List<MatchResult> expected, List<MatchResult> actual) {
+        assertEquals(expected.size(), actual.size());
+        for (int i = 0; i < expected.size(); i++) {
+            assertEquals(expected.get(i).x, actual.get(i).x);
+            assertEquals(expected.get(i).y, actual.get(i).y);
+            assertEquals(expected.get(i).score, actual.get(i).score, 1e-6);
+        }
+    }
+
+    /**
+     * Test best and all matches with and without prefilter.
+     */
+    @Test
+    public void testSameResults() throws Exception {
+        BufferedImage shot = JavaMatchEngineTest.createScreenshot(400, 300, 11);
+        BufferedImage icon = JavaMatchEngineTest.createIcon();
+        Graphics2D g = shot.createGraphics();
+        g.drawImage(icon, 30, 40, null);
+        g.drawImage(icon, 250, 200, null);
+        g.setColor(new Color(200, 30, 30));
+        g.fillRect(150, 20, 40, 30);
+        g.dispose();
+        BufferedImage plain = JavaMatchEngineTest.copy(shot, 155, 25, 20, 10);
+        Pattern[] patterns = {new Pattern(icon), new Pattern(icon).grayscale(),
+            new Pattern(JavaMatchEngineTest.copy(shot, 100, 100, 30, 20)), new Pattern(plain)};
+        for (Pattern ptn : patterns) {
+            for (double sim : new double[]{0.5, 0.8, 0.95}) {
+                assertSame(find(shot, ptn, sim, false, false), find(shot, ptn, sim, false, true));
+                assertSame(find(shot, ptn, sim, true, false), find(shot, ptn, sim, true, true));
+            }
+        }
+    }
+
+    /**
+     * Test that most positions are skipped when searching the best match.
+     */
+    @Test
+    public void testPruned() throws Exception {
+        BufferedImage shot = JavaMatchEngineTest.createScreenshot(640, 480, 12);
+        Graphics2D g = shot.createGraphics();
+        g.drawImage(JavaMatchEngineTest.createIcon(), 420, 300, null);
+        g.dispose();
+        JavaMatchEngine.resetPrefilterStatistics();
+        List<MatchResult> res = find(shot, new Pattern(JavaMatchEngineTest.createIcon()), 0.9, false, true);
+        assertEquals(420, res.get(0).x);
+        assertEquals(300, res.get(0).y);
+        assertTrue(JavaMatchEngine.getPrunedRatio() > 0.5);
+    }
+}
@@ -0,0 +1,56 @@
+/*
+ * Copyright 2010-2013, Sikuli.org
+ * Released under the MIT License.
+ *
+ */
+package test;
+
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+
+import org.sikuli.script.JavaMatchEngine;
+import org.sikuli.script.MatchSource;
+import org.sikuli.script.Pattern;
+
+/**
+ * Compares the latency of exhaustive and coarse to fine search (Pattern.fast())
+ * with the pure Java engine across screen sizes.<br />
+ * usage: java test.PyramidBenchmark [maxWidth] (default 1920)
+ */
+public class PyramidBenchmark {
+
+    static final int[][] SIZES = {{640, 480}, {1280, 720}, {1920, 1080}, {2560, 1440}, {3840, 2160}};
+    static final int RUNS = 3;
+
+    public static void main(String[] args) throws Exception {
+        int maxWidth = args.length > 0 ? Integer.parseInt(args[0]) : 1920;
+        System.out.println("size        target  exhaustive(ms)  fast(ms)  speedup  same");
+        for (int[] size : SIZES) {
+            if (size[0] > maxWidth) {
+                break;
+            }
+            BufferedImage shot = JavaMatchEngineTest.createScreenshot(size[0], size[1], 42);
+            Graphics2D g = shot.createGraphics();
+            g.drawImage(JavaMatchEngineTest.createIcon(), size[0] * 3 / 4, size[1] * 2 / 3, null);
+            g.dispose();
+            BufferedImage target = JavaMatchEngineTest.copy(shot, size[0] * 3 / 4 - 12, size[1] * 2 / 3 - 11, 48, 40);
+            MatchSource src = new JavaMatchEngine().createSource(shot);
+            Pattern full = new Pattern(target);
+            Pattern fast = new Pattern(target).fast();
+            src.find(fast, 0.7, false, 0);
+            long tFull = time(src, full);
+            long tFast = time(src, fast);
+            boolean same = src.find(full, 0.7, false, 0).get(0).x == src.find(fast, 0.7, false, 0).get(0).x;
+            System.out.println(String.format("%4dx%-6d %6s  %14d  %8d  %6.1fx  %s", size[0], size[1], "48x40",
+                    tFull, tFast, (double) tFull / Math.max(1, tFast), same));
+        }
+    }
+
+    static long time(MatchSource src, Pattern ptn) throws Exception {
+        long start = System.nanoTime();
+        for (int i = 0; i < RUNS; i++) {
+            src.find(ptn, 0.7, false, 0);
+        }
+        return (System.nanoTime() - start) / 1000000 / RUNS;
+    }
+}
@@ -0,0 +1,244 @@
+/*
+ * Copyright 2010-2013, Sikuli.org
+ * Released under the MIT License.
+ *
+ */
+package test;
+
+import java.awt.Color;
+import java.awt.Component;
+import java.awt.Container;
+import java.awt.Font;
+import java.awt.Graphics2D;
+import java.awt.Rectangle;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.PrintWriter;
+import java.util.Locale;
+
+import javax.imageio.ImageIO;
+import javax.swing.JButton;
+import javax.swing.JCheckBox;
+import javax.swing.JComponent;
+import javax.swing.JLabel;
+import javax.swing.JPanel;
+import javax.swing.JTextArea;
+import javax.swing.JTextField;
+import javax.swing.JTree;
+import javax.swing.UIManager;
+import javax.swing.plaf.metal.MetalLookAndFeel;
+
+import org.sikuli.script.MatchResult;
+
+/**
+ * Writes the image/target pairs used by JavaMatchEngineTest.testReferenceScores:
+ * Swing dialogs are painted offscreen (these are renderings, not screen captures),
+ * the targets are cut from a second rendering with small differences (pressed button,
+ * font smoothing, checked box), the best position and score are computed by the
+ * double precision reference below (not by the native engine).<br />
+ * usage: java test.ReferenceScores [dir] (default src/test/xjava/test/images)
+ */
+public class ReferenceScores {
+
+    public static void main(String[] args) throws Exception {
+        File dir = new File(args.length > 0 ? args[0] : JavaMatchEngineTest.IMAGES);
+        dir.mkdirs();
+        UIManager.setLookAndFeel(new MetalLookAndFeel());
+        PrintWriter out = new PrintWriter(new File(dir, JavaMatchEngineTest.EXPECTED), "UTF-8");
+        out.println("# written by test.ReferenceScores: double precision CV_TM_CCOEFF_NORMED,"
+                + " not the native engine");
+        out.println("# image target x y score");
+
+        JPanel dialog = dialog();
+        BufferedImage shot = paint(dialog, false);
+        write(dir, "dialog.png", shot);
+        JButton ok = (JButton) find(dialog, "ok");
+        cut(dir, "dialog-ok.png", shot, ok, 4);
+        ok.getModel().setArmed(true);
+        ok.getModel().setPressed(true);
+        cut(dir, "dialog-ok-pressed.png", paint(dialog, false), ok, 4);
+        ok.getModel().setPressed(false);
+        ok.getModel().setArmed(false);
+        cut(dir, "dialog-name-smooth.png", paint(dialog, true), find(dialog, "name"), 2);
+        JCheckBox remember = (JCheckBox) find(dialog, "remember");
+        remember.setSelected(false);
+        cut(dir, "dialog-remember-off.png", paint(dialog, false), remember, 2);
+        record(out, dir, "dialog.png", "dialog-ok.png", "dialog-ok-pressed.png",
+                "dialog-name-smooth.png", "dialog-remember-off.png");
+
+        JPanel editor = editor();
+        shot = paint(editor, false);
+        write(dir, "editor.png", shot);
+        cut(dir, "editor-save.png", shot, find(editor, "save"), 3);
+        cut(dir, "editor-tree-smooth.png", paint(editor, true), find(editor, "tree"), 0,
+                new Rectangle(0, 0, 90, 60));
+        cut(dir, "editor-status-smooth.png", paint(editor, true), find(editor, "status"), 0);
+        record(out, dir, "editor.png", "editor-save.png", "editor-tree-smooth.png",
+                "editor-status-smooth.png");
+        out.close();
+    }
+
+    static JPanel dialog() {
+        JPanel p = new JPanel(null);
+        p.setSize(420, 220);
+        add(p, "title", new JLabel("Connect to server"), 16, 12, 200, 20);
+        add(p, "nameLabel", new JLabel("User name:"), 16, 48, 90, 22);
+        add(p, "name", new JTextField("sikuli"), 110, 48, 200, 22);
+        add(p, "passLabel", new JLabel("Password:"), 16, 80, 90, 22);
+        add(p, "pass", new JTextField("********"), 110, 80, 200, 22);
+        JCheckBox remember = new JCheckBox("Remember me", true);
+        add(p, "remember", remember, 110, 112, 160, 22);
+        add(p, "ok", new JButton("OK"), 230, 170, 80, 28);
+        add(p, "cancel", new JButton("Cancel"), 320, 170, 84, 28);
+        return p;
+    }
+
+    static JPanel editor() {
+        JPanel p = new JPanel(null);
+        p.setSize(560, 340);
+        add(p, "new", new JButton("New"), 8, 6, 70, 26);
+        add(p, "open", new JButton("Open"), 82, 6, 80, 26);
+        add(p, "save", new JButton("Save"), 166, 6, 74, 26);
+        JTree tree = new JTree();
+        for (int i = 0; i < tree.getRowCount(); i++) {
+            tree.expandRow(i);
+        }
+        add(p, "tree", tree, 8, 40, 160, 270);
+        JTextArea text = new JTextArea();
+        text.setFont(new Font("Monospaced", Font.PLAIN, 12));
+        text.setText("from sikuli import *\n\nclick(\"ok.png\")\nwait(\"done.png\", 10)\n"
+                + "for i in range(3):\n    type(\"hello world\\n\")\n");
+        add(p, "text", text, 176, 40, 376, 270);
+        JLabel status = new JLabel("Ready - line 3, column 12");
+        status.setForeground(Color.DARK_GRAY);
+        add(p, "status", status, 8, 316, 240, 18);
+        return p;
+    }
+
+    static void add(JPanel p, String name, JComponent c, int x, int y, int w, int h) {
+        c.setName(name);
+        c.setBounds(x, y, w, h);
+        p.add(c);
+    }
+
+    static Component find(Container p, String name) {
+        for (Component c : p.getComponents()) {
+            if (name.equals(c.getName())) {
+                return c;
+            }
+        }
+        throw new IllegalArgumentException(name);
+    }
+
+    static BufferedImage paint(JPanel p, boolean smooth) {
+        layout(p);
+        BufferedImage img = new BufferedImage(p.getWidth(), p.getHeight(),
+                BufferedImage.TYPE_INT_RGB);
+        Graphics2D g = img.createGraphics();
+        g.setRenderingHint(RenderingHints.KEY_TEXT_ANTIALIASING, smooth
+                ? RenderingHints.VALUE_TEXT_ANTIALIAS_ON : RenderingHints.VALUE_TEXT_ANTIALIAS_OFF);
+        p.printAll(g);
+        g.dispose();
+        return img;
+    }
+
+    static void layout(Component c) {
+        if (c instanceof Container) {
+            ((Container) c).doLayout();
+            for (Component child : ((Container) c).getComponents()) {
+                layout(child);
+            }
+        }
+    }
+
+    static void cut(File dir, String name, BufferedImage img, Component c, int margin)
+            throws Exception {
+        cut(dir, name, img, c, margin, new Rectangle(0, 0, c.getWidth(), c.getHeight()));
+    }
+
+    static void cut(File dir, String name, BufferedImage img, Component c, int margin,
+            Rectangle part) throws Exception {
+        Rectangle r = new Rectangle(c.getX() + part.x - margin, c.getY() + part.y - margin,
+                part.width + 2 * margin, part.height + 2 * margin);
+        write(dir, name, JavaMatchEngineTest.copy(img, r.x, r.y, r.width, r.height));
+    }
+
+    static void write(File dir, String name, BufferedImage img) throws Exception {
+        ImageIO.write(img, "png", new File(dir, name));
+    }
+
+    static void record(PrintWriter out, File dir, String shot, String... targets)
+            throws Exception {
+        BufferedImage img = ImageIO.read(new File(dir, shot));
+        for (String target : targets) {
+            BufferedImage t = ImageIO.read(new File(dir, target));
+            MatchResult mr = reference(img, t);
+            out.println(String.format(Locale.US, "%s %s %d %d %.4f",
+                    shot, target, mr.x, mr.y, mr.score));
+        }
+    }
+
+    /**
+     * the best position by exhaustive search in double precision, scored by the formulas
+     * the native engine uses: CV_TM_CCOEFF_NORMED over the three color channels,
+     * CV_TM_SQDIFF_NORMED (as 1 - value) for plain colored targets
+     */
+    static MatchResult reference(BufferedImage img, BufferedImage t) {
+        int tw = t.getWidth(), th = t.getHeight(), n = tw * th;
+        int[] tp = t.getRGB(0, 0, tw, th, null, 0, tw);
+        int iw = img.getWidth(), ih = img.getHeight();
+        int[] ip = img.getRGB(0, 0, iw, ih, null, 0, iw);
+        double[] tMean = new double[3];
+        double tSq = 0;
+        for (int c : tp) {
+            for (int ch = 0; ch < 3; ch++) {
+                double v = (c >> (16 - 8 * ch)) & 0xff;
+                tMean[ch] += v / n;
+                tSq += v * v;
+            }
+        }
+        double tNorm = 0;
+        for (int c : tp) {
+            for (int ch = 0; ch < 3; ch++) {
+                double v = ((c >> (16 - 8 * ch)) & 0xff) - tMean[ch];
+                tNorm += v * v;
+            }
+        }
+        boolean plain = tNorm < n;
+        MatchResult best = null;
+        for (int y = 0; y + th <= ih; y++) {
+            for (int x = 0; x + tw <= iw; x++) {
+                double[] mean = new double[3];
+                double sq = 0, cross = 0, diff = 0;
+                for (int ty = 0; ty < th; ty++) {
+                    for (int tx = 0; tx < tw; tx++) {
+                        int c = ip[(y + ty) * iw + x + tx];
+                        int tc = tp[ty * tw + tx];
+                        for (int ch = 0; ch < 3; ch++) {
+                            double v = (c >> (16 - 8 * ch)) & 0xff;
+                            double tv = (tc >> (16 - 8 * ch)) & 0xff;
+                            mean[ch] += v / n;
+                            sq += v * v;
+                            cross += v * (tv - tMean[ch]);
+                            diff += (v - tv) * (v - tv);
+                        }
+                    }
+                }
+                double score;
+                if (plain) {
+                    double denom = Math.sqrt(tSq * sq);
+                    score = denom <= 0 ? (diff < 1 ? 1 : 0) : Math.max(0, 1 - diff / denom);
+                } else {
+                    double wNorm = sq - n * (mean[0] * mean[0] + mean[1] * mean[1]
+                            + mean[2] * mean[2]);
+                    score = wNorm < 1 ? 0 : cross / Math.sqrt(tNorm * wNorm);
+                }
+                if (best == null || score > best.score) {
+                    best = new MatchResult(x, y, tw, th, score);
+                }
+            }
+        }
+        return best;
+    }
+}
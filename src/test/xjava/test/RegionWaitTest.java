@@ -0,0 +1,282 @@
+/*
+ * Copyright 2010-2013, Sikuli.org
+ * Released under the MIT License.
+ *
+ */
+package test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.Future;
+import javax.imageio.ImageIO;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.sikuli.script.AdaptiveScanRate;
+import org.sikuli.script.FindFailed;
+import org.sikuli.script.FindFailedResponse;
+import org.sikuli.script.Match;
+import org.sikuli.script.Pattern;
+import org.sikuli.script.Region;
+import org.sikuli.script.Settings;
+
+/**
+ * Test the waiting searches of a region on a screen without display.
+ */
+public class RegionWaitTest {
+
+    private String engine;
+    private boolean skipUnchanged;
+    private File file;
+    private FakeScreen scr;
+    private BufferedImage shot;
+
+    @Before
+    public void setUp() throws Exception {
+        engine = Settings.MatchEngine;
+        skipUnchanged = Settings.SkipUnchangedFrames;
+        Settings.MatchEngine = "java";
+        file = File.createTempFile("sikuli-wait", ".png");
+        ImageIO.write(JavaMatchEngineTest.createIcon(), "png", file);
+        scr = FakeScreen.install(640, 480)[0];
+        shot = JavaMatchEngineTest.createScreenshot(640, 480, 5);
+        scr.show(shot);
+    }
+
+    @After
+    public void tearDown() {
+        Settings.MatchEngine = engine;
+        Settings.SkipUnchangedFrames = skipUnchanged;
+        file.delete();
+    }
+
+    /**
+     * show the icons at the given positions after the given time
+     */
+    void showLater(final long millis, final int... xy) {
+        Thread t = new Thread() {
+            @Override
+            public void run() {
+                try {
+                    Thread.sleep(millis);
+                } catch (InterruptedException e) {
+                    return;
+                }
+                Graphics2D g = shot.createGraphics();
+                for (int i = 0; i < xy.length; i += 2) {
+                    g.drawImage(JavaMatchEngineTest.createIcon(), xy[i], xy[i + 1], null);
+                }
+                g.dispose();
+                scr.show(shot);
+            }
+        };
+        t.setDaemon(true);
+        t.start();
+    }
+
+    /**
+     * Test that findAll with a limit waits for the matches like findAll.
+     */
+    @Test
+    public void testFindAllLimitWaits() throws Exception {
+        Region reg = new Region(0, 0, 640, 480, scr);
+        reg.setAutoWaitTimeout(3);
+        showLater(300, 100, 100, 300, 200, 500, 400);
+        Iterator<Match> matches = reg.findAll(new Pattern(file.getAbsolutePath()).similar(0.95f), 2);
+        int n = 0;
+        while (matches.hasNext()) {
+            assertTrue(matches.next().getScore() > 0.95);
+            n++;
+        }
+        assertEquals(2, n);
+        assertTrue(scr.getCaptures() > 1);
+    }
+
+    /**
+     * Test that the captures are given back, also if the search failed.
+     */
+    @Test
+    public void testFindAllReleases() throws Exception {
+        Region reg = new Region(0, 0, 640, 480, scr);
+        reg.setAutoWaitTimeout(0);
+        boolean failed = false;
+        try {
+            reg.findAll(new Pattern(file.getAbsolutePath() + ".missing"), 2);
+        } catch (FindFailed e) {
+            failed = true;
+        }
+        assertTrue(failed);
+        assertEquals(1, scr.getCaptures());
+        assertEquals(1, scr.getReleases());
+        failed = false;
+        try {
+            reg.findAll(new Pattern(file.getAbsolutePath()), 2);
+        } catch (FindFailed e) {
+            failed = true;
+        }
+        assertTrue(failed);
+        assertEquals(2, scr.getCaptures());
+        assertEquals(2, scr.getReleases());
+    }
+
+    static int getPendingAsync() throws Exception {
+        Class<?> tasks = Class.forName("org.sikuli.script.FindTasks", true,
+                Region.class.getClassLoader());
+        Method m = tasks.getDeclaredMethod("getPending");
+        m.setAccessible(true);
+        return (Integer) m.invoke(null);
+    }
+
+    static void waitNoPendingAsync(long millis) throws Exception {
+        long end = System.currentTimeMillis() + millis;
+        while (getPendingAsync() > 0 && System.currentTimeMillis() < end) {
+            Thread.sleep(20);
+        }
+    }
+
+    /**
+     * Test that waitAsync returns the match, when the target appears.
+     */
+    @Test
+    public void testWaitAsync() throws Exception {
+        Region reg = new Region(0, 0, 640, 480, scr);
+        showLater(300, 200, 100);
+        Future<Match> m = reg.waitAsync(new Pattern(file.getAbsolutePath()).similar(0.95f), 5);
+        assertEquals(200, m.get().x);
+        assertEquals(100, m.get().y);
+    }
+
+    /**
+     * Test that a cancelled wait ends without FindFailed handling (here: retry forever).
+     */
+    @Test
+    public void testCancel() throws Exception {
+        waitNoPendingAsync(5000);
+        Region reg = new Region(0, 0, 640, 480, scr);
+        reg.setFindFailedResponse(FindFailedResponse.RETRY);
+        Future<Match> m = reg.waitAsync(new Pattern(file.getAbsolutePath()), 10);
+        Thread.sleep(300);
+        assertEquals(1, getPendingAsync());
+        assertTrue(m.cancel(true));
+        boolean cancelled = false;
+        try {
+            m.get();
+        } catch (CancellationException e) {
+            cancelled = true;
+        }
+        assertTrue(cancelled);
+        waitNoPendingAsync(2000);
+        assertEquals(0, getPendingAsync());
+    }
+
+    /**
+     * Test that the timeout of an asynchronous wait starts when it is submitted,
+     * also if there are more waits than Settings.AsyncFindThreads.
+     */
+    @Test
+    public void testAsyncTimeout() throws Exception {
+        waitNoPendingAsync(5000);
+        Region reg = new Region(0, 0, 100, 100, scr);
+        Pattern ptn = new Pattern(file.getAbsolutePath());
+        long start = System.currentTimeMillis();
+        List<Future<Match>> pending = new ArrayList<Future<Match>>();
+        for (int i = 0; i < 2 * Settings.AsyncFindThreads + 1; i++) {
+            pending.add(reg.existsAsync(ptn, 1));
+        }
+        for (Future<Match> m : pending) {
+            assertNull(m.get());
+        }
+        long time = System.currentTimeMillis() - start;
+        assertTrue(time >= 1000);
+        assertTrue(time < 1500);
+    }
+
+    static int countAsyncThreads() {
+        int n = 0;
+        for (Thread t : Thread.getAllStackTraces().keySet()) {
+            if (t.getName().startsWith("SikuliAsync-") && t.isAlive()) {
+                n++;
+            }
+        }
+        return n;
+    }
+
+    /**
+     * Test that waits do not keep threads: many more waits than Settings.AsyncFindThreads
+     * wait at the same time with a bounded number of threads, an other wait is served
+     * meanwhile and all end at their timeout.
+     */
+    @Test
+    public void testBoundedThreads() throws Exception {
+        waitNoPendingAsync(5000);
+        Region reg = new Region(0, 0, 100, 100, scr);
+        Pattern ptn = new Pattern(file.getAbsolutePath());
+        int count = 10 * Settings.AsyncFindThreads;
+        long start = System.currentTimeMillis();
+        List<Future<Match>> pending = new ArrayList<Future<Match>>();
+        for (int i = 0; i < count; i++) {
+            pending.add(reg.existsAsync(ptn, 1.5));
+        }
+        Region shown = new Region(0, 0, 640, 480, scr);
+        showLater(300, 200, 100);
+        Future<Match> m = shown.waitAsync(new Pattern(file.getAbsolutePath()).similar(0.95f), 1);
+        int threads = 0;
+        while (!m.isDone()) {
+            threads = Math.max(threads, countAsyncThreads());
+            Thread.sleep(20);
+        }
+        assertEquals(200, m.get().x);
+        assertEquals(count, getPendingAsync());
+        assertTrue(threads + " threads", threads <= Settings.AsyncFindThreads);
+        for (Future<Match> f : pending) {
+            assertNull(f.get());
+        }
+        long time = System.currentTimeMillis() - start;
+        assertTrue(time >= 1500);
+        assertTrue(time < 2000);
+        waitNoPendingAsync(1000);
+        assertEquals(0, getPendingAsync());
+    }
+
+    /**
+     * Test that the adaptive scan rate scans less and less often on a screen, that does
+     * not change, for all kinds of waiting.
+     */
+    @Test
+    public void testBackoff() throws Exception {
+        Region reg = new Region(0, 0, 200, 200, scr);
+        reg.setScanRatePolicy(new AdaptiveScanRate(20, 1000, 250));
+        reg.setAutoWaitTimeout(2);
+        Pattern ptn = new Pattern(file.getAbsolutePath());
+        List<Pattern> patterns = new ArrayList<Pattern>();
+        patterns.add(ptn);
+        // 20 ms all the time would be 100 scans
+        for (int kind = 0; kind < 4; kind++) {
+            Settings.SkipUnchangedFrames = kind != 0;
+            int captures = scr.getCaptures();
+            try {
+                if (kind < 2) {
+                    reg.wait(ptn);
+                } else if (kind == 2) {
+                    reg.findAll(ptn);
+                } else {
+                    reg.waitAny(patterns, 2);
+                }
+            } catch (FindFailed e) {
+            }
+            captures = scr.getCaptures() - captures;
+            assertTrue("kind " + kind + ": " + captures + " scans", captures < 40);
+        }
+    }
+}
@@ -0,0 +1,65 @@
+/*
+ * Copyright 2010-2013, Sikuli.org
+ * Released under the MIT License.
+ *
+ */
+package test;
+
+import org.sikuli.script.AdaptiveScanRate;
+import org.sikuli.script.FixedScanRate;
+import org.sikuli.script.ScanRatePolicy;
+
+/**
+ * Compares scan rate policies by simulating the wait loop of Region (virtual clock):<br />
+ * detection latency of a target appearing some time after a click, and the scans
+ * (CPU use) of a long wait on a static screen.<br />
+ * usage: java test.ScanRateBenchmark [scanCost] (ms per scan, default 25)
+ */
+public class ScanRateBenchmark {
+
+    static final long[] APPEAR = {10, 50, 150, 400, 1000, 3000};
+    static final long STATIC_WAIT = 30000;
+
+    public static void main(String[] args) {
+        long scanCost = args.length > 0 ? Long.parseLong(args[0]) : 25;
+        ScanRatePolicy[] policies = {new FixedScanRate(3), new FixedScanRate(10), new AdaptiveScanRate()};
+        System.out.println("appear after click (ms): " + java.util.Arrays.toString(APPEAR)
+                + ", scan: " + scanCost + " ms");
+        System.out.println(String.format("%-40s %12s %12s %16s %10s",
+                "policy", "latency avg", "latency max", "static scans/s", "static CPU"));
+        for (ScanRatePolicy p : policies) {
+            long sum = 0, max = 0;
+            for (long appear : APPEAR) {
+                long latency = simulate(p, appear, scanCost, Long.MAX_VALUE)[0];
+                sum += latency;
+                max = Math.max(max, latency);
+            }
+            long scans = simulate(p, Long.MAX_VALUE, scanCost, STATIC_WAIT)[1];
+            System.out.println(String.format("%-40s %9d ms %9d ms %16.2f %9.1f%%", p,
+                    sum / APPEAR.length, max, scans * 1000.0 / STATIC_WAIT,
+                    scans * scanCost * 100.0 / STATIC_WAIT));
+        }
+    }
+
+    /**
+     * the wait loop of Region.Repeatable: the click is done at time 0 (the static wait
+     * starts an hour after the last click)
+     *
+     * @return latency from appearance to detection and number of scans
+     */
+    static long[] simulate(ScanRatePolicy p, long appear, long scanCost, long timeout) {
+        long input = timeout == Long.MAX_VALUE ? 0 : -3600000;
+        long t = 0, scans = 0;
+        while (t < timeout) {
+            long before = t;
+            scans++;
+            t += scanCost;
+            if (before >= appear) {
+                return new long[]{t - appear, scans};
+            }
+            long interval = p.getInterval(before - input, before);
+            t = Math.max(before + interval, t + 10);
+        }
+        return new long[]{-1, scans};
+    }
+}
@@ -0,0 +1,47 @@
+/*
+ * Copyright 2010-2013, Sikuli.org
+ * Released under the MIT License.
+ *
+ */
+package test;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+import org.sikuli.script.AdaptiveScanRate;
+import org.sikuli.script.FixedScanRate;
+import org.sikuli.script.ScanRatePolicy;
+import org.sikuli.script.Settings;
+
+/**
+ * Test the scan rate policies.
+ */
+public class ScanRatePolicyTest {
+
+    /**
+     * Test the fixed scan rate.
+     */
+    @Test
+    public void testFixed() {
+        assertEquals(100, new FixedScanRate(10).getInterval(0, 0));
+        float rate = Settings.WaitScanRate;
+        Settings.WaitScanRate = 4;
+        assertEquals(250, new FixedScanRate().getInterval(Long.MAX_VALUE, 5000));
+        Settings.WaitScanRate = rate;
+    }
+
+    /**
+     * Test the backoff of the adaptive scan rate.
+     */
+    @Test
+    public void testAdaptive() {
+        ScanRatePolicy p = new AdaptiveScanRate(20, 1000, 250);
+        assertEquals(20, p.getInterval(0, 10000));
+        assertEquals(20, p.getInterval(249, 10000));
+        assertEquals(40, p.getInterval(250, 10000));
+        assertEquals(80, p.getInterval(10000, 600));
+        assertEquals(640, p.getInterval(1300, 1300));
+        assertEquals(1000, p.getInterval(1500, 10000));
+        assertEquals(1000, p.getInterval(Long.MAX_VALUE, Long.MAX_VALUE));
+    }
+}
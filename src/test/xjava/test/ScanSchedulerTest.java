@@ -0,0 +1,164 @@
+/*
+ * Copyright 2010-2013, Sikuli.org
+ * Released under the MIT License.
+ *
+ */
+package test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.awt.Rectangle;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.sikuli.script.Region;
+import org.sikuli.script.Screen;
+import org.sikuli.script.Settings;
+
+/**
+ * Test the wake up of the waiting searches.
+ */
+public class ScanSchedulerTest {
+
+    private float coalesceTime;
+    private final List<String> woken = Collections.synchronizedList(new ArrayList<String>());
+
+    @Before
+    public void setUp() {
+        coalesceTime = Settings.ScanCoalesceTime;
+    }
+
+    @After
+    public void tearDown() {
+        Settings.ScanCoalesceTime = coalesceTime;
+    }
+
+    static Class<?> scheduler() throws Exception {
+        return Class.forName("org.sikuli.script.ScanScheduler", true, Region.class.getClassLoader());
+    }
+
+    static Object task(Screen scr, Rectangle rect, double timeout) throws Exception {
+        Class<?> cls = Class.forName("org.sikuli.script.ScanScheduler$Task", true,
+                Region.class.getClassLoader());
+        Constructor<?> c = cls.getDeclaredConstructor(Screen.class, Rectangle.class, double.class);
+        c.setAccessible(true);
+        return c.newInstance(scr, rect, timeout);
+    }
+
+    static boolean await(Object task, long due) throws Exception {
+        Method m = task.getClass().getDeclaredMethod("await", long.class);
+        m.setAccessible(true);
+        return (Boolean) m.invoke(task, due);
+    }
+
+    static void cancel(Object task) throws Exception {
+        Method m = task.getClass().getDeclaredMethod("cancel");
+        m.setAccessible(true);
+        m.invoke(task);
+    }
+
+    static long[] getStatistics() throws Exception {
+        Method m = scheduler().getDeclaredMethod("getStatistics");
+        m.setAccessible(true);
+        return (long[]) m.invoke(null);
+    }
+
+    /**
+     * a thread waiting for the given time, it adds its name and the time it was woken up
+     * too early (ms) to woken
+     */
+    Thread waiter(final String name, final Object task, final long delay) {
+        Thread t = new Thread() {
+            @Override
+            public void run() {
+                try {
+                    long due = System.nanoTime() + delay * 1000000;
+                    if (await(task, due)) {
+                        woken.add(name + ":" + Math.max(0, (due - System.nanoTime()) / 1000000));
+                    } else {
+                        woken.add(name + ":false");
+                    }
+                } catch (Exception e) {
+                    woken.add(name + ":" + e);
+                }
+            }
+        };
+        t.start();
+        return t;
+    }
+
+    /**
+     * Test that the tasks are woken up in the order of their due times, not before.
+     */
+    @Test
+    public void testOrder() throws Exception {
+        Settings.ScanCoalesceTime = 0;
+        Thread t1 = waiter("a", task(null, null, 10), 300);
+        Thread t2 = waiter("b", task(null, null, 10), 100);
+        Thread t3 = waiter("c", task(null, null, 10), 200);
+        t1.join(5000);
+        t2.join(5000);
+        t3.join(5000);
+        assertEquals(3, woken.size());
+        assertEquals("b:0", woken.get(0));
+        assertEquals("c:0", woken.get(1));
+        assertEquals("a:0", woken.get(2));
+    }
+
+    /**
+     * Test that tasks due close together are woken up together, the second one early,
+     * and the shared capture is made by a woken thread.
+     */
+    @Test
+    public void testCoalesced() throws Exception {
+        Settings.ScanCoalesceTime = 0.1f;
+        FakeScreen scr = FakeScreen.install(640, 480)[0];
+        long[] before = getStatistics();
+        Thread t1 = waiter("a", task(scr, new Rectangle(0, 0, 100, 100), 10), 200);
+        Thread t2 = waiter("b", task(scr, new Rectangle(300, 300, 100, 100), 10), 260);
+        t1.join(5000);
+        t2.join(5000);
+        long[] after = getStatistics();
+        assertEquals(2, woken.size());
+        assertEquals(1, after[0] - before[0]);
+        assertEquals(1, after[1] - before[1]);
+        assertTrue(woken.contains("a:0"));
+        String b = woken.get(0).startsWith("b") ? woken.get(0) : woken.get(1);
+        long early = Long.parseLong(b.substring(2));
+        assertTrue(early > 20 && early <= 100);
+        assertEquals(1, scr.getCaptures());
+        assertFalse("SikuliScanScheduler".equals(scr.getCaptureThread()));
+    }
+
+    /**
+     * Test that an interrupt or a cancel ends the waiting as not due and that the deadline
+     * ends it.
+     */
+    @Test
+    public void testInterrupt() throws Exception {
+        Settings.ScanCoalesceTime = 0;
+        Thread t1 = waiter("a", task(null, null, 10), 5000);
+        Object task = task(null, null, 10);
+        Thread t2 = waiter("b", task, 5000);
+        Thread t3 = waiter("c", task(null, null, 0.1), 5000);
+        Thread.sleep(100);
+        t1.interrupt();
+        cancel(task);
+        t1.join(1000);
+        t2.join(1000);
+        t3.join(1000);
+        assertEquals(3, woken.size());
+        assertTrue(woken.contains("a:false"));
+        assertTrue(woken.contains("b:false"));
+        assertTrue(woken.contains("c:false"));
+        assertFalse(await(task, System.nanoTime() + 1000000));
+    }
+}
@@ -0,0 +1,218 @@
+/*
+ * Copyright 2010-2013, Sikuli.org
+ * Released under the MIT License.
+ *
+ */
+package test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ThreadPoolExecutor;
+import javax.imageio.ImageIO;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.sikuli.script.Match;
+import org.sikuli.script.PatternCache;
+import org.sikuli.script.Region;
+import org.sikuli.script.SikuliEventAdapter;
+import org.sikuli.script.SikuliEventAppear;
+import org.sikuli.script.SikuliEventChange;
+import org.sikuli.script.SikuliEventManager;
+import org.sikuli.script.Settings;
+
+/**
+ * Test the checks of the observed patterns in the frames of a region.
+ */
+public class SikuliEventManagerTest {
+
+    private static final Color[] COLORS = {Color.RED, Color.GREEN, Color.MAGENTA};
+    private int threads;
+    private boolean exact;
+    private int queueSize;
+    private final List<File> files = new ArrayList<File>();
+    private final List<String> appeared = new ArrayList<String>();
+
+    @Before
+    public void setUp() throws Exception {
+        threads = Settings.FindThreads;
+        exact = Settings.ExactMatchHash;
+        queueSize = Settings.ObserverEventQueueSize;
+        Settings.ExactMatchHash = false;
+        Settings.ObserverEventQueueSize = 0;
+        PatternCache.invalidateAll();
+        PatternCache.resetStatistics();
+        for (Color c : COLORS) {
+            File file = File.createTempFile("sikuli-observe", ".png");
+            ImageIO.write(icon(c), "png", file);
+            files.add(file);
+        }
+    }
+
+    @After
+    public void tearDown() {
+        Settings.FindThreads = threads;
+        Settings.ExactMatchHash = exact;
+        Settings.ObserverEventQueueSize = queueSize;
+        PatternCache.invalidateAll();
+        for (File file : files) {
+            file.delete();
+        }
+    }
+
+    static BufferedImage icon(Color c) {
+        BufferedImage icon = JavaMatchEngineTest.createIcon();
+        Graphics2D g = icon.createGraphics();
+        g.setColor(c);
+        g.fillOval(2, 2, 14, 14);
+        g.dispose();
+        return icon;
+    }
+
+    static long getFindTasks() throws Exception {
+        Class<?> workers = Class.forName("org.sikuli.script.FindWorkers", true,
+                Region.class.getClassLoader());
+        Method m = workers.getDeclaredMethod("getPool");
+        m.setAccessible(true);
+        return ((ThreadPoolExecutor) m.invoke(null)).getTaskCount();
+    }
+
+    /**
+     * Test that the image files are loaded once and the pending patterns
+     * are searched in parallel in each frame.
+     */
+    @Test
+    public void testPatterns() throws Exception {
+        Settings.FindThreads = COLORS.length;
+        FakeScreen scr = FakeScreen.install(320, 240)[0];
+        BufferedImage shot = JavaMatchEngineTest.createScreenshot(320, 240, 3);
+        scr.show(shot);
+        // small enough to be searched in one piece: the pool tasks are the parallel patterns
+        Region reg = new Region(0, 0, 80, 30, scr);
+        SikuliEventManager mgr = new SikuliEventManager(reg);
+        for (File file : files) {
+            final String name = file.getAbsolutePath();
+            mgr.addAppearObserver(name, new SikuliEventAdapter() {
+                @Override
+                public void targetAppeared(SikuliEventAppear e) {
+                    appeared.add(name);
+                }
+            });
+        }
+        mgr.initialize();
+        for (int i = 0; i < 3; i++) {
+            long tasks = getFindTasks();
+            assertTrue(mgr.update(scr.capture(reg.getRect())));
+            assertEquals(COLORS.length - 1, getFindTasks() - tasks);
+        }
+        assertEquals(0, appeared.size());
+        Graphics2D g = shot.createGraphics();
+        for (int i = 0; i < COLORS.length; i++) {
+            g.drawImage(icon(COLORS[i]), 2 + 26 * i, 6, null);
+        }
+        g.dispose();
+        scr.show(shot);
+        mgr.update(scr.capture(reg.getRect()));
+        assertEquals(COLORS.length, appeared.size());
+        assertEquals(COLORS.length, PatternCache.getMisses());
+        assertEquals(COLORS.length, PatternCache.getCount());
+    }
+
+    /**
+     * Test that a blinking caret is below the min size of a change.
+     */
+    @Test
+    public void testChangeSize() throws Exception {
+        FakeScreen scr = FakeScreen.install(320, 240)[0];
+        BufferedImage shot = JavaMatchEngineTest.createScreenshot(320, 240, 3);
+        scr.show(shot);
+        Region reg = new Region(100, 100, 200, 100, scr);
+        SikuliEventManager mgr = new SikuliEventManager(reg);
+        final List<Match> changes = new ArrayList<Match>();
+        mgr.addChangeObserver(Settings.ObserveMinChangedPixels, new SikuliEventAdapter() {
+            @Override
+            public void targetChanged(SikuliEventChange e) {
+                changes.addAll(e.changes);
+            }
+        });
+        mgr.initialize();
+        mgr.update(scr.capture(reg.getRect()));
+        Graphics2D g = shot.createGraphics();
+        for (int i = 0; i < 4; i++) {
+            g.setColor(i % 2 == 0 ? Color.BLACK : Color.WHITE);
+            g.drawLine(150, 120, 150, 135);
+            scr.show(shot);
+            mgr.update(scr.capture(reg.getRect()));
+        }
+        assertEquals(0, changes.size());
+        g.fillRect(200, 150, 10, 10);
+        g.dispose();
+        scr.show(shot);
+        mgr.update(scr.capture(reg.getRect()));
+        assertEquals(1, changes.size());
+        assertEquals(200, changes.get(0).x);
+        assertEquals(150, changes.get(0).y);
+        assertEquals(10, changes.get(0).w);
+    }
+
+    /**
+     * Test that a handler can add observers and stop the observation while the region is
+     * scanned, observe() returns after the handlers have run.
+     */
+    @Test
+    public void testHandlerChangesObservers() throws Exception {
+        Settings.ObserverEventQueueSize = 64;
+        FakeScreen scr = FakeScreen.install(320, 240)[0];
+        BufferedImage shot = JavaMatchEngineTest.createScreenshot(320, 240, 3);
+        Graphics2D g = shot.createGraphics();
+        g.drawImage(icon(COLORS[0]), 20, 20, null);
+        g.drawImage(icon(COLORS[1]), 60, 20, null);
+        g.dispose();
+        scr.show(shot);
+        final Region reg = new Region(0, 0, 160, 80, scr);
+        reg.setObserveScanRate(50);
+        final String first = files.get(0).getAbsolutePath();
+        final String second = files.get(1).getAbsolutePath();
+        final List<String> handled = Collections.synchronizedList(new ArrayList<String>());
+        // keeps the observation running
+        reg.onChange(100000, new SikuliEventAdapter() {
+        });
+        reg.onAppear(first, new SikuliEventAdapter() {
+            @Override
+            public void targetAppeared(SikuliEventAppear e) {
+                handled.add(first);
+                reg.onAppear(second, new SikuliEventAdapter() {
+                    @Override
+                    public void targetAppeared(SikuliEventAppear e) {
+                        handled.add("stop");
+                        reg.stopObserver();
+                        try {
+                            Thread.sleep(200);
+                        } catch (InterruptedException ex) {
+                        }
+                        handled.add(second);
+                    }
+                });
+                for (int i = 0; i < 200; i++) {
+                    reg.onChange(1000 + i, new SikuliEventAdapter() {
+                    });
+                }
+            }
+        });
+        long start = System.currentTimeMillis();
+        reg.observe(5);
+        assertTrue(System.currentTimeMillis() - start < 3000);
+        assertEquals(Arrays.asList(first, "stop", second), handled);
+    }
+}
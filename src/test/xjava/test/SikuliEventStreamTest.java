@@ -0,0 +1,195 @@
+/*
+ * Copyright 2010-2013, Sikuli.org
+ * Released under the MIT License.
+ *
+ */
+package test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+import org.sikuli.script.Region;
+import org.sikuli.script.SikuliEvent;
+import org.sikuli.script.SikuliEventAppear;
+import org.sikuli.script.SikuliEventStream;
+import org.sikuli.script.SikuliEventSubscriber;
+import org.sikuli.script.SikuliEventSubscription;
+
+/**
+ * Test the event streams with backpressure.
+ */
+public class SikuliEventStreamTest {
+
+    /**
+     * collects the events, requests initial events on subscribe
+     */
+    static class Collector implements SikuliEventSubscriber {
+
+        final List<Object> events = new ArrayList<Object>();
+        final long initial;
+        SikuliEventSubscription subscription;
+        Throwable error = null;
+        volatile boolean complete = false;
+
+        Collector(long initial) {
+            this.initial = initial;
+        }
+
+        @Override
+        public void onSubscribe(SikuliEventSubscription subscription) {
+            this.subscription = subscription;
+            if (initial > 0) {
+                subscription.request(initial);
+            }
+        }
+
+        @Override
+        public void onNext(SikuliEvent e) {
+            events.add(e.pattern);
+        }
+
+        @Override
+        public void onError(Throwable error) {
+            this.error = error;
+        }
+
+        @Override
+        public void onComplete() {
+            complete = true;
+        }
+    }
+
+    static void publish(SikuliEventStream stream, int from, int to) {
+        for (int i = from; i < to; i++) {
+            stream.targetAppeared(new SikuliEventAppear(i, null, null));
+        }
+    }
+
+    /**
+     * Test that only the requested events are sent.
+     */
+    @Test
+    public void testDemand() {
+        SikuliEventStream stream = new SikuliEventStream();
+        Collector c = new Collector(2);
+        stream.subscribe(c);
+        publish(stream, 0, 5);
+        assertEquals(2, c.events.size());
+        c.subscription.request(10);
+        assertEquals(5, c.events.size());
+        publish(stream, 5, 7);
+        assertEquals(7, c.events.size());
+        assertEquals(6, c.events.get(6));
+        c.subscription.cancel();
+        publish(stream, 7, 8);
+        assertEquals(7, c.events.size());
+        assertEquals(0, stream.getSubscribers());
+    }
+
+    /**
+     * Test that the oldest events are dropped, if a subscriber does not request them.
+     */
+    @Test
+    public void testBuffer() {
+        SikuliEventStream stream = new SikuliEventStream(3);
+        Collector slow = new Collector(0);
+        Collector fast = new Collector(Long.MAX_VALUE);
+        stream.subscribe(slow);
+        stream.subscribe(fast);
+        publish(stream, 0, 5);
+        assertEquals(5, fast.events.size());
+        assertEquals(2, stream.getDropped());
+        slow.subscription.request(5);
+        assertEquals(3, slow.events.size());
+        assertEquals(2, slow.events.get(0));
+    }
+
+    /**
+     * Test requesting one by one from onNext.
+     */
+    @Test
+    public void testRequestInOnNext() {
+        SikuliEventStream stream = new SikuliEventStream();
+        final int[] depth = {0, 0};
+        Collector c = new Collector(1) {
+            @Override
+            public void onNext(SikuliEvent e) {
+                depth[0]++;
+                depth[1] = Math.max(depth[1], depth[0]);
+                super.onNext(e);
+                subscription.request(1);
+                depth[0]--;
+            }
+        };
+        publish(stream, 0, 10);
+        stream.subscribe(c);
+        publish(stream, 0, 10);
+        assertEquals(10, c.events.size());
+        assertEquals(1, depth[1]);
+    }
+
+    /**
+     * Test the end of the stream and an invalid request.
+     */
+    @Test
+    public void testCompleteAndError() {
+        SikuliEventStream stream = new SikuliEventStream();
+        Collector c = new Collector(0);
+        stream.subscribe(c);
+        publish(stream, 0, 2);
+        stream.close();
+        assertFalse(c.complete);
+        c.subscription.request(2);
+        assertEquals(2, c.events.size());
+        assertTrue(c.complete);
+        Collector late = new Collector(1);
+        stream.subscribe(late);
+        assertTrue(late.complete);
+
+        stream = new SikuliEventStream();
+        Collector bad = new Collector(0);
+        stream.subscribe(bad);
+        bad.subscription.request(0);
+        assertTrue(bad.error instanceof IllegalArgumentException);
+        publish(stream, 0, 1);
+        assertEquals(0, bad.events.size());
+    }
+
+    /**
+     * Test that the streams of a region end with its observation: by timeout in the
+     * background and by stopObserver.
+     */
+    @Test
+    public void testClosedWithObservation() throws Exception {
+        FakeScreen scr = FakeScreen.install(320, 240)[0];
+        final Region reg = new Region(0, 0, 100, 100, scr);
+        Collector changes = new Collector(10);
+        reg.getChangeEvents(50).subscribe(changes);
+        reg.observeInBackground(0.3);
+        for (int i = 0; i < 100 && !changes.complete; i++) {
+            Thread.sleep(20);
+        }
+        assertTrue(changes.complete);
+
+        Collector more = new Collector(10);
+        reg.getChangeEvents(50).subscribe(more);
+        Thread observer = new Thread() {
+            @Override
+            public void run() {
+                reg.observe(60);
+            }
+        };
+        observer.start();
+        Thread.sleep(200);
+        assertFalse(more.complete);
+        reg.stopObserver();
+        observer.join(2000);
+        assertFalse(observer.isAlive());
+        assertTrue(more.complete);
+    }
+}